@@ -1,133 +1,83 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.regex.Pattern;
-
-class Passenger {
-    private String passengerId;
-    private String name;
-    private String email;
-    private String phone;
-
-    public Passenger(String passengerId, String name, String email, String phone) {
-        this.passengerId = passengerId;
-        this.name = name;
-        this.email = email;
-        this.phone = phone;
-    }
-
-    public String getPassengerId() { return passengerId; }
-    public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
-    public String getEmail() { return email; }
-    public void setEmail(String email) { this.email = email; }
-    public String getPhone() { return phone; }
-    public void setPhone(String phone) { this.phone = phone; }
-
-    @Override
-    public String toString() {
-        return "ID: " + passengerId + " | Name: " + name + " | Email: " + email + " | Phone: " + phone;
-    }
-}
-
-class Flight {
-    private String flightNumber;
-    private String departureCity;
-    private String arrivalCity;
-    private String departureTime;
-    private String arrivalTime;
-    private int availableSeats;
-    private List<String> bookedPassengers;
-
-    public Flight(String flightNumber, String departureCity, String arrivalCity, 
-                  String departureTime, String arrivalTime, int availableSeats) {
-        this.flightNumber = flightNumber;
-        this.departureCity = departureCity;
-        this.arrivalCity = arrivalCity;
-        this.departureTime = departureTime;
-        this.arrivalTime = arrivalTime;
-        this.availableSeats = availableSeats;
-        this.bookedPassengers = new ArrayList<>();
-    }
-
-    public String getFlightNumber() { return flightNumber; }
-    public String getDepartureCity() { return departureCity; }
-    public void setDepartureCity(String departureCity) { this.departureCity = departureCity; }
-    public String getArrivalCity() { return arrivalCity; }
-    public void setArrivalCity(String arrivalCity) { this.arrivalCity = arrivalCity; }
-    public String getDepartureTime() { return departureTime; }
-    public void setDepartureTime(String departureTime) { this.departureTime = departureTime; }
-    public String getArrivalTime() { return arrivalTime; }
-    public void setArrivalTime(String arrivalTime) { this.arrivalTime = arrivalTime; }
-    public int getAvailableSeats() { return availableSeats; }
-    public void setAvailableSeats(int availableSeats) { this.availableSeats = availableSeats; }
-    public List<String> getBookedPassengers() { return bookedPassengers; }
-
-    public boolean bookPassenger(String passengerId) {
-        if (availableSeats > 0 && !bookedPassengers.contains(passengerId)) {
-            bookedPassengers.add(passengerId);
-            availableSeats--;
-            return true;
-        }
-        return false;
-    }
-
-    public boolean cancelBooking(String passengerId) {
-        if (bookedPassengers.remove(passengerId)) {
-            availableSeats++;
-            return true;
-        }
-        return false;
-    }
-
-    @Override
-    public String toString() {
-        return flightNumber + " | " + departureCity + " (" + departureTime + ") to " + 
-               arrivalCity + " (" + arrivalTime + ") | Seats: " + availableSeats;
-    }
-}
 
 public class AirlineReservationSystemUI2 extends JFrame {
-    private List<Passenger> passengers;
-    private List<Flight> flights;
+    private LocalReservationService service;
+    private PassengerRegistry passengers;
+    private FlightRegistry flights;
+    private BookingHistory history;
+    private BackgroundTasks tasks;
+    private PassengerSearchIndex passengerIndex;
+    private FlightSearchIndex flightIndex;
     
     private JTabbedPane tabbedPane;
-    private JPanel passengerPanel, flightPanel, bookingPanel;
+    private StatusBar statusBar;
+    private JPanel passengerPanel, flightPanel, bookingPanel, routePanel;
     
     // Passenger UI components
     private JTextField passengerIdField, nameField, emailField, phoneField, searchPassengerField;
     private JTextArea passengerOutputArea;
-    private JList<String> passengerList;
-    private DefaultListModel<String> passengerListModel;
+    private JList<Passenger> passengerList;
+    private RegistryListModel<Passenger> passengerListModel;
+    private LiveSearch<Passenger> passengerSearch;
     
     // Flight UI components
     private JTextField flightNumberField, departureCityField, arrivalCityField;
     private JTextField departureTimeField, arrivalTimeField, seatsField, searchFlightField;
     private JTextArea flightOutputArea;
-    private JList<String> flightList;
-    private DefaultListModel<String> flightListModel;
+    private JList<Flight> flightList;
+    private RegistryListModel<Flight> flightListModel;
+    private LiveSearch<Flight> flightSearch;
     
     // Booking UI components
-    private JComboBox<String> passengerCombo, flightCombo;
-    private JTextArea bookingOutputArea, historyArea;
+    private JComboBox<Passenger> passengerCombo;
+    private JComboBox<Flight> flightCombo;
+    private JComboBox<FareClass> fareClassCombo;
+    private RegistryComboBoxModel<Passenger> passengerComboModel;
+    private RegistryComboBoxModel<Flight> flightComboModel;
+    private JTextField passengerFilterField, flightFilterField;
+    private LiveSearch<Passenger> passengerComboSearch;
+    private LiveSearch<Flight> flightComboSearch;
+    private JTextArea bookingOutputArea;
+    private DefaultListModel<String> historyListModel;
+    private JComboBox<String> historyScopeCombo;
+    private JTextField historyKeyField;
+    private JLabel historyPageLabel;
+    private int historyPage;
+    
+    // Route UI components
+    private JTextField routeFromField, routeToField, routeAfterField, routeBeforeField, routeSeatsField;
+    private JComboBox<ConnectionFinder.Order> connectionOrderCombo;
+    private JTextArea routeOutputArea;
 
-    // Constants for validation
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}$");
-    private static final Pattern PHONE_PATTERN = Pattern.compile("^[+]?[(]?[0-9]{1,4}[)]?[-\\s.]?[0-9]{1,4}[-\\s.]?[0-9]{1,6}$");
-    private static final Pattern TIME_PATTERN = Pattern.compile("^([01]?[0-9]|2[0-3]):[0-5][0-9]$");
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private static final String[] HISTORY_SCOPES = {"All bookings", "Passenger ID", "Flight number"};
 
-    public AirlineReservationSystemUI2() {
+    public AirlineReservationSystemUI2() throws IOException {
         super("Airline Reservation System");
-        passengers = new ArrayList<>();
-        flights = new ArrayList<>();
+        service = LocalReservationService.open(Paths.get("data"));
+        passengers = service.getPassengers();
+        flights = service.getFlights();
+        history = service.getHistory();
+        passengerIndex = service.getPassengerIndex();
+        flightIndex = service.getFlightIndex();
+        tasks = new BackgroundTasks();
         
         initializeUI();
+        showHistoryPage(0);
     }
 
     private void initializeUI() {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent evt) {
+                closeStore();
+            }
+        });
         setSize(900, 700);
         setLocationRelativeTo(null);
         
@@ -137,12 +87,18 @@ public class AirlineReservationSystemUI2 extends JFrame {
         createPassengerPanel();
         createFlightPanel();
         createBookingPanel();
+        createRoutePanel();
         
         tabbedPane.addTab("Passengers", passengerPanel);
         tabbedPane.addTab("Flights", flightPanel);
         tabbedPane.addTab("Bookings", bookingPanel);
+        tabbedPane.addTab("Routes", routePanel);
         
-        add(tabbedPane);
+        statusBar = new StatusBar();
+        service.setNotifier(statusBar);
+        
+        add(tabbedPane, BorderLayout.CENTER);
+        add(statusBar, BorderLayout.SOUTH);
     }
 
     private void createPassengerPanel() {
@@ -194,8 +150,11 @@ public class AirlineReservationSystemUI2 extends JFrame {
         buttonPanel.add(clearButton);
         
         // Passenger list
-        passengerListModel = new DefaultListModel<>();
-        passengerList = new JList<>(passengerListModel);
+        passengerListModel = new RegistryListModel<>(passengers, Passenger::toString);
+        passengerList = createRegistryList(passengerListModel, "ID: P000000 | Name: Passenger Name Here | Email: passenger.name@example.com | Phone: +00 0000000000");
+        passengerSearch = new LiveSearch<>(searchPassengerField, passengers, passengerIndex, passengerListModel,
+                query -> showMessage("No passengers found matching: " + query),
+                cause -> showError("Error searching passengers: " + cause.getMessage()));
         passengerList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         passengerList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -290,8 +249,11 @@ public class AirlineReservationSystemUI2 extends JFrame {
         buttonPanel.add(clearButton);
         
         // Flight list
-        flightListModel = new DefaultListModel<>();
-        flightList = new JList<>(flightListModel);
+        flightListModel = new RegistryListModel<>(flights, Flight::toString);
+        flightList = createRegistryList(flightListModel, "FL0000 | Departure City (00:00) to Arrival City (00:00) | Seats: 000");
+        flightSearch = new LiveSearch<>(searchFlightField, flights, flightIndex, flightListModel,
+                query -> showMessage("No flights found matching: " + query),
+                cause -> showError("Error searching flights: " + cause.getMessage()));
         flightList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         flightList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -336,29 +298,68 @@ public class AirlineReservationSystemUI2 extends JFrame {
         bookingPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
         // Input panel
-        JPanel inputPanel = new JPanel(new GridLayout(3, 2, 5, 5));
+        JPanel inputPanel = new JPanel(new GridLayout(5, 2, 5, 5));
         inputPanel.setBorder(BorderFactory.createTitledBorder("Booking Details"));
         
-        passengerCombo = new JComboBox<>();
-        flightCombo = new JComboBox<>();
+        // Dropdowns follow the registries; typing in a filter field narrows them
+        passengerComboModel = new RegistryComboBoxModel<>(passengers,
+                passenger -> passenger.getPassengerId() + " | " + passenger.getName());
+        flightComboModel = new RegistryComboBoxModel<>(flights,
+                flight -> flight.getFlightNumber() + " | " + flight.getDepartureCity() + " to " + flight.getArrivalCity());
+        passengerCombo = new RegistryComboBoxModel.Combo<>(passengerComboModel,
+                new Passenger("P000000", "Passenger Name Here", "", ""));
+        flightCombo = new RegistryComboBoxModel.Combo<>(flightComboModel,
+                new Flight("FL0000", "Departure City", "Arrival City", "00:00", "00:00", 0));
+        passengerFilterField = new JTextField();
+        flightFilterField = new JTextField();
+        passengerComboSearch = new LiveSearch<>(passengerFilterField, passengers, passengerIndex,
+                passengerComboModel.filter(), query -> { },
+                cause -> showError("Error filtering passengers: " + cause.getMessage()));
+        flightComboSearch = new LiveSearch<>(flightFilterField, flights, flightIndex,
+                flightComboModel.filter(), query -> { },
+                cause -> showError("Error filtering flights: " + cause.getMessage()));
         
+        inputPanel.add(new JLabel("Find passenger:"));
+        inputPanel.add(passengerFilterField);
         inputPanel.add(new JLabel("Passenger:"));
         inputPanel.add(passengerCombo);
+        inputPanel.add(new JLabel("Find flight:"));
+        inputPanel.add(flightFilterField);
         inputPanel.add(new JLabel("Flight:"));
         inputPanel.add(flightCombo);
+        // Only used for the waitlist
+        fareClassCombo = new JComboBox<>(FareClass.values());
+        fareClassCombo.setSelectedItem(FareClass.ECONOMY);
+        inputPanel.add(new JLabel("Fare class:"));
+        inputPanel.add(fareClassCombo);
         
         // Button panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
         JButton bookButton = new JButton("Book Flight");
         JButton cancelButton = new JButton("Cancel Booking");
+        JButton joinWaitlistButton = new JButton("Join Waitlist");
+        JButton leaveWaitlistButton = new JButton("Leave Waitlist");
+        JButton groupButton = new JButton("Book Group...");
+        JButton holdButton = new JButton("Hold Seat");
+        JButton releaseHoldButton = new JButton("Release Hold");
         JButton refreshButton = new JButton("Refresh Lists");
         
         bookButton.addActionListener(e -> bookFlight());
         cancelButton.addActionListener(e -> cancelBooking());
+        joinWaitlistButton.addActionListener(e -> joinWaitlist());
+        leaveWaitlistButton.addActionListener(e -> leaveWaitlist());
+        groupButton.addActionListener(e -> bookGroup());
+        holdButton.addActionListener(e -> holdSeat());
+        releaseHoldButton.addActionListener(e -> releaseHold());
         refreshButton.addActionListener(e -> refreshCombos());
         
         buttonPanel.add(bookButton);
         buttonPanel.add(cancelButton);
+        buttonPanel.add(joinWaitlistButton);
+        buttonPanel.add(leaveWaitlistButton);
+        buttonPanel.add(groupButton);
+        buttonPanel.add(holdButton);
+        buttonPanel.add(releaseHoldButton);
         buttonPanel.add(refreshButton);
         
         // Output area
@@ -367,11 +368,32 @@ public class AirlineReservationSystemUI2 extends JFrame {
         JScrollPane outputScrollPane = new JScrollPane(bookingOutputArea);
         outputScrollPane.setBorder(BorderFactory.createTitledBorder("Booking Information"));
         
-        // History area
-        historyArea = new JTextArea(10, 30);
-        historyArea.setEditable(false);
-        JScrollPane historyScrollPane = new JScrollPane(historyArea);
-        historyScrollPane.setBorder(BorderFactory.createTitledBorder("Booking History"));
+        // History, one page at a time from the history store
+        historyListModel = new DefaultListModel<>();
+        JList<String> historyList = new JList<>(historyListModel);
+        historyList.setVisibleRowCount(10);
+        historyScopeCombo = new JComboBox<>(HISTORY_SCOPES);
+        historyKeyField = new JTextField(10);
+        historyPageLabel = new JLabel();
+        JButton showHistoryButton = new JButton("Show");
+        JButton newerButton = new JButton("< Newer");
+        JButton olderButton = new JButton("Older >");
+        showHistoryButton.addActionListener(e -> showHistoryPage(0));
+        newerButton.addActionListener(e -> showHistoryPage(historyPage - 1));
+        olderButton.addActionListener(e -> showHistoryPage(historyPage + 1));
+        
+        JPanel historyControls = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        historyControls.add(historyScopeCombo);
+        historyControls.add(historyKeyField);
+        historyControls.add(showHistoryButton);
+        historyControls.add(newerButton);
+        historyControls.add(olderButton);
+        historyControls.add(historyPageLabel);
+        
+        JPanel historyPanel = new JPanel(new BorderLayout(5, 5));
+        historyPanel.setBorder(BorderFactory.createTitledBorder("Booking History"));
+        historyPanel.add(historyControls, BorderLayout.NORTH);
+        historyPanel.add(new JScrollPane(historyList), BorderLayout.CENTER);
         
         // Layout
         JPanel topPanel = new JPanel(new BorderLayout());
@@ -380,12 +402,64 @@ public class AirlineReservationSystemUI2 extends JFrame {
         
         JPanel centerPanel = new JPanel(new BorderLayout());
         centerPanel.add(outputScrollPane, BorderLayout.CENTER);
-        centerPanel.add(historyScrollPane, BorderLayout.SOUTH);
+        centerPanel.add(historyPanel, BorderLayout.SOUTH);
         
         bookingPanel.add(topPanel, BorderLayout.NORTH);
         bookingPanel.add(centerPanel, BorderLayout.CENTER);
     }
 
+    private void createRoutePanel() {
+        routePanel = new JPanel(new BorderLayout(10, 10));
+        routePanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        // Input panel
+        JPanel inputPanel = new JPanel(new GridLayout(6, 2, 5, 5));
+        inputPanel.setBorder(BorderFactory.createTitledBorder("Route Query"));
+        
+        routeFromField = new JTextField();
+        routeToField = new JTextField();
+        routeAfterField = new JTextField("00:00");
+        routeBeforeField = new JTextField("23:59");
+        routeSeatsField = new JTextField("1");
+        connectionOrderCombo = new JComboBox<>(ConnectionFinder.Order.values());
+        
+        inputPanel.add(new JLabel("From City:"));
+        inputPanel.add(routeFromField);
+        inputPanel.add(new JLabel("To City:"));
+        inputPanel.add(routeToField);
+        inputPanel.add(new JLabel("Departing After (HH:MM):"));
+        inputPanel.add(routeAfterField);
+        inputPanel.add(new JLabel("Departing Before (HH:MM):"));
+        inputPanel.add(routeBeforeField);
+        inputPanel.add(new JLabel("Minimum Free Seats:"));
+        inputPanel.add(routeSeatsField);
+        inputPanel.add(new JLabel("Connections Sorted By:"));
+        inputPanel.add(connectionOrderCombo);
+        
+        // Button panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
+        JButton findButton = new JButton("Find Flights");
+        JButton connectionsButton = new JButton("Find Connections");
+        findButton.addActionListener(e -> findRoute());
+        connectionsButton.addActionListener(e -> findConnections());
+        buttonPanel.add(findButton);
+        buttonPanel.add(connectionsButton);
+        
+        // Output area
+        routeOutputArea = new JTextArea(15, 30);
+        routeOutputArea.setEditable(false);
+        JScrollPane outputScrollPane = new JScrollPane(routeOutputArea);
+        outputScrollPane.setBorder(BorderFactory.createTitledBorder("Results"));
+        
+        // Layout
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.add(inputPanel, BorderLayout.NORTH);
+        topPanel.add(buttonPanel, BorderLayout.CENTER);
+        
+        routePanel.add(topPanel, BorderLayout.NORTH);
+        routePanel.add(outputScrollPane, BorderLayout.CENTER);
+    }
+
     // Passenger operations
     private void addPassenger() {
         try {
@@ -394,33 +468,21 @@ public class AirlineReservationSystemUI2 extends JFrame {
             String email = emailField.getText().trim();
             String phone = phoneField.getText().trim();
             
-            if (id.isEmpty() || name.isEmpty() || email.isEmpty() || phone.isEmpty()) {
-                showError("Please fill all fields");
-                return;
-            }
-            
-            if (!EMAIL_PATTERN.matcher(email).matches()) {
-                showError("Invalid email format");
-                return;
-            }
-            
-            if (!PHONE_PATTERN.matcher(phone).matches()) {
-                showError("Invalid phone number format");
-                return;
-            }
-            
-            if (findPassengerById(id) != null) {
-                showError("Passenger ID already exists");
+            String problem = Validation.checkPassenger(id, name, email, phone);
+            if (problem != null) {
+                showError(problem);
                 return;
             }
             
             Passenger passenger = new Passenger(id, name, email, phone);
-            passengers.add(passenger);
-            passengerListModel.addElement(passenger.toString());
-            
-            clearPassengerFields();
-            updatePassengerCombo();
-            showMessage("Passenger added successfully");
+            tasks.submit(() -> service.addPassenger(passenger), added -> {
+                if (!added) {
+                    showError("Passenger ID already exists");
+                    return;
+                }
+                clearPassengerFields();
+                showMessage("Passenger added successfully");
+            }, e -> showError("Error adding passenger: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error adding passenger: " + e.getMessage());
         }
@@ -428,45 +490,30 @@ public class AirlineReservationSystemUI2 extends JFrame {
 
     private void updatePassenger() {
         try {
-            int selectedIndex = passengerList.getSelectedIndex();
-            if (selectedIndex == -1) {
+            Passenger passenger = passengerList.getSelectedValue();
+            if (passenger == null) {
                 showError("Please select a passenger to update");
                 return;
             }
             
-            Passenger passenger = passengers.get(selectedIndex);
             String name = nameField.getText().trim();
             String email = emailField.getText().trim();
             String phone = phoneField.getText().trim();
             
-            if (!name.isEmpty()) {
-                if (name.length() < 2) {
-                    showError("Name must be at least 2 characters");
-                    return;
-                }
-                passenger.setName(name);
-            }
-            
-            if (!email.isEmpty()) {
-                if (!EMAIL_PATTERN.matcher(email).matches()) {
-                    showError("Invalid email format");
-                    return;
-                }
-                passenger.setEmail(email);
+            String problem = Validation.checkPassengerChanges(name, email, phone);
+            if (problem != null) {
+                showError(problem);
+                return;
             }
             
-            if (!phone.isEmpty()) {
-                if (!PHONE_PATTERN.matcher(phone).matches()) {
-                    showError("Invalid phone number format");
+            tasks.submit(() -> service.updatePassenger(passenger.getPassengerId(), name, email, phone), updated -> {
+                if (updated == null) {
+                    showError("Passenger not found");
                     return;
                 }
-                passenger.setPhone(phone);
-            }
-            
-            passengerListModel.set(selectedIndex, passenger.toString());
-            updatePassengerCombo();
-            showSelectedPassenger();
-            showMessage("Passenger updated successfully");
+                showSelectedPassenger();
+                showMessage("Passenger updated successfully");
+            }, e -> showError("Error updating passenger: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error updating passenger: " + e.getMessage());
         }
@@ -474,25 +521,21 @@ public class AirlineReservationSystemUI2 extends JFrame {
 
     private void deletePassenger() {
         try {
-            int selectedIndex = passengerList.getSelectedIndex();
-            if (selectedIndex == -1) {
+            Passenger passenger = passengerList.getSelectedValue();
+            if (passenger == null) {
                 showError("Please select a passenger to delete");
                 return;
             }
             
-            Passenger passenger = passengers.get(selectedIndex);
-            
-            // Cancel all bookings for this passenger
-            for (Flight flight : flights) {
-                flight.cancelBooking(passenger.getPassengerId());
-            }
-            
-            passengers.remove(selectedIndex);
-            passengerListModel.remove(selectedIndex);
-            
-            clearPassengerFields();
-            updatePassengerCombo();
-            showMessage("Passenger deleted successfully");
+            // Removes the passenger and cancels all their bookings
+            tasks.submit(() -> service.removePassenger(passenger.getPassengerId()), removed -> {
+                if (removed == null) {
+                    showError("Passenger not found");
+                    return;
+                }
+                clearPassengerFields();
+                showMessage("Passenger deleted successfully");
+            }, e -> showError("Error deleting passenger: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error deleting passenger: " + e.getMessage());
         }
@@ -500,18 +543,38 @@ public class AirlineReservationSystemUI2 extends JFrame {
 
     private void showSelectedPassenger() {
         try {
-            int selectedIndex = passengerList.getSelectedIndex();
-            if (selectedIndex != -1) {
-                Passenger passenger = passengers.get(selectedIndex);
+            Passenger passenger = passengerList.getSelectedValue();
+            if (passenger != null) {
                 passengerIdField.setText(passenger.getPassengerId());
                 nameField.setText(passenger.getName());
                 emailField.setText(passenger.getEmail());
                 phoneField.setText(passenger.getPhone());
                 
-                passengerOutputArea.setText("Passenger ID: " + passenger.getPassengerId() + "\n" +
-                                         "Name: " + passenger.getName() + "\n" +
-                                         "Email: " + passenger.getEmail() + "\n" +
-                                         "Phone: " + passenger.getPhone());
+                String details = "Passenger ID: " + passenger.getPassengerId() + "\n" +
+                                 "Name: " + passenger.getName() + "\n" +
+                                 "Email: " + passenger.getEmail() + "\n" +
+                                 "Phone: " + passenger.getPhone();
+                passengerOutputArea.setText(details);
+                
+                // Bookings come from the engine's passenger-to-flights index
+                String passengerId = passenger.getPassengerId();
+                tasks.submit(() -> {
+                    StringBuilder bookings = new StringBuilder("\nBookings:");
+                    List<Flight> booked = service.getBookedFlights(passengerId);
+                    for (Flight flight : booked) {
+                        bookings.append("\n  ").append(flight.getFlightNumber())
+                                .append(" seat ").append(service.getSeatNumber(passengerId, flight.getFlightNumber()))
+                                .append(" (").append(flight.getDepartureCity()).append(" to ")
+                                .append(flight.getArrivalCity()).append(")");
+                    }
+                    return booked.isEmpty() ? "\nBookings: none" : bookings.toString();
+                }, bookings -> {
+                    // Skip if another passenger was selected meanwhile
+                    Passenger selected = passengerList.getSelectedValue();
+                    if (selected != null && selected.getPassengerId().equals(passengerId)) {
+                        passengerOutputArea.setText(details + bookings);
+                    }
+                }, e -> showError("Error loading bookings: " + e.getMessage()));
             }
         } catch (Exception e) {
             showError("Error displaying passenger: " + e.getMessage());
@@ -528,41 +591,21 @@ public class AirlineReservationSystemUI2 extends JFrame {
             String arrTime = arrivalTimeField.getText().trim();
             String seatsText = seatsField.getText().trim();
             
-            if (number.isEmpty() || departure.isEmpty() || arrival.isEmpty() || 
-                depTime.isEmpty() || arrTime.isEmpty() || seatsText.isEmpty()) {
-                showError("Please fill all fields");
+            String problem = Validation.checkFlight(number, departure, arrival, depTime, arrTime, seatsText);
+            if (problem != null) {
+                showError(problem);
                 return;
             }
             
-            if (!TIME_PATTERN.matcher(depTime).matches() || !TIME_PATTERN.matcher(arrTime).matches()) {
-                showError("Invalid time format (use HH:MM)");
-                return;
-            }
-            
-            int seats;
-            try {
-                seats = Integer.parseInt(seatsText);
-                if (seats <= 0) {
-                    showError("Seats must be positive");
+            Flight flight = new Flight(number, departure, arrival, depTime, arrTime, Integer.parseInt(seatsText));
+            tasks.submit(() -> service.addFlight(flight), added -> {
+                if (!added) {
+                    showError("Flight number already exists");
                     return;
                 }
-            } catch (NumberFormatException e) {
-                showError("Invalid number for seats");
-                return;
-            }
-            
-            if (findFlightByNumber(number) != null) {
-                showError("Flight number already exists");
-                return;
-            }
-            
-            Flight flight = new Flight(number, departure, arrival, depTime, arrTime, seats);
-            flights.add(flight);
-            flightListModel.addElement(flight.toString());
-            
-            clearFlightFields();
-            updateFlightCombo();
-            showMessage("Flight added successfully");
+                clearFlightFields();
+                showMessage("Flight added successfully");
+            }, e -> showError("Error adding flight: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error adding flight: " + e.getMessage());
         }
@@ -570,57 +613,35 @@ public class AirlineReservationSystemUI2 extends JFrame {
 
     private void updateFlight() {
         try {
-            int selectedIndex = flightList.getSelectedIndex();
-            if (selectedIndex == -1) {
+            Flight flight = flightList.getSelectedValue();
+            if (flight == null) {
                 showError("Please select a flight to update");
                 return;
             }
             
-            Flight flight = flights.get(selectedIndex);
             String departure = departureCityField.getText().trim();
             String arrival = arrivalCityField.getText().trim();
             String depTime = departureTimeField.getText().trim();
             String arrTime = arrivalTimeField.getText().trim();
             String seatsText = seatsField.getText().trim();
             
-            if (!departure.isEmpty()) flight.setDepartureCity(departure);
-            if (!arrival.isEmpty()) flight.setArrivalCity(arrival);
-            
-            if (!depTime.isEmpty()) {
-                if (!TIME_PATTERN.matcher(depTime).matches()) {
-                    showError("Invalid departure time format (use HH:MM)");
-                    return;
-                }
-                flight.setDepartureTime(depTime);
-            }
-            
-            if (!arrTime.isEmpty()) {
-                if (!TIME_PATTERN.matcher(arrTime).matches()) {
-                    showError("Invalid arrival time format (use HH:MM)");
-                    return;
-                }
-                flight.setArrivalTime(arrTime);
+            String problem = Validation.checkFlightChanges(depTime, arrTime, seatsText);
+            if (problem != null) {
+                showError(problem);
+                return;
             }
             
-            if (!seatsText.isEmpty()) {
-                try {
-                    int seats = Integer.parseInt(seatsText);
-                    if (seats >= 0) {
-                        flight.setAvailableSeats(seats);
-                    } else {
-                        showError("Seats must be non-negative");
-                        return;
-                    }
-                } catch (NumberFormatException e) {
-                    showError("Invalid number for seats");
+            int newSeats = seatsText.isEmpty() ? -1 : Integer.parseInt(seatsText);
+            tasks.submit(() -> service.updateFlight(flight.getFlightNumber(), departure, arrival,
+                                                    depTime, arrTime, newSeats), updated -> {
+                if (updated == null) {
+                    showError("Flight not found");
                     return;
                 }
-            }
-            
-            flightListModel.set(selectedIndex, flight.toString());
-            updateFlightCombo();
-            showSelectedFlight();
-            showMessage("Flight updated successfully");
+                refreshFlightRow(flight);
+                showSelectedFlight();
+                showMessage("Flight updated successfully");
+            }, e -> showError("Error updating flight: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error updating flight: " + e.getMessage());
         }
@@ -628,40 +649,53 @@ public class AirlineReservationSystemUI2 extends JFrame {
 
     private void deleteFlight() {
         try {
-            int selectedIndex = flightList.getSelectedIndex();
-            if (selectedIndex == -1) {
+            Flight flight = flightList.getSelectedValue();
+            if (flight == null) {
                 showError("Please select a flight to delete");
                 return;
             }
             
-            flights.remove(selectedIndex);
-            flightListModel.remove(selectedIndex);
-            
-            clearFlightFields();
-            updateFlightCombo();
-            showMessage("Flight deleted successfully");
+            tasks.submit(() -> service.removeFlight(flight.getFlightNumber()), removed -> {
+                if (removed == null) {
+                    showError("Flight not found");
+                    return;
+                }
+                clearFlightFields();
+                showMessage("Flight deleted successfully");
+            }, e -> showError("Error deleting flight: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error deleting flight: " + e.getMessage());
         }
     }
 
+    // The details are read under the flight's lock by a worker, since other
+    // threads change the live Flight meanwhile
     private void showSelectedFlight() {
         try {
-            int selectedIndex = flightList.getSelectedIndex();
-            if (selectedIndex != -1) {
-                Flight flight = flights.get(selectedIndex);
-                flightNumberField.setText(flight.getFlightNumber());
-                departureCityField.setText(flight.getDepartureCity());
-                arrivalCityField.setText(flight.getArrivalCity());
-                departureTimeField.setText(flight.getDepartureTime());
-                arrivalTimeField.setText(flight.getArrivalTime());
-                seatsField.setText(String.valueOf(flight.getAvailableSeats()));
-                
-                flightOutputArea.setText("Flight Number: " + flight.getFlightNumber() + "\n" +
-                                        "From: " + flight.getDepartureCity() + " at " + flight.getDepartureTime() + "\n" +
-                                        "To: " + flight.getArrivalCity() + " at " + flight.getArrivalTime() + "\n" +
-                                        "Available Seats: " + flight.getAvailableSeats() + "\n" +
-                                        "Booked Passengers: " + flight.getBookedPassengers().size());
+            Flight selected = flightList.getSelectedValue();
+            if (selected != null) {
+                String flightNumber = selected.getFlightNumber();
+                tasks.submit(() -> service.getFlightDetails(flightNumber), flight -> {
+                    // Skip if the flight is gone or another was selected meanwhile
+                    Flight current = flightList.getSelectedValue();
+                    if (flight == null || current == null || !current.getFlightNumber().equals(flightNumber)) {
+                        return;
+                    }
+                    flightNumberField.setText(flight.getFlightNumber());
+                    departureCityField.setText(flight.getDepartureCity());
+                    arrivalCityField.setText(flight.getArrivalCity());
+                    departureTimeField.setText(flight.getDepartureTime());
+                    arrivalTimeField.setText(flight.getArrivalTime());
+                    seatsField.setText(String.valueOf(flight.getAvailableSeats()));
+                    
+                    flightOutputArea.setText("Flight Number: " + flight.getFlightNumber() + "\n" +
+                                            "From: " + flight.getDepartureCity() + " at " + flight.getDepartureTime() + "\n" +
+                                            "To: " + flight.getArrivalCity() + " at " + flight.getArrivalTime() + "\n" +
+                                            "Available Seats: " + flight.getAvailableSeats() + "\n" +
+                                            "Held Seats: " + flight.getHeldSeats() + "\n" +
+                                            "Booked Passengers: " + flight.getBookedCount() + " of " + flight.getCapacity() + "\n" +
+                                            "Manifest Memory: " + flight.getManifestMemoryBytes() + " bytes");
+                }, e -> showError("Error displaying flight: " + e.getMessage()));
             }
         } catch (Exception e) {
             showError("Error displaying flight: " + e.getMessage());
@@ -671,36 +705,39 @@ public class AirlineReservationSystemUI2 extends JFrame {
     // Booking operations
     private void bookFlight() {
         try {
-            if (passengerCombo.getSelectedIndex() == -1 || flightCombo.getSelectedIndex() == -1) {
+            if (passengerComboModel.getSelectedKey() == null || flightComboModel.getSelectedKey() == null) {
                 showError("Please select both passenger and flight");
                 return;
             }
             
-            String passengerId = ((String) passengerCombo.getSelectedItem()).split(" \\| ")[0];
-            String flightNumber = ((String) flightCombo.getSelectedItem()).split(" \\| ")[0];
-            
-            Passenger passenger = findPassengerById(passengerId);
-            Flight flight = findFlightByNumber(flightNumber);
+            // The models hold the selected records, so no lookup by display text
+            Passenger passenger = passengerComboModel.getSelectedItem();
+            Flight flight = flightComboModel.getSelectedItem();
             
             if (passenger == null || flight == null) {
                 showError("Passenger or Flight not found");
                 return;
             }
             
-            if (flight.bookPassenger(passengerId)) {
-                String historyEntry = "BOOKED: " + passenger.getName() + " on " + 
-                                    flight.getFlightNumber() + " (" + 
-                                    flight.getDepartureCity() + " to " + 
-                                    flight.getArrivalCity() + ") at " + 
-                                    new java.util.Date() + "\n";
-                bookingOutputArea.append(historyEntry);
-                historyArea.append(historyEntry);
-                updateFlightCombo();
-                showSelectedFlight();
-                showMessage("Booking successful!");
-            } else {
-                showError("No available seats on this flight or passenger already booked");
-            }
+            String passengerId = passenger.getPassengerId();
+            String flightNumber = flight.getFlightNumber();
+            
+            tasks.submit(() -> service.book(passengerId, flightNumber), seatNumber -> {
+                if (seatNumber > 0) {
+                    bookingOutputArea.setText("BOOKED: " + passenger.getName() + " on " + 
+                                              flight.getFlightNumber() + " seat " + 
+                                              seatNumber + " (" + 
+                                              flight.getDepartureCity() + " to " + 
+                                              flight.getArrivalCity() + ") at " + 
+                                              new java.util.Date());
+                    showHistoryPage(historyPage);
+                    refreshFlightRow(flight);
+                    showSelectedFlight();
+                    showMessage("Booking successful!");
+                } else {
+                    showError("No available seats on this flight or passenger already booked");
+                }
+            }, e -> showError("Error booking flight: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error booking flight: " + e.getMessage());
         }
@@ -708,137 +745,352 @@ public class AirlineReservationSystemUI2 extends JFrame {
 
     private void cancelBooking() {
         try {
-            if (passengerCombo.getSelectedIndex() == -1 || flightCombo.getSelectedIndex() == -1) {
+            if (passengerComboModel.getSelectedKey() == null || flightComboModel.getSelectedKey() == null) {
                 showError("Please select both passenger and flight");
                 return;
             }
             
-            String passengerId = ((String) passengerCombo.getSelectedItem()).split(" \\| ")[0];
-            String flightNumber = ((String) flightCombo.getSelectedItem()).split(" \\| ")[0];
-            
-            Passenger passenger = findPassengerById(passengerId);
-            Flight flight = findFlightByNumber(flightNumber);
+            // The models hold the selected records, so no lookup by display text
+            Passenger passenger = passengerComboModel.getSelectedItem();
+            Flight flight = flightComboModel.getSelectedItem();
             
             if (passenger == null || flight == null) {
                 showError("Passenger or Flight not found");
                 return;
             }
             
-            if (flight.cancelBooking(passengerId)) {
-                String historyEntry = "CANCELLED: " + passenger.getName() + " from " + 
-                                    flight.getFlightNumber() + " at " + 
-                                    new java.util.Date() + "\n";
-                bookingOutputArea.append(historyEntry);
-                historyArea.append(historyEntry);
-                updateFlightCombo();
-                showSelectedFlight();
-                showMessage("Booking cancelled successfully");
-            } else {
-                showError("This passenger doesn't have a booking on this flight");
-            }
+            String passengerId = passenger.getPassengerId();
+            String flightNumber = flight.getFlightNumber();
+            
+            tasks.submit(() -> service.cancel(passengerId, flightNumber), cancelled -> {
+                if (cancelled) {
+                    bookingOutputArea.setText("CANCELLED: " + passenger.getName() + " from " + 
+                                              flight.getFlightNumber() + " at " + 
+                                              new java.util.Date());
+                    showHistoryPage(historyPage);
+                    refreshFlightRow(flight);
+                    showSelectedFlight();
+                    showMessage("Booking cancelled successfully");
+                } else {
+                    showError("This passenger doesn't have a booking on this flight");
+                }
+            }, e -> showError("Error cancelling booking: " + e.getMessage()));
         } catch (Exception e) {
             showError("Error cancelling booking: " + e.getMessage());
         }
     }
 
-    // Search functionality
-    private void searchPassengers() {
+    // Books straight away if a seat is free; promotions later are reported
+    // in the status bar
+    private void joinWaitlist() {
         try {
-            String query = searchPassengerField.getText().toLowerCase();
-            passengerListModel.clear();
+            if (passengerComboModel.getSelectedKey() == null || flightComboModel.getSelectedKey() == null) {
+                showError("Please select both passenger and flight");
+                return;
+            }
             
-            if (query.isEmpty()) {
-                // Show all passengers if search is empty
-                for (Passenger passenger : passengers) {
-                    passengerListModel.addElement(passenger.toString());
-                }
+            Passenger passenger = passengerComboModel.getSelectedItem();
+            Flight flight = flightComboModel.getSelectedItem();
+            FareClass fareClass = (FareClass) fareClassCombo.getSelectedItem();
+            
+            if (passenger == null || flight == null) {
+                showError("Passenger or Flight not found");
                 return;
             }
             
-            for (Passenger passenger : passengers) {
-                if (passenger.getPassengerId().toLowerCase().contains(query) ||
-                    passenger.getName().toLowerCase().contains(query) ||
-                    passenger.getEmail().toLowerCase().contains(query) ||
-                    passenger.getPhone().toLowerCase().contains(query)) {
-                    passengerListModel.addElement(passenger.toString());
+            String passengerId = passenger.getPassengerId();
+            String flightNumber = flight.getFlightNumber();
+            
+            // Returns the waitlist position and, when a seat was free, the seat
+            // assigned, read under the flight's lock
+            tasks.submit(() -> {
+                int position = service.joinWaitlist(passengerId, flightNumber, fareClass);
+                return new int[] {position, position == 0 ? service.getSeatNumber(passengerId, flightNumber) : -1};
+            }, result -> {
+                int position = result[0];
+                if (position == 0) {
+                    bookingOutputArea.setText("BOOKED: " + passenger.getName() + " on " + 
+                                              flightNumber + " seat " + 
+                                              result[1] + 
+                                              " (a seat was free) at " + new java.util.Date());
+                    showHistoryPage(historyPage);
+                    refreshFlightRow(flight);
+                    showSelectedFlight();
+                    showMessage("Seat available - booking successful!");
+                } else if (position > 0) {
+                    bookingOutputArea.setText("WAITLISTED: " + passenger.getName() + " on " + 
+                                              flightNumber + " (" + fareClass + "), position " + 
+                                              position + " at " + new java.util.Date());
+                    showMessage("Added to the waitlist at position " + position);
+                } else {
+                    showError("Passenger is already booked or waiting on this flight");
                 }
+            }, e -> showError("Error joining waitlist: " + e.getMessage()));
+        } catch (Exception e) {
+            showError("Error joining waitlist: " + e.getMessage());
+        }
+    }
+
+    private void leaveWaitlist() {
+        try {
+            if (passengerComboModel.getSelectedKey() == null || flightComboModel.getSelectedKey() == null) {
+                showError("Please select both passenger and flight");
+                return;
             }
             
-            if (passengerListModel.isEmpty()) {
-                showMessage("No passengers found matching: " + query);
+            Passenger passenger = passengerComboModel.getSelectedItem();
+            Flight flight = flightComboModel.getSelectedItem();
+            
+            if (passenger == null || flight == null) {
+                showError("Passenger or Flight not found");
+                return;
             }
+            
+            String passengerId = passenger.getPassengerId();
+            String flightNumber = flight.getFlightNumber();
+            
+            tasks.submit(() -> service.leaveWaitlist(passengerId, flightNumber), left -> {
+                if (left) {
+                    bookingOutputArea.setText("LEFT WAITLIST: " + passenger.getName() + " for " + 
+                                              flightNumber + " at " + new java.util.Date());
+                    showMessage("Removed from the waitlist");
+                } else {
+                    showError("This passenger is not on the waitlist for this flight");
+                }
+            }, e -> showError("Error leaving waitlist: " + e.getMessage()));
         } catch (Exception e) {
-            showError("Error searching passengers: " + e.getMessage());
+            showError("Error leaving waitlist: " + e.getMessage());
         }
     }
 
-    private void searchFlights() {
+    // Books several passengers on one or more flights (a family, a round
+    // trip) in one step: either everyone gets every seat or nothing changes
+    private void bookGroup() {
         try {
-            String query = searchFlightField.getText().toLowerCase();
-            flightListModel.clear();
+            Passenger selectedPassenger = passengerComboModel.getSelectedItem();
+            Flight selectedFlight = flightComboModel.getSelectedItem();
+            JTextField groupPassengersField = new JTextField(
+                    selectedPassenger == null ? "" : selectedPassenger.getPassengerId(), 30);
+            JTextField groupFlightsField = new JTextField(
+                    selectedFlight == null ? "" : selectedFlight.getFlightNumber(), 30);
+            JPanel groupPanel = new JPanel(new GridLayout(4, 1, 5, 5));
+            groupPanel.add(new JLabel("Passenger IDs (comma-separated):"));
+            groupPanel.add(groupPassengersField);
+            groupPanel.add(new JLabel("Flight numbers (comma-separated):"));
+            groupPanel.add(groupFlightsField);
+            if (JOptionPane.showConfirmDialog(this, groupPanel, "Book Group",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+                return;
+            }
             
-            if (query.isEmpty()) {
-                // Show all flights if search is empty
-                for (Flight flight : flights) {
-                    flightListModel.addElement(flight.toString());
+            List<String> passengerIds = new java.util.ArrayList<>();
+            for (String id : groupPassengersField.getText().split(",")) {
+                if (!id.trim().isEmpty()) {
+                    passengerIds.add(id.trim());
+                }
+            }
+            List<String> flightNumbers = new java.util.ArrayList<>();
+            for (String number : groupFlightsField.getText().split(",")) {
+                if (!number.trim().isEmpty()) {
+                    flightNumbers.add(number.trim());
                 }
+            }
+            if (passengerIds.isEmpty() || flightNumbers.isEmpty()) {
+                showError("Please enter at least one passenger and one flight");
                 return;
             }
             
-            for (Flight flight : flights) {
-                if (flight.getFlightNumber().toLowerCase().contains(query) ||
-                    flight.getDepartureCity().toLowerCase().contains(query) ||
-                    flight.getArrivalCity().toLowerCase().contains(query) ||
-                    flight.getDepartureTime().toLowerCase().contains(query) ||
-                    flight.getArrivalTime().toLowerCase().contains(query)) {
-                    flightListModel.addElement(flight.toString());
+            tasks.submit(() -> service.bookGroup(passengerIds, flightNumbers), booked -> {
+                if (booked) {
+                    bookingOutputArea.setText("BOOKED GROUP: " + String.join(", ", passengerIds) + " on " + 
+                                              String.join(", ", flightNumbers) + " at " + 
+                                              new java.util.Date());
+                    showHistoryPage(historyPage);
+                    for (String flightNumber : flightNumbers) {
+                        flightListModel.refresh(flightNumber);
+                    }
+                    showSelectedFlight();
+                    showMessage("Group booking successful!");
+                } else {
+                    showError("Group not booked: a passenger or flight is unknown, already booked, or short of seats");
                 }
+            }, e -> showError("Error booking group: " + e.getMessage()));
+        } catch (Exception e) {
+            showError("Error booking group: " + e.getMessage());
+        }
+    }
+
+    // Keeps a seat for SeatHold.DEFAULT_HOLD_SECONDS while the customer
+    // decides; Book Flight then takes the held seat
+    private void holdSeat() {
+        try {
+            if (passengerComboModel.getSelectedKey() == null || flightComboModel.getSelectedKey() == null) {
+                showError("Please select both passenger and flight");
+                return;
             }
             
-            if (flightListModel.isEmpty()) {
-                showMessage("No flights found matching: " + query);
+            Passenger passenger = passengerComboModel.getSelectedItem();
+            Flight flight = flightComboModel.getSelectedItem();
+            
+            if (passenger == null || flight == null) {
+                showError("Passenger or Flight not found");
+                return;
             }
+            
+            String passengerId = passenger.getPassengerId();
+            String flightNumber = flight.getFlightNumber();
+            
+            tasks.submit(() -> service.holdSeat(passengerId, flightNumber, SeatHold.DEFAULT_HOLD_SECONDS), hold -> {
+                if (hold != null) {
+                    String until = new java.text.SimpleDateFormat("HH:mm:ss").format(new java.util.Date(hold.getExpiresAt()));
+                    bookingOutputArea.setText("HELD: a seat on " + flightNumber + " for " + 
+                                              passenger.getName() + " until " + until);
+                    refreshFlightRow(flight);
+                    showSelectedFlight();
+                    showMessage("Seat held until " + until);
+                } else {
+                    showError("No available seats on this flight or passenger already booked");
+                }
+            }, e -> showError("Error holding seat: " + e.getMessage()));
         } catch (Exception e) {
-            showError("Error searching flights: " + e.getMessage());
+            showError("Error holding seat: " + e.getMessage());
         }
     }
 
-    // Helper methods
-    private Passenger findPassengerById(String id) {
-        for (Passenger passenger : passengers) {
-            if (passenger.getPassengerId().equals(id)) {
-                return passenger;
+    private void releaseHold() {
+        try {
+            if (passengerComboModel.getSelectedKey() == null || flightComboModel.getSelectedKey() == null) {
+                showError("Please select both passenger and flight");
+                return;
+            }
+            
+            Passenger passenger = passengerComboModel.getSelectedItem();
+            Flight flight = flightComboModel.getSelectedItem();
+            
+            if (passenger == null || flight == null) {
+                showError("Passenger or Flight not found");
+                return;
             }
+            
+            String passengerId = passenger.getPassengerId();
+            String flightNumber = flight.getFlightNumber();
+            
+            tasks.submit(() -> service.releaseHold(passengerId, flightNumber), released -> {
+                if (released) {
+                    bookingOutputArea.setText("RELEASED: held seat on " + flightNumber + " for " + 
+                                              passenger.getName() + " at " + new java.util.Date());
+                    refreshFlightRow(flight);
+                    showSelectedFlight();
+                    showMessage("Hold released");
+                } else {
+                    showError("This passenger has no hold on this flight (it may have expired)");
+                }
+            }, e -> showError("Error releasing hold: " + e.getMessage()));
+        } catch (Exception e) {
+            showError("Error releasing hold: " + e.getMessage());
         }
-        return null;
     }
 
-    private Flight findFlightByNumber(String number) {
-        for (Flight flight : flights) {
-            if (flight.getFlightNumber().equals(number)) {
-                return flight;
-            }
+    // Search functionality
+    private void searchPassengers() {
+        try {
+            passengerSearch.run(true);
+        } catch (Exception e) {
+            showError("Error searching passengers: " + e.getMessage());
         }
-        return null;
     }
 
-    private void updatePassengerCombo() {
-        passengerCombo.removeAllItems();
-        for (Passenger passenger : passengers) {
-            passengerCombo.addItem(passenger.getPassengerId() + " | " + passenger.getName());
+    private void searchFlights() {
+        try {
+            flightSearch.run(true);
+        } catch (Exception e) {
+            showError("Error searching flights: " + e.getMessage());
         }
     }
 
-    private void updateFlightCombo() {
-        flightCombo.removeAllItems();
-        for (Flight flight : flights) {
-            flightCombo.addItem(flight.getFlightNumber() + " | " + flight.getDepartureCity() + " to " + flight.getArrivalCity());
+    // Route queries
+    private RouteQuery readRouteQuery() {
+        String from = routeFromField.getText().trim();
+        String to = routeToField.getText().trim();
+        String after = routeAfterField.getText().trim();
+        String before = routeBeforeField.getText().trim();
+        String seatsText = routeSeatsField.getText().trim();
+        
+        String problem = Validation.checkRouteQuery(from, to, after, before, seatsText);
+        if (problem != null) {
+            showError(problem);
+            return null;
+        }
+        
+        int seats = seatsText.isEmpty() ? 1 : Integer.parseInt(seatsText);
+        return new RouteQuery(from, to, FlightTimes.toMinutes(after), FlightTimes.toMinutes(before), seats);
+    }
+
+    private void findRoute() {
+        try {
+            RouteQuery query = readRouteQuery();
+            if (query == null) {
+                return;
+            }
+            
+            tasks.submit(() -> service.findFlights(query), matches -> {
+                StringBuilder text = new StringBuilder();
+                text.append(matches.size()).append(" direct flight(s) from ").append(query.getFromCity())
+                    .append(" to ").append(query.getToCity()).append("\n");
+                for (Flight flight : matches) {
+                    text.append(flight).append("\n");
+                }
+                routeOutputArea.setText(text.toString());
+            }, e -> showError("Error finding flights: " + e.getMessage()));
+        } catch (Exception e) {
+            showError("Error finding flights: " + e.getMessage());
         }
     }
 
+    private void findConnections() {
+        try {
+            RouteQuery query = readRouteQuery();
+            if (query == null) {
+                return;
+            }
+            ConnectionFinder.Order order = (ConnectionFinder.Order) connectionOrderCombo.getSelectedItem();
+            
+            tasks.submit(() -> service.findConnections(query, order, 10), itineraries -> {
+                StringBuilder text = new StringBuilder();
+                text.append(itineraries.size()).append(" itinerary(s) from ").append(query.getFromCity())
+                    .append(" to ").append(query.getToCity()).append("\n");
+                for (Itinerary itinerary : itineraries) {
+                    text.append(itinerary).append("\n\n");
+                }
+                routeOutputArea.setText(text.toString());
+            }, e -> showError("Error finding connections: " + e.getMessage()));
+        } catch (Exception e) {
+            showError("Error finding connections: " + e.getMessage());
+        }
+    }
+
+    // Helper methods
+    private void refreshFlightRow(Flight flight) {
+        flightListModel.refresh(flight.getFlightNumber());
+    }
+
+    // Rows are fetched and formatted only when painted; the prototype row
+    // fixes the cell size so the list never measures every record
+    private <T> JList<T> createRegistryList(RegistryListModel<T> model, String prototypeRow) {
+        JList<T> list = new JList<>(model);
+        list.setCellRenderer(new RegistryListModel.RowRenderer());
+        JLabel probe = new JLabel(prototypeRow);
+        list.setFixedCellHeight(probe.getPreferredSize().height + 2);
+        list.setFixedCellWidth(probe.getPreferredSize().width);
+        return list;
+    }
+
+    // Clears the filters so the dropdowns show every passenger and flight
     private void refreshCombos() {
-        updatePassengerCombo();
-        updateFlightCombo();
+        passengerFilterField.setText("");
+        flightFilterField.setText("");
+        passengerComboSearch.run(false);
+        flightComboSearch.run(false);
         showMessage("Passenger and flight lists refreshed");
     }
 
@@ -860,12 +1112,81 @@ public class AirlineReservationSystemUI2 extends JFrame {
         flightOutputArea.setText("");
     }
 
+    // Shows one page of the history for the chosen scope, newest first
+    private void showHistoryPage(int page) {
+        if (page < 0) {
+            return;
+        }
+        int scope = historyScopeCombo.getSelectedIndex();
+        String key = historyKeyField.getText().trim();
+        if (scope != 0 && key.isEmpty()) {
+            showError("Please enter a " + HISTORY_SCOPES[scope].toLowerCase());
+            return;
+        }
+        tasks.submit(() -> {
+            int total = scope == 0 ? history.size()
+                        : scope == 1 ? history.sizeForPassenger(key) : history.sizeForFlight(key);
+            int pages = Math.max(1, (total + HISTORY_PAGE_SIZE - 1) / HISTORY_PAGE_SIZE);
+            int shown = Math.min(page, pages - 1);
+            List<BookingEvent> events = scope == 0 ? history.page(shown, HISTORY_PAGE_SIZE)
+                                        : scope == 1 ? history.passengerPage(key, shown, HISTORY_PAGE_SIZE)
+                                        : history.flightPage(key, shown, HISTORY_PAGE_SIZE);
+            List<String> rows = new java.util.ArrayList<>(events.size());
+            for (BookingEvent event : events) {
+                rows.add(formatHistoryEvent(event));
+            }
+            return new HistoryPage(shown, pages, rows);
+        }, result -> {
+            historyPage = result.page;
+            historyPageLabel.setText("Page " + (result.page + 1) + " of " + result.pages);
+            historyListModel.clear();
+            for (String row : result.rows) {
+                historyListModel.addElement(row);
+            }
+        }, e -> showError("Error loading booking history: " + e.getMessage()));
+    }
+
+    // Names come from the registries; a deleted passenger or flight shows its ID
+    private String formatHistoryEvent(BookingEvent event) {
+        Passenger passenger = passengers.get(event.getPassengerId());
+        Flight flight = flights.get(event.getFlightNumber());
+        String name = passenger != null ? passenger.getName() : event.getPassengerId();
+        String route = flight != null ? " (" + flight.getDepartureCity() + " to " + flight.getArrivalCity() + ")" : "";
+        String verb = event.getType() == BookingEvent.Type.BOOKED ? "BOOKED: " + name + " on " : "CANCELLED: " + name + " from ";
+        return verb + event.getFlightNumber() + " seat " + event.getSeatNumber() + route
+               + " at " + new java.util.Date(event.getTime());
+    }
+
+    // Writes a final snapshot so the next start does not replay the journal
+    private void closeStore() {
+        try {
+            tasks.shutdown();
+            service.close();
+        } catch (Exception e) {
+            // The window is closing, so this one has to be a dialog
+            JOptionPane.showMessageDialog(this, "Error saving data: " + e.getMessage(),
+                                          "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void showError(String message) {
-        JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
+        statusBar.error(message);
     }
 
     private void showMessage(String message) {
-        JOptionPane.showMessageDialog(this, message, "Information", JOptionPane.INFORMATION_MESSAGE);
+        statusBar.info(message);
+    }
+
+    private static class HistoryPage {
+        final int page;
+        final int pages;
+        final List<String> rows;
+
+        HistoryPage(int page, int pages, List<String> rows) {
+            this.page = page;
+            this.pages = pages;
+            this.rows = rows;
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,38 @@
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Runs domain work off the Swing Event Dispatch Thread. Tasks execute one at
+// a time in submission order, so list models updated from the callbacks stay
+// in step with the registries. Callbacks are delivered on the EDT.
+class BackgroundTasks {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reservation-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public <T> void submit(Callable<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        executor.execute(() -> {
+            try {
+                T result = work.call();
+                SwingUtilities.invokeLater(() -> onSuccess.accept(result));
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> onFailure.accept(e));
+            }
+        });
+    }
+
+    // Lets already submitted tasks finish, waiting a few seconds at most
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Command-line import and export against a data directory, without the UI.
+// Do not run it while the UI has the same data directory open.
+class BatchTool {
+    private static final String USAGE =
+            "Usage: java BatchTool import|export passengers|flights <file.csv|file.json> [data-directory]";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4
+            || !(args[0].equals("import") || args[0].equals("export"))
+            || !(args[1].equals("passengers") || args[1].equals("flights"))) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        boolean passengers = args[1].equals("passengers");
+        Path file = Paths.get(args[2]);
+        Path directory = Paths.get(args.length == 4 ? args[3] : "data");
+
+        BookingEngine engine = new BookingEngine(new PassengerRegistry(), new FlightRegistry());
+        ReservationStore store = ReservationStore.open(directory, engine);
+        LogNotifier log = new LogNotifier(System.err);
+        store.setNotifier(log);
+        try {
+            long start = System.nanoTime();
+            if (args[0].equals("export")) {
+                int written = passengers ? BatchTransfer.exportPassengers(engine.getPassengers(), file)
+                                         : BatchTransfer.exportFlights(engine.getFlights(), file);
+                System.out.println("Exported " + written + " " + args[1] + " to " + file
+                                   + " in " + millisSince(start) + " ms");
+                return;
+            }
+            BatchTransfer.Report report = passengers
+                    ? BatchTransfer.importPassengers(file, engine, log::error)
+                    : BatchTransfer.importFlights(file, engine, log::error);
+            System.out.println("Imported " + report.getImported() + " of " + report.getRows() + " " + args[1]
+                               + " (" + report.getFailed() + " rejected) in " + millisSince(start) + " ms");
+        } finally {
+            store.close();
+            log.flush();
+        }
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Bulk import and export of passengers and flights as CSV or JSON.
+// Importing streams the file: rows are cut into chunks, chunks are trimmed,
+// validated and turned into records on a pool of worker threads, and the
+// results are applied to the engine in file order with one addAll per chunk,
+// so listeners such as the search and route indexes take each chunk as a
+// single batch. Only a few chunks are in flight at a time, so memory stays
+// flat however large the file is. Invalid rows and duplicate keys are
+// reported per row and skipped; the rest of the file is still imported.
+class BatchTransfer {
+    static final String[] PASSENGER_COLUMNS = {"id", "name", "email", "phone"};
+    static final String[] FLIGHT_COLUMNS = {"number", "from", "to", "departure", "arrival", "seats"};
+    private static final boolean[] PASSENGER_NUMERIC = {false, false, false, false};
+    private static final boolean[] FLIGHT_NUMERIC = {false, false, false, false, false, true};
+    private static final int CHUNK_ROWS = 10_000;
+
+    // Counts for one import
+    static class Report {
+        private int rows;
+        private int imported;
+
+        public int getRows() { return rows; }
+        public int getImported() { return imported; }
+        public int getFailed() { return rows - imported; }
+    }
+
+    // Turns trimmed fields into a record, or throws with the reason the row
+    // is invalid
+    private interface RowParser<T> {
+        T parse(String[] fields);
+    }
+
+    private interface BatchAdder<T> {
+        List<T> add(List<T> batch);
+    }
+
+    private static class Chunk<T> {
+        final List<T> records = new ArrayList<>();
+        final List<Integer> lines = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+    }
+
+    private BatchTransfer() {
+    }
+
+    public static Report importPassengers(Path file, BookingEngine engine, Consumer<String> errors)
+            throws IOException {
+        try (RecordReader in = RecordReader.open(file, PASSENGER_COLUMNS)) {
+            return importPassengers(in, engine, errors);
+        }
+    }
+
+    // Imports from a reader opened with PASSENGER_COLUMNS
+    public static Report importPassengers(RecordReader in, BookingEngine engine, Consumer<String> errors)
+            throws IOException {
+        return importRows(in, fields -> {
+            String problem = Validation.checkPassenger(fields[0], fields[1], fields[2], fields[3]);
+            if (problem != null) {
+                throw new IllegalArgumentException(problem);
+            }
+            return new Passenger(fields[0], fields[1], fields[2], fields[3]);
+        }, engine::addPassengers, "Passenger ID already exists", errors);
+    }
+
+    public static Report importFlights(Path file, BookingEngine engine, Consumer<String> errors)
+            throws IOException {
+        try (RecordReader in = RecordReader.open(file, FLIGHT_COLUMNS)) {
+            return importFlights(in, engine, errors);
+        }
+    }
+
+    // Imports from a reader opened with FLIGHT_COLUMNS
+    public static Report importFlights(RecordReader in, BookingEngine engine, Consumer<String> errors)
+            throws IOException {
+        return importRows(in, fields -> {
+            String problem = Validation.checkFlight(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]);
+            if (problem != null) {
+                throw new IllegalArgumentException(problem);
+            }
+            return new Flight(fields[0], fields[1], fields[2], fields[3], fields[4], Integer.parseInt(fields[5]));
+        }, engine::addFlights, "Flight number already exists", errors);
+    }
+
+    // Returns the number of passengers written
+    public static int exportPassengers(PassengerRegistry passengers, Path file) throws IOException {
+        int written = 0;
+        try (RecordWriter out = RecordWriter.open(file, PASSENGER_COLUMNS, PASSENGER_NUMERIC)) {
+            for (String key : passengers.keys()) {
+                Passenger passenger = passengers.get(key);
+                if (passenger != null) {
+                    out.write(passenger.getPassengerId(), passenger.getName(), passenger.getEmail(),
+                              passenger.getPhone());
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    // Exports the schedule; capacities are written, bookings are not
+    public static int exportFlights(FlightRegistry flights, Path file) throws IOException {
+        int written = 0;
+        try (RecordWriter out = RecordWriter.open(file, FLIGHT_COLUMNS, FLIGHT_NUMERIC)) {
+            for (String key : flights.keys()) {
+                Flight flight = flights.get(key);
+                if (flight != null) {
+                    out.write(flight.getFlightNumber(), flight.getDepartureCity(), flight.getArrivalCity(),
+                              flight.getDepartureTime(), flight.getArrivalTime(),
+                              String.valueOf(flight.getCapacity()));
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    private static <T> Report importRows(RecordReader in, RowParser<T> parser, BatchAdder<T> adder,
+                                         String duplicateMessage, Consumer<String> errors) throws IOException {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "batch-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Report report = new Report();
+        ArrayDeque<Future<Chunk<T>>> inFlight = new ArrayDeque<>();
+        try {
+            List<String[]> rows = new ArrayList<>(CHUNK_ROWS);
+            int[] lines = new int[CHUNK_ROWS];
+            String[] row;
+            while ((row = in.next()) != null) {
+                lines[rows.size()] = in.getLine();
+                rows.add(row);
+                report.rows++;
+                if (rows.size() == CHUNK_ROWS) {
+                    inFlight.add(submit(pool, rows, lines, parser));
+                    rows = new ArrayList<>(CHUNK_ROWS);
+                    lines = new int[CHUNK_ROWS];
+                    // Keeps memory bounded when parsing outruns the registry
+                    if (inFlight.size() > workers * 2) {
+                        apply(inFlight.poll(), adder, duplicateMessage, errors, report);
+                    }
+                }
+            }
+            if (!rows.isEmpty()) {
+                inFlight.add(submit(pool, rows, lines, parser));
+            }
+            while (!inFlight.isEmpty()) {
+                apply(inFlight.poll(), adder, duplicateMessage, errors, report);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return report;
+    }
+
+    private static <T> Future<Chunk<T>> submit(ExecutorService pool, List<String[]> rows, int[] lines,
+                                               RowParser<T> parser) {
+        return pool.submit(() -> {
+            Chunk<T> chunk = new Chunk<>();
+            for (int i = 0; i < rows.size(); i++) {
+                String[] fields = rows.get(i);
+                for (int f = 0; f < fields.length; f++) {
+                    fields[f] = fields[f].trim();
+                }
+                try {
+                    chunk.records.add(parser.parse(fields));
+                    chunk.lines.add(lines[i]);
+                } catch (IllegalArgumentException e) {
+                    chunk.errors.add("Line " + lines[i] + ": " + e.getMessage());
+                }
+            }
+            return chunk;
+        });
+    }
+
+    private static <T> void apply(Future<Chunk<T>> pending, BatchAdder<T> adder, String duplicateMessage,
+                                  Consumer<String> errors, Report report) throws IOException {
+        Chunk<T> chunk;
+        try {
+            chunk = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed", e.getCause());
+        }
+        chunk.errors.forEach(errors);
+        List<T> rejected = adder.add(chunk.records);
+        report.imported += chunk.records.size() - rejected.size();
+        if (!rejected.isEmpty()) {
+            Map<T, Integer> lineOf = new IdentityHashMap<>();
+            for (int i = 0; i < chunk.records.size(); i++) {
+                lineOf.put(chunk.records.get(i), chunk.lines.get(i));
+            }
+            for (T record : rejected) {
+                errors.accept("Line " + lineOf.get(record) + ": " + duplicateMessage);
+            }
+        }
+    }
+}
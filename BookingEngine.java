@@ -0,0 +1,1036 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Headless booking core shared by every channel. Seat changes on a flight
+// happen under that flight's stripe lock, so concurrent callers can never
+// overbook or double-book, while bookings on different flights proceed in
+// parallel. Every change also holds the checkpoint lock in shared mode, so
+// runExclusively can take a consistent snapshot of the whole state.
+// A reverse index from passenger to booked flights, built on first use and
+// then kept up to date under the same stripe locks, lets passenger deletion
+// and booking lookups touch only the flights a passenger is on. Each
+// flight can have a waitlist, also guarded by its stripe lock: whenever a
+// seat frees up (a cancellation, a removed passenger, more seats) the head
+// of the waitlist is booked into it before the lock is released. A seat
+// can also be held for a passenger for a limited time; holds expire through
+// a TimingWheel and are kept in memory only, so a restart ends them all as
+// if they had expired. Every public operation is timed and counted in the
+// engine's Metrics, and booked seats and capacity are summed over all
+// flights as they change, so reports need not build every flight.
+class BookingEngine {
+    private static final int LOCK_STRIPES = 64;
+    private static final long HOLD_TICK_MILLIS = 50;
+
+    private final PassengerRegistry passengers;
+    private final FlightRegistry flights;
+    private final ReentrantLock[] locks;
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private volatile ChangeLog changeLog;
+    private volatile BookingHistory history;
+    private final Map<String, Set<String>> flightsByPassenger = new ConcurrentHashMap<>();
+    private volatile boolean bookingIndexBuilt;
+    // Totals over the flights in the registry; each change is added under
+    // its flight's lock
+    private final LongAdder bookedSeats = new LongAdder();
+    private final LongAdder seatCapacity = new LongAdder();
+    // Only flights with someone waiting have an entry
+    private final Map<String, Waitlist> waitlists = new ConcurrentHashMap<>();
+    private volatile Notifier notifier;
+    // Unexpired holds by passenger, then flight number; each changes under
+    // its flight's stripe lock
+    private final Map<String, Map<String, SeatHold>> holdsByPassenger = new ConcurrentHashMap<>();
+    private final TimingWheel<SeatHold> holdExpiry = new TimingWheel<>(HOLD_TICK_MILLIS, "hold-expiry", this::expireHold);
+    // Operations are looked up once, keeping the per-call cost to a counter
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Operation addPassengerMetric = metrics.operation("passenger.add");
+    private final Metrics.Operation addPassengersMetric = metrics.operation("passenger.addBatch");
+    private final Metrics.Operation updatePassengerMetric = metrics.operation("passenger.update");
+    private final Metrics.Operation addFlightMetric = metrics.operation("flight.add");
+    private final Metrics.Operation addFlightsMetric = metrics.operation("flight.addBatch");
+    private final Metrics.Operation updateFlightMetric = metrics.operation("flight.update");
+    private final Metrics.Operation bookMetric = metrics.operation("booking.book");
+    private final Metrics.Operation bookGroupMetric = metrics.operation("booking.group");
+    private final Metrics.Operation cancelMetric = metrics.operation("booking.cancel");
+    private final Metrics.Operation setSeatsMetric = metrics.operation("flight.setSeats");
+    private final Metrics.Operation bookedFlightsMetric = metrics.operation("booking.lookup");
+    private final Metrics.Operation removePassengerMetric = metrics.operation("passenger.remove");
+    private final Metrics.Operation removeFlightMetric = metrics.operation("flight.remove");
+    private final Metrics.Operation joinWaitlistMetric = metrics.operation("waitlist.join");
+    private final Metrics.Operation leaveWaitlistMetric = metrics.operation("waitlist.leave");
+    private final Metrics.Operation holdMetric = metrics.operation("hold.place");
+    private final Metrics.Operation confirmHoldMetric = metrics.operation("hold.confirm");
+    private final Metrics.Operation releaseHoldMetric = metrics.operation("hold.release");
+    private final Metrics.Operation expireHoldMetric = metrics.operation("hold.expire");
+
+    public BookingEngine(PassengerRegistry passengers, FlightRegistry flights) {
+        this.passengers = passengers;
+        this.flights = flights;
+        this.locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        recountSeats();
+    }
+
+    public PassengerRegistry getPassengers() { return passengers; }
+    public FlightRegistry getFlights() { return flights; }
+    public void setChangeLog(ChangeLog changeLog) { this.changeLog = changeLog; }
+    public void setHistory(BookingHistory history) { this.history = history; }
+    public Metrics getMetrics() { return metrics; }
+    public long getBookedSeats() { return bookedSeats.sum(); }
+    public long getSeatCapacity() { return seatCapacity.sum(); }
+    // Told about each waitlist promotion
+    public void setNotifier(Notifier notifier) { this.notifier = notifier; }
+
+    // Passenger and flight records
+    public boolean addPassenger(Passenger passenger) {
+        return addPassengerMetric.time(() -> {
+            boolean added;
+            checkpointLock.readLock().lock();
+            try {
+                added = passengers.add(passenger);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable();
+            return added;
+        }, added -> added);
+    }
+
+    // Adds a batch in one registry change; returns the records whose keys
+    // were already taken
+    public List<Passenger> addPassengers(List<Passenger> batch) {
+        return addPassengersMetric.time(() -> {
+            List<Passenger> rejected;
+            checkpointLock.readLock().lock();
+            try {
+                rejected = passengers.addAll(batch);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable();
+            return rejected;
+        }, rejected -> rejected.isEmpty());
+    }
+
+    // Call after changing the passenger's fields
+    public boolean updatePassenger(Passenger passenger) {
+        return updatePassengerMetric.time(() -> {
+            boolean updated;
+            checkpointLock.readLock().lock();
+            try {
+                updated = passengers.update(passenger);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable();
+            return updated;
+        }, updated -> updated);
+    }
+
+    public boolean addFlight(Flight flight) {
+        return addFlightMetric.time(() -> {
+            boolean added;
+            // Counted before it is added: once it is in the registry, bookings
+            // on it count themselves
+            int booked = flight.getBookedCount();
+            int capacity = flight.getCapacity();
+            checkpointLock.readLock().lock();
+            try {
+                added = flights.add(flight);
+                if (added) {
+                    bookedSeats.add(booked);
+                    seatCapacity.add(capacity);
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable();
+            return added;
+        }, added -> added);
+    }
+
+    public List<Flight> addFlights(List<Flight> batch) {
+        return addFlightsMetric.time(() -> {
+            List<Flight> rejected;
+            long booked = 0;
+            long capacity = 0;
+            for (Flight flight : batch) {
+                booked += flight.getBookedCount();
+                capacity += flight.getCapacity();
+            }
+            checkpointLock.readLock().lock();
+            try {
+                rejected = flights.addAll(batch);
+                for (Flight flight : rejected) {
+                    booked -= flight.getBookedCount();
+                    capacity -= flight.getCapacity();
+                }
+                bookedSeats.add(booked);
+                seatCapacity.add(capacity);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable();
+            return rejected;
+        }, rejected -> rejected.isEmpty());
+    }
+
+    // Call after changing the flight's fields
+    public boolean updateFlight(Flight flight) {
+        return updateFlightMetric.time(() -> {
+            boolean updated;
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flight.getFlightNumber());
+            lock.lock();
+            try {
+                Flight previous = flights.get(flight.getFlightNumber());
+                updated = flights.update(flight);
+                // A replacement record brings its own seats
+                if (updated && previous != flight) {
+                    bookedSeats.add(flight.getBookedCount() - previous.getBookedCount());
+                    seatCapacity.add(flight.getCapacity() - previous.getCapacity());
+                }
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable();
+            return updated;
+        }, updated -> updated);
+    }
+
+    // Bookings
+    // Returns the seat assigned, or -1 if the passenger was not booked
+    public int book(String passengerId, String flightNumber) {
+        return bookMetric.time(() -> {
+            Flight flight = flights.get(flightNumber);
+            if (flight == null) {
+                return -1;
+            }
+            long sequence = -1;
+            int seatNumber = -1;
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flightNumber);
+            lock.lock();
+            try {
+                // Checked under the lock so a concurrent removePassenger cannot
+                // leave a booking behind for a deleted passenger, and a flight
+                // removed meanwhile takes no bookings
+                if (passengers.contains(passengerId) && flights.get(flightNumber) == flight) {
+                    // A seat the passenger holds is theirs to book
+                    SeatHold hold = getHold(passengerId, flightNumber);
+                    if (hold != null) {
+                        endHoldLocked(hold);
+                    }
+                    sequence = bookLocked(passengerId, flight, events);
+                    if (sequence >= 0) {
+                        seatNumber = flight.getSeatNumber(passengerId);
+                    }
+                }
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            awaitDurable(sequence);
+            return seatNumber;
+        }, seatNumber -> seatNumber > 0);
+    }
+
+    public boolean cancel(String passengerId, String flightNumber) {
+        return cancelMetric.time(() -> {
+            Flight flight = flights.get(flightNumber);
+            if (flight == null) {
+                return false;
+            }
+            long sequence;
+            List<String> promoted = new ArrayList<>();
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            try {
+                sequence = cancelUnderLock(passengerId, flight, promoted, events);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            notifyPromoted(flightNumber, promoted);
+            awaitDurable(sequence);
+            return sequence >= 0;
+        }, cancelled -> cancelled);
+    }
+
+    public boolean setAvailableSeats(String flightNumber, int availableSeats) {
+        return setSeatsMetric.time(() -> {
+            Flight flight = flights.get(flightNumber);
+            if (flight == null) {
+                return false;
+            }
+            long sequence = 0;
+            List<String> promoted = new ArrayList<>();
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flightNumber);
+            lock.lock();
+            try {
+                int capacity = flight.getCapacity();
+                flight.setAvailableSeats(availableSeats);
+                countSeats(flight, 0, flight.getCapacity() - capacity);
+                ChangeLog log = changeLog;
+                if (log != null) {
+                    // Holds are not journaled, so held seats are stored as available
+                    sequence = log.seatsChanged(flightNumber, availableSeats + flight.getHeldSeats());
+                }
+                sequence = Math.max(sequence, promoteLocked(flight, promoted, events));
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            notifyPromoted(flightNumber, promoted);
+            awaitDurable(sequence);
+            return true;
+        }, changed -> changed);
+    }
+
+    public int getAvailableSeats(String flightNumber) {
+        Flight flight = flights.get(flightNumber);
+        if (flight == null) {
+            return -1;
+        }
+        ReentrantLock lock = lockFor(flightNumber);
+        lock.lock();
+        try {
+            return flight.getAvailableSeats();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The passenger's seat on the flight, or -1 if they have none
+    public int getSeatNumber(String passengerId, String flightNumber) {
+        Flight flight = flights.get(flightNumber);
+        if (flight == null) {
+            return -1;
+        }
+        ReentrantLock lock = lockFor(flightNumber);
+        lock.lock();
+        try {
+            return flight.getSeatNumber(passengerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Null if there is no such flight
+    public FlightDetails getFlightDetails(String flightNumber) {
+        Flight flight = flights.get(flightNumber);
+        if (flight == null) {
+            return null;
+        }
+        ReentrantLock lock = lockFor(flightNumber);
+        lock.lock();
+        try {
+            return new FlightDetails(flight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Flights the passenger holds a seat on
+    public List<Flight> getBookedFlights(String passengerId) {
+        return bookedFlightsMetric.time(() -> {
+            ensureBookingIndex();
+            List<Flight> booked = new ArrayList<>();
+            Set<String> flightNumbers = flightsByPassenger.get(passengerId);
+            if (flightNumbers != null) {
+                for (String flightNumber : flightNumbers) {
+                    Flight flight = flights.get(flightNumber);
+                    if (flight != null) {
+                        booked.add(flight);
+                    }
+                }
+            }
+            return booked;
+        }, booked -> true);
+    }
+
+    // Removes the passenger and releases every seat they hold
+    public Passenger removePassenger(String passengerId) {
+        return removePassengerMetric.time(() -> {
+            ensureBookingIndex();
+            Passenger passenger;
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            try {
+                // Removed with every stripe held, so a booking that saw the
+                // passenger has reached the index and later ones will not see them
+                for (ReentrantLock lock : locks) {
+                    lock.lock();
+                }
+                try {
+                    passenger = passengers.remove(passengerId);
+                    if (passenger != null) {
+                        for (String flightNumber : new ArrayList<>(waitlists.keySet())) {
+                            removeFromWaitlistLocked(passengerId, flightNumber);
+                        }
+                    }
+                } finally {
+                    for (ReentrantLock lock : locks) {
+                        lock.unlock();
+                    }
+                }
+                Set<String> flightNumbers = flightsByPassenger.get(passengerId);
+                if (passenger != null && flightNumbers != null) {
+                    for (String flightNumber : new ArrayList<>(flightNumbers)) {
+                        Flight flight = flights.get(flightNumber);
+                        if (flight != null) {
+                            List<String> promoted = new ArrayList<>();
+                            cancelUnderLock(passengerId, flight, promoted, events);
+                            notifyPromoted(flightNumber, promoted);
+                        }
+                    }
+                }
+                // No new holds once the passenger is gone; end the ones left
+                Map<String, SeatHold> held = holdsByPassenger.get(passengerId);
+                if (passenger != null && held != null) {
+                    for (SeatHold hold : new ArrayList<>(held.values())) {
+                        List<String> promoted = new ArrayList<>();
+                        releaseHoldUnderLock(hold, promoted, events);
+                        notifyPromoted(hold.getFlightNumber(), promoted);
+                    }
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            awaitDurable();
+            return passenger;
+        }, removed -> removed != null);
+    }
+
+    public Flight removeFlight(String flightNumber) {
+        return removeFlightMetric.time(() -> {
+            Flight flight;
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flightNumber);
+            lock.lock();
+            try {
+                flight = flights.remove(flightNumber);
+                if (flight != null) {
+                    bookedSeats.add(-flight.getBookedCount());
+                    seatCapacity.add(-flight.getCapacity());
+                }
+                if (flight != null && bookingIndexBuilt) {
+                    for (String passengerId : flight.getBookedPassengers()) {
+                        unindexBooking(passengerId, flightNumber);
+                    }
+                }
+                Waitlist waitlist = waitlists.get(flightNumber);
+                if (flight != null && waitlist != null) {
+                    for (Waitlist.Entry entry : waitlist.entries()) {
+                        removeFromWaitlistLocked(entry.getPassengerId(), flightNumber);
+                    }
+                }
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable();
+            return flight;
+        }, removed -> removed != null);
+    }
+
+    // Waitlists
+    // Puts the passenger on the flight's waitlist, or books them straight
+    // away if a seat is free. Returns their position (1 is next), 0 if they
+    // were booked, or -1 if either does not exist or the passenger already
+    // has a seat, a hold or a place on the waitlist.
+    public int joinWaitlist(String passengerId, String flightNumber, FareClass fareClass) {
+        return joinWaitlistMetric.time(() -> {
+            Flight flight = flights.get(flightNumber);
+            if (flight == null) {
+                return -1;
+            }
+            long sequence = 0;
+            int position = -1;
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flightNumber);
+            lock.lock();
+            try {
+                if (passengers.contains(passengerId) && flights.get(flightNumber) == flight
+                    && !flight.isBooked(passengerId) && getHold(passengerId, flightNumber) == null) {
+                    // Promotion keeps the waitlist empty while seats are free
+                    if (flight.getAvailableSeats() > 0) {
+                        sequence = bookLocked(passengerId, flight, events);
+                        position = sequence >= 0 ? 0 : -1;
+                    } else {
+                        Waitlist waitlist = waitlists.computeIfAbsent(flightNumber, key -> new Waitlist());
+                        long requestedAt = System.currentTimeMillis();
+                        if (waitlist.add(passengerId, fareClass, requestedAt)) {
+                            ChangeLog log = changeLog;
+                            if (log != null) {
+                                sequence = log.waitlisted(passengerId, flightNumber, fareClass, requestedAt);
+                            }
+                            position = waitlist.position(passengerId);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            awaitDurable(sequence);
+            return position;
+        }, position -> position >= 0);
+    }
+
+    public boolean leaveWaitlist(String passengerId, String flightNumber) {
+        return leaveWaitlistMetric.time(() -> {
+            long sequence;
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flightNumber);
+            lock.lock();
+            try {
+                sequence = removeFromWaitlistLocked(passengerId, flightNumber);
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            awaitDurable(sequence);
+            return sequence >= 0;
+        }, left -> left);
+    }
+
+    // 1 for the next passenger to be promoted; 0 if not waiting
+    public int getWaitlistPosition(String passengerId, String flightNumber) {
+        ReentrantLock lock = lockFor(flightNumber);
+        lock.lock();
+        try {
+            Waitlist waitlist = waitlists.get(flightNumber);
+            return waitlist == null ? 0 : waitlist.position(passengerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Everyone waiting for the flight, in promotion order
+    public List<Waitlist.Entry> getWaitlist(String flightNumber) {
+        ReentrantLock lock = lockFor(flightNumber);
+        lock.lock();
+        try {
+            Waitlist waitlist = waitlists.get(flightNumber);
+            return waitlist == null ? new ArrayList<>() : waitlist.entries();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Flight numbers with someone waiting
+    public List<String> getWaitlistedFlights() {
+        return new ArrayList<>(waitlists.keySet());
+    }
+
+    // Replay a journaled waitlist entry or its removal as it was, without
+    // booking or journaling; for loading stored state
+    public void restoreWaitlistEntry(String passengerId, String flightNumber, FareClass fareClass, long requestedAt) {
+        ReentrantLock lock = lockFor(flightNumber);
+        lock.lock();
+        try {
+            waitlists.computeIfAbsent(flightNumber, key -> new Waitlist()).add(passengerId, fareClass, requestedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void discardWaitlistEntry(String passengerId, String flightNumber) {
+        ReentrantLock lock = lockFor(flightNumber);
+        lock.lock();
+        try {
+            removeFromWaitlistLocked(passengerId, flightNumber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Group and multi-flight bookings
+    // Books every passenger on every flight, or nobody on anything. The
+    // flights' stripe locks are taken in ascending stripe order, the order
+    // removePassenger uses, so overlapping groups cannot deadlock. Every seat
+    // is checked before any is booked, and the bookings are journaled as one
+    // record with a single wait for the disk. Seats the passengers hold on
+    // those flights are used first. False if a passenger or flight does not
+    // exist, a passenger is already booked on one of the flights or a flight
+    // lacks the seats.
+    public boolean bookGroup(List<String> passengerIds, List<String> flightNumbers) {
+        return bookGroupMetric.time(() -> {
+            List<String> group = new ArrayList<>(new LinkedHashSet<>(passengerIds));
+            List<Flight> legs = new ArrayList<>();
+            for (String flightNumber : new LinkedHashSet<>(flightNumbers)) {
+                Flight flight = flights.get(flightNumber);
+                if (flight == null) {
+                    return false;
+                }
+                legs.add(flight);
+            }
+            if (group.isEmpty() || legs.isEmpty()) {
+                return false;
+            }
+            int[] stripes = legs.stream().mapToInt(flight -> stripeFor(flight.getFlightNumber()))
+                                .distinct().sorted().toArray();
+            long sequence = -1;
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            try {
+                for (int stripe : stripes) {
+                    locks[stripe].lock();
+                }
+                try {
+                    if (canBookGroupLocked(group, legs)) {
+                        sequence = bookGroupLocked(group, legs, events);
+                    }
+                } finally {
+                    for (int stripe : stripes) {
+                        locks[stripe].unlock();
+                    }
+                }
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            awaitDurable(sequence);
+            return sequence >= 0;
+        }, booked -> booked);
+    }
+
+    // Seat holds
+    // Sets a seat aside for the passenger for ttlMillis. Null if either does
+    // not exist, the passenger is already booked or no seat is available.
+    // Holding again replaces the passenger's hold with a fresh one.
+    public SeatHold holdSeat(String passengerId, String flightNumber, long ttlMillis) {
+        return holdMetric.time(() -> {
+            Flight flight = flights.get(flightNumber);
+            if (flight == null) {
+                return null;
+            }
+            SeatHold hold = null;
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flightNumber);
+            lock.lock();
+            try {
+                if (passengers.contains(passengerId) && flights.get(flightNumber) == flight
+                    && !flight.isBooked(passengerId)) {
+                    SeatHold previous = getHold(passengerId, flightNumber);
+                    if (previous != null) {
+                        endHoldLocked(previous);
+                    }
+                    if (flight.holdSeat()) {
+                        hold = new SeatHold(passengerId, flight, System.currentTimeMillis() + ttlMillis);
+                        SeatHold added = hold;
+                        holdsByPassenger.compute(passengerId, (id, held) -> {
+                            Map<String, SeatHold> updated = held != null ? held : new ConcurrentHashMap<>();
+                            updated.put(flightNumber, added);
+                            return updated;
+                        });
+                        // Cannot fire before this is set: expiry needs the lock
+                        hold.expiry = holdExpiry.schedule(hold, ttlMillis);
+                    }
+                }
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            return hold;
+        }, held -> held != null);
+    }
+
+    // Books the held seat; false if the hold has expired or was released
+    public boolean confirmHold(String passengerId, String flightNumber) {
+        return confirmHoldMetric.time(() -> {
+            long sequence = -1;
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            ReentrantLock lock = lockFor(flightNumber);
+            lock.lock();
+            try {
+                SeatHold hold = getHold(passengerId, flightNumber);
+                if (hold != null) {
+                    endHoldLocked(hold);
+                    // Holds on a removed flight lapse unused
+                    if (flights.get(flightNumber) == hold.getFlight() && passengers.contains(passengerId)) {
+                        sequence = bookLocked(passengerId, hold.getFlight(), events);
+                    }
+                }
+            } finally {
+                lock.unlock();
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            awaitDurable(sequence);
+            return sequence >= 0;
+        }, confirmed -> confirmed);
+    }
+
+    // Gives the held seat back, to the waitlist first
+    public boolean releaseHold(String passengerId, String flightNumber) {
+        return releaseHoldMetric.time(() -> {
+            SeatHold hold = getHold(passengerId, flightNumber);
+            if (hold == null) {
+                return false;
+            }
+            long sequence;
+            List<String> promoted = new ArrayList<>();
+            List<BookingEvent> events = new ArrayList<>();
+            checkpointLock.readLock().lock();
+            try {
+                sequence = releaseHoldUnderLock(hold, promoted, events);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            notifyPromoted(flightNumber, promoted);
+            awaitDurable(sequence);
+            return sequence >= 0;
+        }, released -> released);
+    }
+
+    // The passenger's unexpired hold on the flight, or null
+    public SeatHold getHold(String passengerId, String flightNumber) {
+        Map<String, SeatHold> held = holdsByPassenger.get(passengerId);
+        return held == null ? null : held.get(flightNumber);
+    }
+
+    public int getHoldCount() {
+        return holdExpiry.size();
+    }
+
+    // Stops the hold expiry thread; holds then no longer expire
+    public void close() {
+        holdExpiry.close();
+    }
+
+    // Recounts the seat totals from the flights, without building lazily
+    // loaded ones; call after filling the registry around the engine, as
+    // loading stored state does
+    public void recountSeats() {
+        runExclusively(() -> {
+            bookedSeats.reset();
+            seatCapacity.reset();
+            for (FlightRegistry.SeatCount seats : flights.seatCounts()) {
+                bookedSeats.add(seats.getBooked());
+                seatCapacity.add(seats.getCapacity());
+            }
+        });
+    }
+
+    // Runs the action while no change is in progress
+    public void runExclusively(Runnable action) {
+        checkpointLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    // Call with the flight's lock held. Returns the change-log sequence of
+    // the booking (0 without a log), or -1 if the flight is full or the
+    // passenger already has a seat. The history event is added to the list.
+    private long bookLocked(String passengerId, Flight flight, List<BookingEvent> events) {
+        int seatNumber = assignLocked(passengerId, flight, events);
+        if (seatNumber < 0) {
+            return -1;
+        }
+        ChangeLog log = changeLog;
+        return log == null ? 0 : log.booked(passengerId, flight.getFlightNumber(), seatNumber);
+    }
+
+    // Books the seat without journaling it; returns the seat number, or -1
+    // as for bookLocked
+    private int assignLocked(String passengerId, Flight flight, List<BookingEvent> events) {
+        String flightNumber = flight.getFlightNumber();
+        if (!flight.bookPassenger(passengerId)) {
+            return -1;
+        }
+        int seatNumber = flight.getSeatNumber(passengerId);
+        countSeats(flight, 1, 0);
+        if (bookingIndexBuilt) {
+            indexBooking(passengerId, flightNumber);
+        }
+        events.add(new BookingEvent(0, BookingEvent.Type.BOOKED, passengerId, flightNumber, seatNumber,
+                                    System.currentTimeMillis()));
+        return seatNumber;
+    }
+
+    // Call with every leg's lock held
+    private boolean canBookGroupLocked(List<String> group, List<Flight> legs) {
+        for (String passengerId : group) {
+            if (!passengers.contains(passengerId)) {
+                return false;
+            }
+        }
+        for (Flight flight : legs) {
+            if (flights.get(flight.getFlightNumber()) != flight) {
+                return false;
+            }
+            // Seats the group already holds here are theirs
+            int seats = flight.getAvailableSeats();
+            for (String passengerId : group) {
+                if (flight.isBooked(passengerId)) {
+                    return false;
+                }
+                SeatHold hold = getHold(passengerId, flight.getFlightNumber());
+                if (hold != null && hold.getFlight() == flight) {
+                    seats++;
+                }
+            }
+            if (seats < group.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Call with every leg's lock held, once canBookGroupLocked has passed.
+    // Returns the change-log sequence of the group record (0 without a log).
+    private long bookGroupLocked(List<String> group, List<Flight> legs, List<BookingEvent> events) {
+        int size = group.size() * legs.size();
+        String[] passengerIds = new String[size];
+        String[] flightNumbers = new String[size];
+        int[] seatNumbers = new int[size];
+        int booked = 0;
+        for (Flight flight : legs) {
+            for (String passengerId : group) {
+                SeatHold hold = getHold(passengerId, flight.getFlightNumber());
+                if (hold != null) {
+                    endHoldLocked(hold);
+                }
+                passengerIds[booked] = passengerId;
+                flightNumbers[booked] = flight.getFlightNumber();
+                seatNumbers[booked] = assignLocked(passengerId, flight, events);
+                booked++;
+            }
+        }
+        ChangeLog log = changeLog;
+        return log == null ? 0 : log.bookedGroup(passengerIds, flightNumbers, seatNumbers);
+    }
+
+    // Takes the flight's lock itself, unlike the *Locked helpers. Returns the
+    // last change-log sequence of the cancellation and any promotions it
+    // caused (0 without a log), or -1 if the passenger had no seat on the
+    // flight. Promoted passengers and history events are added to the lists.
+    private long cancelUnderLock(String passengerId, Flight flight, List<String> promoted,
+                                 List<BookingEvent> events) {
+        ReentrantLock lock = lockFor(flight.getFlightNumber());
+        lock.lock();
+        try {
+            int seatNumber = flight.getSeatNumber(passengerId);
+            if (!flight.cancelBooking(passengerId)) {
+                return -1;
+            }
+            countSeats(flight, -1, 0);
+            if (bookingIndexBuilt) {
+                unindexBooking(passengerId, flight.getFlightNumber());
+            }
+            events.add(new BookingEvent(0, BookingEvent.Type.CANCELLED, passengerId, flight.getFlightNumber(),
+                                        seatNumber, System.currentTimeMillis()));
+            ChangeLog log = changeLog;
+            long sequence = log == null ? 0 : log.cancelled(passengerId, flight.getFlightNumber());
+            return Math.max(sequence, promoteLocked(flight, promoted, events));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Books waiting passengers into the flight's free seats, best first; call
+    // with the flight's lock held. Returns the last change-log sequence
+    // written (0 if none).
+    private long promoteLocked(Flight flight, List<String> promoted, List<BookingEvent> events) {
+        String flightNumber = flight.getFlightNumber();
+        Waitlist waitlist = waitlists.get(flightNumber);
+        long sequence = 0;
+        while (waitlist != null && !waitlist.isEmpty() && flight.getAvailableSeats() > 0) {
+            String passengerId = waitlist.poll().getPassengerId();
+            if (waitlist.isEmpty()) {
+                waitlists.remove(flightNumber);
+            }
+            ChangeLog log = changeLog;
+            if (log != null) {
+                sequence = Math.max(sequence, log.unwaitlisted(passengerId, flightNumber));
+            }
+            long booked = passengers.contains(passengerId) ? bookLocked(passengerId, flight, events) : -1;
+            if (booked >= 0) {
+                sequence = Math.max(sequence, booked);
+                promoted.add(passengerId);
+            }
+        }
+        return sequence;
+    }
+
+    // Call with the flight's lock held. Returns the change-log sequence (0
+    // without a log), or -1 if the passenger was not waiting.
+    private long removeFromWaitlistLocked(String passengerId, String flightNumber) {
+        Waitlist waitlist = waitlists.get(flightNumber);
+        if (waitlist == null || waitlist.remove(passengerId) == null) {
+            return -1;
+        }
+        if (waitlist.isEmpty()) {
+            waitlists.remove(flightNumber);
+        }
+        ChangeLog log = changeLog;
+        return log == null ? 0 : log.unwaitlisted(passengerId, flightNumber);
+    }
+
+    // Frees the held seat without offering it to the waitlist; call with the
+    // flight's lock held
+    private void endHoldLocked(SeatHold hold) {
+        holdsByPassenger.computeIfPresent(hold.getPassengerId(), (id, held) -> {
+            held.remove(hold.getFlightNumber(), hold);
+            return held.isEmpty() ? null : held;
+        });
+        hold.expiry.cancel();
+        hold.getFlight().releaseHeldSeat();
+    }
+
+    // Takes the flight's lock itself. Returns the last change-log sequence of
+    // the promotions the freed seat caused (0 if none), or -1 if the hold had
+    // already ended.
+    private long releaseHoldUnderLock(SeatHold hold, List<String> promoted, List<BookingEvent> events) {
+        ReentrantLock lock = lockFor(hold.getFlightNumber());
+        lock.lock();
+        try {
+            if (getHold(hold.getPassengerId(), hold.getFlightNumber()) != hold) {
+                return -1;
+            }
+            endHoldLocked(hold);
+            Flight flight = hold.getFlight();
+            return flights.get(flight.getFlightNumber()) == flight ? promoteLocked(flight, promoted, events) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Call with the flight's lock held. A flight already removed was taken
+    // out of the totals whole, so its later changes are not counted.
+    private void countSeats(Flight flight, int booked, int capacity) {
+        if (flights.get(flight.getFlightNumber()) == flight) {
+            bookedSeats.add(booked);
+            seatCapacity.add(capacity);
+        }
+    }
+
+    // Runs on the wheel's thread. Promotions are journaled but not awaited,
+    // so one slow flush does not hold up the other expiries.
+    private void expireHold(SeatHold hold) {
+        expireHoldMetric.time(() -> {
+            List<String> promoted = new ArrayList<>();
+            List<BookingEvent> events = new ArrayList<>();
+            long sequence;
+            checkpointLock.readLock().lock();
+            try {
+                sequence = releaseHoldUnderLock(hold, promoted, events);
+            } finally {
+                checkpointLock.readLock().unlock();
+            }
+            recordHistory(events);
+            notifyPromoted(hold.getFlightNumber(), promoted);
+            return sequence >= 0;
+        }, expired -> expired);
+    }
+
+    // Called with no lock held, once the changes are journaled, so history
+    // writes do not queue every stripe on the history's monitor. The journal
+    // is the durable record, so a failed history write is reported and the
+    // booking stands.
+    private void recordHistory(List<BookingEvent> events) {
+        BookingHistory target = history;
+        if (target == null || events.isEmpty()) {
+            return;
+        }
+        try {
+            target.record(events);
+        } catch (RuntimeException e) {
+            Notifier report = notifier;
+            if (report != null) {
+                report.error("Booking history not updated: " + e.getMessage());
+            }
+        }
+    }
+
+    private void notifyPromoted(String flightNumber, List<String> promoted) {
+        Notifier target = notifier;
+        if (target != null) {
+            for (String passengerId : promoted) {
+                target.info("Passenger " + passengerId + " moved from the waitlist onto flight " + flightNumber);
+            }
+        }
+    }
+
+    // Seats loaded from disk bypass the engine, so the index is built from
+    // the flights the first time it is needed, while nothing else changes
+    private void ensureBookingIndex() {
+        if (bookingIndexBuilt) {
+            return;
+        }
+        runExclusively(() -> {
+            if (!bookingIndexBuilt) {
+                for (Flight flight : flights) {
+                    for (String passengerId : flight.getBookedPassengers()) {
+                        indexBooking(passengerId, flight.getFlightNumber());
+                    }
+                }
+                bookingIndexBuilt = true;
+            }
+        });
+    }
+
+    // Per-passenger sets are added and dropped atomically, so two flights
+    // changing the same passenger's bookings cannot lose an entry
+    private void indexBooking(String passengerId, String flightNumber) {
+        flightsByPassenger.compute(passengerId, (id, flightNumbers) -> {
+            Set<String> updated = flightNumbers != null ? flightNumbers : ConcurrentHashMap.<String>newKeySet();
+            updated.add(flightNumber);
+            return updated;
+        });
+    }
+
+    private void unindexBooking(String passengerId, String flightNumber) {
+        flightsByPassenger.computeIfPresent(passengerId, (id, flightNumbers) -> {
+            flightNumbers.remove(flightNumber);
+            return flightNumbers.isEmpty() ? null : flightNumbers;
+        });
+    }
+
+    private void awaitDurable() {
+        ChangeLog log = changeLog;
+        if (log != null) {
+            log.awaitDurable(log.lastSequence());
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        ChangeLog log = changeLog;
+        if (log != null && sequence > 0) {
+            log.awaitDurable(sequence);
+        }
+    }
+
+    private ReentrantLock lockFor(String flightNumber) {
+        return locks[stripeFor(flightNumber)];
+    }
+
+    private static int stripeFor(String flightNumber) {
+        int hash = flightNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+}
@@ -0,0 +1,28 @@
+// One entry in the booking history
+class BookingEvent {
+    enum Type { BOOKED, CANCELLED }
+
+    private final long sequence;
+    private final Type type;
+    private final String passengerId;
+    private final String flightNumber;
+    private final int seatNumber;
+    private final long time;
+
+    public BookingEvent(long sequence, Type type, String passengerId, String flightNumber,
+                        int seatNumber, long time) {
+        this.sequence = sequence;
+        this.type = type;
+        this.passengerId = passengerId;
+        this.flightNumber = flightNumber;
+        this.seatNumber = seatNumber;
+        this.time = time;
+    }
+
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    public String getPassengerId() { return passengerId; }
+    public String getFlightNumber() { return flightNumber; }
+    public int getSeatNumber() { return seatNumber; }
+    public long getTime() { return time; }
+}
@@ -0,0 +1,240 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Queryable booking history. Every event is appended to a history file; the
+// most recent ones are also kept in a fixed-size ring in memory. Events are
+// numbered in order, and per-passenger and per-flight indexes list the
+// numbers of their events, so any page, newest first, is found directly and
+// costs at most one positional file read per event older than the ring.
+// The file is not the durable record of bookings (the journal is); a crash
+// can lose the last few unflushed events. The engine records events after
+// releasing the flight's lock, so two racing changes to one flight can be
+// numbered out of order; each keeps the time it was made.
+// Nothing is ever dropped: the file offsets and the two indexes take 16 to
+// 32 bytes per event for as long as the history is open, and open() reads
+// the whole file to rebuild them, so memory and startup time grow with the
+// total number of events ever recorded.
+class BookingHistory implements AutoCloseable {
+    private static final int RING_CAPACITY = 10_000;
+
+    private final FileChannel reader;
+    private final OutputStream writer;
+    private final BookingEvent[] ring = new BookingEvent[RING_CAPACITY];
+    private final Map<String, EventList> byPassenger = new HashMap<>();
+    private final Map<String, EventList> byFlight = new HashMap<>();
+    // File offset of each event, by event number
+    private long[] offsets = new long[1024];
+    private int count;
+    private long fileSize;
+
+    private BookingHistory(Path file) throws IOException {
+        fileSize = load(file);
+        reader = FileChannel.open(file, StandardOpenOption.READ);
+        writer = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.WRITE,
+                                                                StandardOpenOption.APPEND));
+    }
+
+    public static BookingHistory open(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (!Files.exists(file)) {
+            Files.createFile(file);
+        }
+        return new BookingHistory(file);
+    }
+
+    // Appends the events in the order given, numbering them as they are
+    // added; their own sequence numbers are ignored
+    public synchronized void record(List<BookingEvent> events) {
+        for (BookingEvent event : events) {
+            append(event.getType(), event.getPassengerId(), event.getFlightNumber(), event.getSeatNumber(),
+                   event.getTime());
+        }
+    }
+
+    public synchronized int size() { return count; }
+
+    public synchronized int sizeForPassenger(String passengerId) {
+        EventList events = byPassenger.get(passengerId);
+        return events == null ? 0 : events.size;
+    }
+
+    public synchronized int sizeForFlight(String flightNumber) {
+        EventList events = byFlight.get(flightNumber);
+        return events == null ? 0 : events.size;
+    }
+
+    // Pages are numbered from 0, newest events first
+    public synchronized List<BookingEvent> page(int page, int pageSize) {
+        List<BookingEvent> events = new ArrayList<>(pageSize);
+        int first = count - 1 - page * pageSize;
+        for (int n = first; n >= 0 && n > first - pageSize; n--) {
+            events.add(event(n));
+        }
+        return events;
+    }
+
+    public synchronized List<BookingEvent> passengerPage(String passengerId, int page, int pageSize) {
+        return page(byPassenger.get(passengerId), page, pageSize);
+    }
+
+    public synchronized List<BookingEvent> flightPage(String flightNumber, int page, int pageSize) {
+        return page(byFlight.get(flightNumber), page, pageSize);
+    }
+
+    public synchronized void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<BookingEvent> page(EventList numbers, int page, int pageSize) {
+        List<BookingEvent> events = new ArrayList<>(pageSize);
+        if (numbers == null) {
+            return events;
+        }
+        int first = numbers.size - 1 - page * pageSize;
+        for (int i = first; i >= 0 && i > first - pageSize; i--) {
+            events.add(event(numbers.items[i]));
+        }
+        return events;
+    }
+
+    private void append(BookingEvent.Type type, String passengerId, String flightNumber, int seatNumber,
+                        long time) {
+        BookingEvent event = new BookingEvent(count, type, passengerId, flightNumber, seatNumber, time);
+        byte[] line = (format(event) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            writer.write(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException("History write failed", e);
+        }
+        add(event, fileSize);
+        fileSize += line.length;
+    }
+
+    private void add(BookingEvent event, long offset) {
+        int n = (int) event.getSequence();
+        if (n == offsets.length) {
+            offsets = Arrays.copyOf(offsets, n * 2);
+        }
+        offsets[n] = offset;
+        ring[n % RING_CAPACITY] = event;
+        byPassenger.computeIfAbsent(event.getPassengerId(), k -> new EventList()).add(n);
+        byFlight.computeIfAbsent(event.getFlightNumber(), k -> new EventList()).add(n);
+        count = n + 1;
+    }
+
+    private BookingEvent event(int n) {
+        if (n >= count - RING_CAPACITY) {
+            return ring[n % RING_CAPACITY];
+        }
+        try {
+            writer.flush();
+            return parse(n, readLine(offsets[n]));
+        } catch (IOException e) {
+            throw new UncheckedIOException("History read failed", e);
+        }
+    }
+
+    private String readLine(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        while (true) {
+            int read = reader.read(buffer, offset + buffer.position());
+            for (int i = 0; i < buffer.position(); i++) {
+                if (buffer.get(i) == '\n') {
+                    return new String(buffer.array(), 0, i, StandardCharsets.UTF_8);
+                }
+            }
+            if (read == -1) {
+                throw new IOException("Truncated history record at offset " + offset);
+            }
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+
+    // Rebuilds the indexes and the ring from the file and returns the length
+    // of its complete records; a half-written last line is cut off
+    private long load(Path file) throws IOException {
+        long offset = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            byte[] line = new byte[256];
+            int length = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = (byte) b;
+                    continue;
+                }
+                try {
+                    add(parse(count, new String(line, 0, length, StandardCharsets.UTF_8)), offset);
+                } catch (RuntimeException e) {
+                    throw new IOException("Corrupt history record at offset " + offset, e);
+                }
+                offset += length + 1;
+                length = 0;
+            }
+        }
+        if (offset < Files.size(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+            }
+        }
+        return offset;
+    }
+
+    private static String format(BookingEvent event) {
+        return ReservationStore.record(event.getType() == BookingEvent.Type.BOOKED ? "B" : "C",
+                                       event.getPassengerId(), event.getFlightNumber(),
+                                       String.valueOf(event.getSeatNumber()), String.valueOf(event.getTime()));
+    }
+
+    private static BookingEvent parse(int n, String line) {
+        String[] fields = ReservationStore.fields(line);
+        BookingEvent.Type type;
+        switch (fields[0]) {
+            case "B": type = BookingEvent.Type.BOOKED; break;
+            case "C": type = BookingEvent.Type.CANCELLED; break;
+            default: throw new IllegalArgumentException("Unknown history record: " + fields[0]);
+        }
+        return new BookingEvent(n, type, fields[1], fields[2], Integer.parseInt(fields[3]),
+                                Long.parseLong(fields[4]));
+    }
+
+    // Growable list of event numbers, in order
+    private static class EventList {
+        int[] items = new int[4];
+        int size;
+
+        void add(int n) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = n;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log of text records, one per line. Appends only
+// buffer the record; a writer thread writes out everything buffered so far
+// and forces it to disk with a single fsync, so concurrent callers share
+// the cost of each fsync (group commit). Sequence numbers keep counting
+// across rollTo, which moves the log to a new file.
+// Each line starts with the CRC-32 of its record as 8 hex digits and a
+// space, so recover can tell a record that a crash cut short from a
+// complete one even when what is left still parses.
+class BookingJournal {
+    private static final int CHECKSUM_DIGITS = 8;
+    private static final int FRAME_LENGTH = CHECKSUM_DIGITS + 1;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Object lock = new Object();
+    private final Thread writer;
+    private FileChannel channel;
+    private StringBuilder pending = new StringBuilder();
+    private long appended;
+    private long durable;
+    private long recordsInFile;
+    private boolean closed;
+    private IOException failure;
+
+    public BookingJournal(Path file) throws IOException {
+        this.channel = open(file);
+        this.writer = new Thread(this::writeLoop, "booking-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public long append(String record) {
+        String line = frame(record);
+        synchronized (lock) {
+            checkUsable();
+            pending.append(line);
+            appended++;
+            recordsInFile++;
+            lock.notifyAll();
+            return appended;
+        }
+    }
+
+    public long lastSequence() {
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    public long getRecordsInFile() {
+        synchronized (lock) {
+            return recordsInFile;
+        }
+    }
+
+    public void awaitDurable(long sequence) {
+        synchronized (lock) {
+            while (durable < sequence && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the journal", e);
+                }
+            }
+            if (durable < sequence) {
+                throw new UncheckedIOException("Journal write failed", failure);
+            }
+        }
+    }
+
+    // Makes everything appended so far durable and continues in a new file.
+    // The caller must make sure nothing is appended meanwhile.
+    public void rollTo(Path file) throws IOException {
+        awaitDurable(lastSequence());
+        FileChannel next = open(file);
+        synchronized (lock) {
+            channel.close();
+            channel = next;
+            recordsInFile = 0;
+        }
+    }
+
+    public void close() throws IOException {
+        awaitDurable(lastSequence());
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // Returns the file's records, oldest first. Whatever follows the last
+    // intact record is what a crash left of a write in progress: it is cut
+    // off the file, so the next append starts on a fresh line. A damaged
+    // record with an intact one after it cannot be a torn write, and fails
+    // with an IOException. Lines without a checksum, from earlier versions,
+    // are read as they are until the first checksummed one.
+    public static List<String> recover(Path file) throws IOException {
+        List<String> records = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return records;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        int intactEnd = 0;
+        int damagedLine = 0;
+        boolean framed = false;
+        int line = 0;
+        for (int start = 0, end; (end = indexOf(bytes, (byte) '\n', start)) >= 0; start = end + 1) {
+            line++;
+            String record;
+            if (isFramed(bytes, start, end)) {
+                framed = true;
+                record = unframe(bytes, start, end);
+            } else {
+                record = framed ? null : new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            }
+            if (record == null) {
+                if (damagedLine == 0) {
+                    damagedLine = line;
+                }
+                continue;
+            }
+            if (damagedLine != 0) {
+                throw new IOException("Corrupt journal record at line " + damagedLine + " of " + file);
+            }
+            records.add(record);
+            intactEnd = end + 1;
+        }
+        if (intactEnd < bytes.length) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(intactEnd);
+                channel.force(false);
+            }
+        }
+        return records;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            StringBuilder batch;
+            long upTo;
+            FileChannel target;
+            synchronized (lock) {
+                while (pending.length() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.length() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = new StringBuilder();
+                upTo = appended;
+                target = channel;
+            }
+            try {
+                ByteBuffer buffer = StandardCharsets.UTF_8.encode(batch.toString());
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                target.force(false);
+                synchronized (lock) {
+                    durable = upTo;
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private void checkUsable() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+    }
+
+    private static String frame(String record) {
+        long checksum = checksum(record.getBytes(StandardCharsets.UTF_8));
+        StringBuilder line = new StringBuilder(FRAME_LENGTH + record.length() + 1);
+        for (int shift = 4 * (CHECKSUM_DIGITS - 1); shift >= 0; shift -= 4) {
+            line.append(HEX_DIGITS[(int) (checksum >>> shift) & 0xf]);
+        }
+        return line.append(' ').append(record).append('\n').toString();
+    }
+
+    // Unframed records start with their type and a tab, so they never look
+    // framed
+    private static boolean isFramed(byte[] bytes, int start, int end) {
+        if (end - start < FRAME_LENGTH || bytes[start + CHECKSUM_DIGITS] != ' ') {
+            return false;
+        }
+        for (int i = start; i < start + CHECKSUM_DIGITS; i++) {
+            if (Character.digit(bytes[i], 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The record, or null if it does not match its checksum
+    private static String unframe(byte[] bytes, int start, int end) {
+        long expected = Long.parseLong(new String(bytes, start, CHECKSUM_DIGITS, StandardCharsets.US_ASCII), 16);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, start + FRAME_LENGTH, end - start - FRAME_LENGTH);
+        if (crc.getValue() != expected) {
+            return null;
+        }
+        return new String(bytes, start + FRAME_LENGTH, end - start - FRAME_LENGTH, StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,19 @@
+// Durable record of booking changes made through the BookingEngine.
+// Appends return a sequence number; awaitDurable blocks until everything up
+// to that sequence has reached disk, so callers can wait outside their locks.
+interface ChangeLog {
+    long booked(String passengerId, String flightNumber, int seatNumber);
+    // Bookings that stand or fall together: entry i of each array is one
+    // booking, and the record must never be half applied
+    long bookedGroup(String[] passengerIds, String[] flightNumbers, int[] seatNumbers);
+    long cancelled(String passengerId, String flightNumber);
+    long seatsChanged(String flightNumber, int availableSeats);
+    long waitlisted(String passengerId, String flightNumber, FareClass fareClass, long requestedAt);
+    // Left the waitlist, whether withdrawn, promoted or removed
+    long unwaitlisted(String passengerId, String flightNumber);
+
+    // Sequence of the last record appended so far
+    long lastSequence();
+
+    void awaitDurable(long sequence);
+}
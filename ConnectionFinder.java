@@ -0,0 +1,249 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Finds multi-leg itineraries over the daily schedule. The flight list is
+// turned into per-city departure tables sorted by time of day (rebuilt only
+// when the registry changes); a query then runs a best-first search over
+// (city, time) states, where waiting for a later departure - possibly the
+// next day - is bounded by the minimum connection time and the maximum
+// layover. Each search is capped by the number of legs, how often a city may
+// be settled and a total expansion budget, so it stays fast on large
+// schedules.
+class ConnectionFinder {
+    public enum Order {
+        FASTEST("Fastest"),
+        FEWEST_STOPS("Fewest Stops");
+
+        private final String label;
+
+        Order(String label) { this.label = label; }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    private static final int MAX_EXPANSIONS = 200_000;
+
+    private static final class Leg {
+        final Flight flight;
+        final String to;
+        final int departure;
+        final int duration;
+
+        Leg(Flight flight, String to, int departure, int duration) {
+            this.flight = flight;
+            this.to = to;
+            this.departure = departure;
+            this.duration = duration;
+        }
+    }
+
+    private static final class Label {
+        final String city;
+        final int time;
+        final int legCount;
+        final Label parent;
+        final Leg leg;
+        final int start;
+
+        Label(String city, int time, int legCount, Label parent, Leg leg, int start) {
+            this.city = city;
+            this.time = time;
+            this.legCount = legCount;
+            this.parent = parent;
+            this.leg = leg;
+            this.start = start;
+        }
+
+        int elapsed() { return time - start; }
+
+        boolean visited(String other) {
+            for (Label label = this; label != null; label = label.parent) {
+                if (label.city.equals(other)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final FlightRegistry flights;
+    private final int minConnection;
+    private final int maxLayover;
+    private final int maxLegs;
+
+    private Map<String, Leg[]> departures = Collections.emptyMap();
+    private long builtVersion = -1;
+    private volatile Metrics metrics;
+
+    public ConnectionFinder(FlightRegistry flights, int minConnection, int maxLayover, int maxLegs) {
+        this.flights = flights;
+        this.minConnection = minConnection;
+        this.maxLayover = maxLayover;
+        this.maxLegs = maxLegs;
+    }
+
+    public ConnectionFinder(FlightRegistry flights) {
+        this(flights, 45, 12 * 60, 3);
+    }
+
+    // Times searches as "route.connections" from now on
+    public void setMetrics(Metrics metrics) { this.metrics = metrics; }
+
+    public List<Itinerary> find(RouteQuery query, Order order, int limit) {
+        Metrics timing = metrics;
+        return timing == null ? findItineraries(query, order, limit)
+               : timing.time("route.connections", () -> findItineraries(query, order, limit), found -> true);
+    }
+
+    private List<Itinerary> findItineraries(RouteQuery query, Order order, int limit) {
+        Map<String, Leg[]> graph = graph();
+        String origin = city(query.getFromCity());
+        String destination = city(query.getToCity());
+        Comparator<Label> priority = order == Order.FASTEST
+                ? Comparator.comparingInt(Label::elapsed).thenComparingInt(label -> label.legCount)
+                : Comparator.<Label>comparingInt(label -> label.legCount).thenComparingInt(Label::elapsed);
+        PriorityQueue<Label> queue = new PriorityQueue<>(priority);
+        Map<String, int[]> settled = new HashMap<>();
+        List<Itinerary> result = new ArrayList<>();
+
+        for (Leg leg : table(graph, origin)) {
+            if (inWindow(leg.departure, query) && leg.flight.getAvailableSeats() >= query.getMinSeats()) {
+                Label start = new Label(origin, leg.departure, 0, null, null, leg.departure);
+                queue.add(new Label(leg.to, leg.departure + leg.duration, 1, start, leg, leg.departure));
+            }
+        }
+
+        int expansions = 0;
+        while (!queue.isEmpty() && result.size() < limit && expansions++ < MAX_EXPANSIONS) {
+            Label label = queue.poll();
+            if (label.city.equals(destination)) {
+                result.add(toItinerary(label));
+                continue;
+            }
+            // Allow each city to be settled at most `limit` times per leg count
+            int[] counts = settled.computeIfAbsent(label.city, key -> new int[maxLegs + 1]);
+            if (label.legCount >= maxLegs || counts[label.legCount]++ >= limit) {
+                continue;
+            }
+            expand(graph, label, destination, query.getMinSeats(), settled, limit, queue);
+        }
+        return result;
+    }
+
+    private void expand(Map<String, Leg[]> graph, Label label, String destination, int minSeats,
+                        Map<String, int[]> settled, int limit, PriorityQueue<Label> queue) {
+        Leg[] table = table(graph, label.city);
+        if (table.length == 0) {
+            return;
+        }
+        int ready = label.time + minConnection;
+        int readyOfDay = ready % FlightTimes.MINUTES_PER_DAY;
+        int first = firstAtOrAfter(table, readyOfDay);
+        int legCount = label.legCount + 1;
+        // Walk the departure table once, wrapping past midnight
+        for (int i = 0; i < table.length; i++) {
+            Leg leg = table[(first + i) % table.length];
+            int wait = (leg.departure - readyOfDay + FlightTimes.MINUTES_PER_DAY) % FlightTimes.MINUTES_PER_DAY;
+            if (minConnection + wait > maxLayover) {
+                break;
+            }
+            boolean arrives = leg.to.equals(destination);
+            // The final leg must reach the destination, and cities already
+            // settled often enough at this depth are not worth queueing
+            if (!arrives && (legCount == maxLegs || isSaturated(settled, leg.to, legCount, limit))) {
+                continue;
+            }
+            if (label.visited(leg.to) || leg.flight.getAvailableSeats() < minSeats) {
+                continue;
+            }
+            int departure = ready + wait;
+            queue.add(new Label(leg.to, departure + leg.duration, legCount, label, leg, label.start));
+        }
+    }
+
+    private static boolean isSaturated(Map<String, int[]> settled, String city, int legCount, int limit) {
+        int[] counts = settled.get(city);
+        return counts != null && counts[legCount] >= limit;
+    }
+
+    private static int firstAtOrAfter(Leg[] table, int minute) {
+        int low = 0;
+        int high = table.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (table[mid].departure < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == table.length ? 0 : low;
+    }
+
+    private static Itinerary toItinerary(Label last) {
+        List<Flight> legs = new ArrayList<>();
+        List<int[]> times = new ArrayList<>();
+        for (Label label = last; label.leg != null; label = label.parent) {
+            legs.add(label.leg.flight);
+            times.add(new int[] {label.time - label.leg.duration, label.time});
+        }
+        Collections.reverse(legs);
+        Collections.reverse(times);
+        int[] departures = new int[times.size()];
+        int[] arrivals = new int[times.size()];
+        for (int i = 0; i < times.size(); i++) {
+            departures[i] = times.get(i)[0];
+            arrivals[i] = times.get(i)[1];
+        }
+        return new Itinerary(legs, departures, arrivals);
+    }
+
+    private static boolean inWindow(int departure, RouteQuery query) {
+        int earliest = query.getEarliestDeparture();
+        int latest = query.getLatestDeparture();
+        return earliest <= latest
+               ? departure >= earliest && departure <= latest
+               : departure >= earliest || departure <= latest;
+    }
+
+    private static Leg[] table(Map<String, Leg[]> graph, String city) {
+        Leg[] table = graph.get(city);
+        return table == null ? new Leg[0] : table;
+    }
+
+    // Per-city departure tables, rebuilt when the flight registry changes
+    private synchronized Map<String, Leg[]> graph() {
+        long version = flights.getVersion();
+        if (version == builtVersion) {
+            return departures;
+        }
+        Map<String, List<Leg>> byCity = new HashMap<>();
+        for (Flight flight : flights) {
+            int departure = FlightTimes.toMinutes(flight.getDepartureTime());
+            int arrival = FlightTimes.toMinutes(flight.getArrivalTime());
+            byCity.computeIfAbsent(city(flight.getDepartureCity()), key -> new ArrayList<>())
+                  .add(new Leg(flight, city(flight.getArrivalCity()), departure,
+                               FlightTimes.duration(departure, arrival)));
+        }
+        Map<String, Leg[]> built = new HashMap<>();
+        for (Map.Entry<String, List<Leg>> entry : byCity.entrySet()) {
+            Leg[] table = entry.getValue().toArray(new Leg[0]);
+            Arrays.sort(table, Comparator.comparingInt(leg -> leg.departure));
+            built.put(entry.getKey(), table);
+        }
+        departures = built;
+        builtVersion = version;
+        return departures;
+    }
+
+    private static String city(String name) {
+        return name.trim().toLowerCase();
+    }
+}
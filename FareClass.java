@@ -0,0 +1,25 @@
+// Fare classes in waitlist priority order: a higher class is promoted first
+enum FareClass {
+    FIRST("First"),
+    BUSINESS("Business"),
+    PREMIUM_ECONOMY("Premium Economy"),
+    ECONOMY("Economy");
+
+    private final String label;
+
+    FareClass(String label) { this.label = label; }
+
+    @Override
+    public String toString() { return label; }
+
+    // Accepts the constant name or the label, ignoring case; null if neither
+    public static FareClass parse(String text) {
+        String trimmed = text.trim();
+        for (FareClass fareClass : values()) {
+            if (fareClass.name().equalsIgnoreCase(trimmed) || fareClass.label.equalsIgnoreCase(trimmed)) {
+                return fareClass;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.List;
+
+class Flight {
+    private String flightNumber;
+    private String departureCity;
+    private String arrivalCity;
+    private String departureTime;
+    private String arrivalTime;
+    private SeatManifest manifest;
+    // Seats set aside by unexpired holds; not assigned, but not available
+    private int heldSeats;
+
+    public Flight(String flightNumber, String departureCity, String arrivalCity, 
+                  String departureTime, String arrivalTime, int availableSeats) {
+        this.flightNumber = flightNumber;
+        this.departureCity = departureCity;
+        this.arrivalCity = arrivalCity;
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+        this.manifest = new SeatManifest(availableSeats);
+    }
+
+    public String getFlightNumber() { return flightNumber; }
+    public String getDepartureCity() { return departureCity; }
+    public void setDepartureCity(String departureCity) { this.departureCity = departureCity; }
+    public String getArrivalCity() { return arrivalCity; }
+    public void setArrivalCity(String arrivalCity) { this.arrivalCity = arrivalCity; }
+    public String getDepartureTime() { return departureTime; }
+    public void setDepartureTime(String departureTime) { this.departureTime = departureTime; }
+    public String getArrivalTime() { return arrivalTime; }
+    public void setArrivalTime(String arrivalTime) { this.arrivalTime = arrivalTime; }
+    public int getAvailableSeats() { return manifest.getAvailableSeats() - heldSeats; }
+    public void setAvailableSeats(int availableSeats) {
+        manifest.setCapacity(manifest.getBookedCount() + heldSeats + availableSeats);
+    }
+    public int getHeldSeats() { return heldSeats; }
+    public int getCapacity() { return manifest.getCapacity(); }
+    public int getBookedCount() { return manifest.getBookedCount(); }
+    public List<String> getBookedPassengers() { return manifest.getPassengers(); }
+    public boolean isBooked(String passengerId) { return manifest.contains(passengerId); }
+    public int getSeatNumber(String passengerId) { return manifest.getSeatNumber(passengerId); }
+    public String[] copySeats() { return manifest.copySeats(); }
+    public long getManifestMemoryBytes() { return manifest.getMemoryBytes(); }
+
+    public boolean bookPassenger(String passengerId) {
+        return getAvailableSeats() > 0 && manifest.assign(passengerId) != -1;
+    }
+
+    public boolean bookPassenger(String passengerId, int seatNumber) {
+        return manifest.assign(passengerId, seatNumber);
+    }
+
+    public boolean cancelBooking(String passengerId) {
+        return manifest.release(passengerId);
+    }
+
+    // Sets a seat aside without assigning it; false if none is available
+    public boolean holdSeat() {
+        if (getAvailableSeats() <= 0) {
+            return false;
+        }
+        heldSeats++;
+        return true;
+    }
+
+    public void releaseHeldSeat() {
+        if (heldSeats > 0) {
+            heldSeats--;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return flightNumber + " | " + departureCity + " (" + departureTime + ") to " + 
+               arrivalCity + " (" + arrivalTime + ") | Seats: " + getAvailableSeats();
+    }
+}
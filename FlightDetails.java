@@ -0,0 +1,39 @@
+// A flight's fields and seat counts as they were at one moment, taken under
+// the flight's lock, for views that must not read the live Flight
+class FlightDetails {
+    private final String flightNumber;
+    private final String departureCity;
+    private final String arrivalCity;
+    private final String departureTime;
+    private final String arrivalTime;
+    private final int capacity;
+    private final int availableSeats;
+    private final int heldSeats;
+    private final int bookedCount;
+    private final long manifestMemoryBytes;
+
+    // Call with the flight's lock held
+    FlightDetails(Flight flight) {
+        this.flightNumber = flight.getFlightNumber();
+        this.departureCity = flight.getDepartureCity();
+        this.arrivalCity = flight.getArrivalCity();
+        this.departureTime = flight.getDepartureTime();
+        this.arrivalTime = flight.getArrivalTime();
+        this.capacity = flight.getCapacity();
+        this.availableSeats = flight.getAvailableSeats();
+        this.heldSeats = flight.getHeldSeats();
+        this.bookedCount = flight.getBookedCount();
+        this.manifestMemoryBytes = flight.getManifestMemoryBytes();
+    }
+
+    public String getFlightNumber() { return flightNumber; }
+    public String getDepartureCity() { return departureCity; }
+    public String getArrivalCity() { return arrivalCity; }
+    public String getDepartureTime() { return departureTime; }
+    public String getArrivalTime() { return arrivalTime; }
+    public int getCapacity() { return capacity; }
+    public int getAvailableSeats() { return availableSeats; }
+    public int getHeldSeats() { return heldSeats; }
+    public int getBookedCount() { return bookedCount; }
+    public long getManifestMemoryBytes() { return manifestMemoryBytes; }
+}
@@ -0,0 +1,47 @@
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Flights keyed by flight number
+class FlightRegistry extends Registry<Flight> {
+    // A flight's booked seats and capacity
+    static final class SeatCount {
+        private final String flightNumber;
+        private final int booked;
+        private final int capacity;
+
+        SeatCount(String flightNumber, int booked, int capacity) {
+            this.flightNumber = flightNumber;
+            this.booked = booked;
+            this.capacity = capacity;
+        }
+
+        SeatCount(Flight flight) {
+            this(flight.getFlightNumber(), flight.getBookedCount(), flight.getCapacity());
+        }
+
+        public String getFlightNumber() { return flightNumber; }
+        public int getBooked() { return booked; }
+        public int getCapacity() { return capacity; }
+        public double getLoadFactor() { return capacity == 0 ? 0 : (double) booked / capacity; }
+    }
+
+    // Stored seat counts of the lazily loaded flights, by loader index
+    private volatile IntFunction<SeatCount> storedSeats;
+
+    @Override
+    protected String keyOf(Flight flight) { return flight.getFlightNumber(); }
+
+    // As loadLazily, also given each flight's stored seat counts, so
+    // seatCounts() can report a flight without building it
+    public void loadLazily(int count, IntFunction<String> keys, IntFunction<Flight> loader,
+                           IntFunction<SeatCount> seats) {
+        storedSeats = seats;
+        loadLazily(count, keys, loader);
+    }
+
+    // Every flight's seat counts, in order. Flights not built yet report
+    // their stored counts, which still hold: a change builds the flight first.
+    public List<SeatCount> seatCounts() {
+        return map(SeatCount::new, storedSeats);
+    }
+}
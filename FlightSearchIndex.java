@@ -0,0 +1,12 @@
+// Substring index over flight number, cities and times
+class FlightSearchIndex extends SearchIndex<Flight> {
+    public FlightSearchIndex(FlightRegistry flights) {
+        super(flights, "search.flights");
+    }
+
+    @Override
+    protected String[] fieldsOf(Flight flight) {
+        return new String[] {flight.getFlightNumber(), flight.getDepartureCity(), flight.getArrivalCity(),
+                             flight.getDepartureTime(), flight.getArrivalTime()};
+    }
+}
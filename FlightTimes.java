@@ -0,0 +1,24 @@
+// Conversions between "HH:MM" schedule strings and minutes past midnight
+final class FlightTimes {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private FlightTimes() {}
+
+    // Expects a time already accepted by Validation.isTime (hour may be one digit)
+    public static int toMinutes(String time) {
+        int colon = time.indexOf(':');
+        int hours = Integer.parseInt(time.substring(0, colon));
+        int minutes = Integer.parseInt(time.substring(colon + 1));
+        return hours * 60 + minutes;
+    }
+
+    public static String format(int minutes) {
+        int dayMinutes = ((minutes % MINUTES_PER_DAY) + MINUTES_PER_DAY) % MINUTES_PER_DAY;
+        return String.format("%02d:%02d", dayMinutes / 60, dayMinutes % 60);
+    }
+
+    // Block time of a flight, treating an arrival before departure as next day
+    public static int duration(int departure, int arrival) {
+        return arrival >= departure ? arrival - departure : arrival + MINUTES_PER_DAY - departure;
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.Collections;
+import java.util.List;
+
+// One or more connecting flights. Times are absolute minutes counted from
+// midnight of the first departure day, so legs can run past midnight.
+class Itinerary {
+    private final List<Flight> legs;
+    private final int[] departures;
+    private final int[] arrivals;
+
+    public Itinerary(List<Flight> legs, int[] departures, int[] arrivals) {
+        this.legs = Collections.unmodifiableList(legs);
+        this.departures = departures;
+        this.arrivals = arrivals;
+    }
+
+    public List<Flight> getLegs() { return legs; }
+    public int getStops() { return legs.size() - 1; }
+    public int getDeparture() { return departures[0]; }
+    public int getArrival() { return arrivals[arrivals.length - 1]; }
+    public int getDuration() { return getArrival() - getDeparture(); }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(formatDuration(getDuration())).append(", ")
+            .append(getStops() == 0 ? "nonstop" : getStops() + " stop(s)");
+        for (int i = 0; i < legs.size(); i++) {
+            Flight flight = legs.get(i);
+            if (i > 0) {
+                text.append("\n    connect ").append(formatDuration(departures[i] - arrivals[i - 1]));
+            }
+            text.append("\n  ").append(flight.getFlightNumber()).append(" ")
+                .append(flight.getDepartureCity()).append(" ").append(formatTime(departures[i]))
+                .append(" -> ").append(flight.getArrivalCity()).append(" ").append(formatTime(arrivals[i]));
+        }
+        return text.toString();
+    }
+
+    private static String formatTime(int minutes) {
+        int day = minutes / FlightTimes.MINUTES_PER_DAY;
+        return FlightTimes.format(minutes) + (day > 0 ? " (+" + day + ")" : "");
+    }
+
+    private static String formatDuration(int minutes) {
+        return (minutes / 60) + "h " + (minutes % 60) + "m";
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Concurrent latency histogram in the style of HdrHistogram: values (in
+// nanoseconds) below 64 get their own bucket; above that each power of two is
+// split into 32 linear sub-buckets, so a percentile is reported within about
+// 3% of the true value. Recording is a few arithmetic operations and two
+// atomic adds, with no allocation or locking. Values beyond about 18
+// minutes are clamped into the last bucket.
+class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_BIT = 40;
+    private static final int BUCKETS = (MAX_BIT - SUB_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getMax() { return max.get(); }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    // Value at the given percentile (0-100); 0 if nothing was recorded.
+    // Concurrent recording may make it lag slightly behind getCount().
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(valueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    // Bucket i < 64 holds exactly i; beyond that the bucket is the position
+    // of the highest bit plus the next SUB_BITS bits
+    private static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_BIT - 1);
+        int shift = highestBit - SUB_BITS;
+        long top = Math.min(value >>> shift, 2 * SUB_BUCKETS - 1);
+        return shift * SUB_BUCKETS + (int) top;
+    }
+
+    // Midpoint of the values a bucket holds
+    private static long valueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return (top << shift) + (1L << shift) / 2;
+    }
+}
@@ -0,0 +1,91 @@
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Search-as-you-type over a registry. Keystrokes are debounced, a newer
+// search cancels the one in flight, and when the query only grows and the
+// registry has not changed the previous result set is narrowed instead of
+// querying the whole index again. Runs on the EDT apart from the worker.
+class LiveSearch<T> {
+    private static final int DEBOUNCE_MILLIS = 250;
+
+    private final JTextField field;
+    private final Registry<T> registry;
+    private final SearchIndex<T> index;
+    private final RegistryListModel<T> model;
+    private final Consumer<String> onNoMatch;
+    private final Consumer<Throwable> onError;
+    private final Timer debounce;
+
+    private SearchWorker<T> current;
+    private String lastQuery = "";
+    private List<String> lastKeys;
+    private long lastVersion = -1;
+
+    public LiveSearch(JTextField field, Registry<T> registry, SearchIndex<T> index, RegistryListModel<T> model,
+                      Consumer<String> onNoMatch, Consumer<Throwable> onError) {
+        this.field = field;
+        this.registry = registry;
+        this.index = index;
+        this.model = model;
+        this.onNoMatch = onNoMatch;
+        this.onError = onError;
+        this.debounce = new Timer(DEBOUNCE_MILLIS, e -> run(false));
+        this.debounce.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { debounce.restart(); }
+            public void removeUpdate(DocumentEvent e) { debounce.restart(); }
+            public void changedUpdate(DocumentEvent e) { debounce.restart(); }
+        });
+    }
+
+    // Runs the current query now. Only an explicit search reports "no match".
+    public void run(boolean explicit) {
+        debounce.stop();
+        if (current != null) {
+            current.cancel(true);
+        }
+        String query = field.getText().toLowerCase();
+        List<String> narrowFrom = canNarrow(query) ? lastKeys : null;
+
+        current = new SearchWorker<T>(model) {
+            private final long version = registry.getVersion();
+            private List<String> keys;
+
+            @Override
+            protected List<String> search() {
+                // Show everything if search is empty
+                if (query.isEmpty()) {
+                    return registry.keys();
+                }
+                keys = narrowFrom != null ? index.searchWithin(query, narrowFrom) : index.search(query);
+                return keys;
+            }
+
+            @Override
+            protected void finished(int found) {
+                lastQuery = query;
+                lastKeys = keys;
+                lastVersion = version;
+                if (found == 0 && explicit && !query.isEmpty()) {
+                    onNoMatch.accept(query);
+                }
+            }
+
+            @Override
+            protected void failed(Throwable cause) {
+                lastKeys = null;
+                onError.accept(cause);
+            }
+        };
+        current.execute();
+    }
+
+    private boolean canNarrow(String query) {
+        return lastKeys != null && !lastQuery.isEmpty() && query.startsWith(lastQuery)
+               && registry.getVersion() == lastVersion;
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// ReservationService backed by the in-process engine and indexes, with its
+// state kept in a data directory: the store (snapshots and journal), the
+// booking history and the metrics report all live there.
+class LocalReservationService implements ReservationService, AutoCloseable {
+    private final PassengerRegistry passengers = new PassengerRegistry();
+    private final FlightRegistry flights = new FlightRegistry();
+    private final BookingEngine engine = new BookingEngine(passengers, flights);
+    private final PassengerSearchIndex passengerIndex = new PassengerSearchIndex(passengers);
+    private final FlightSearchIndex flightIndex = new FlightSearchIndex(flights);
+    private final RouteIndex routeIndex = new RouteIndex(flights);
+    private final ConnectionFinder connectionFinder = new ConnectionFinder(flights);
+    private ReservationStore store;
+    private BookingHistory history;
+    private MetricsReporter metricsReporter;
+
+    private LocalReservationService() {
+        passengerIndex.setMetrics(engine.getMetrics());
+        flightIndex.setMetrics(engine.getMetrics());
+        routeIndex.setMetrics(engine.getMetrics());
+        connectionFinder.setMetrics(engine.getMetrics());
+    }
+
+    // The indexes are attached before the store loads, so they see every
+    // stored record. If any part fails to open, the parts already open are
+    // closed again.
+    public static LocalReservationService open(Path directory) throws IOException {
+        LocalReservationService service = new LocalReservationService();
+        try {
+            service.store = ReservationStore.open(directory, service.engine);
+            service.history = BookingHistory.open(directory.resolve("history.log"));
+            service.engine.setHistory(service.history);
+            service.metricsReporter = new MetricsReporter(service.engine, directory.resolve("metrics.txt"));
+            service.metricsReporter.start();
+        } catch (IOException | RuntimeException e) {
+            try {
+                service.close();
+            } catch (IOException | RuntimeException closing) {
+                e.addSuppressed(closing);
+            }
+            throw e;
+        }
+        return service;
+    }
+
+    // For views that keep their own models in step with the registries
+    public PassengerRegistry getPassengers() { return passengers; }
+    public FlightRegistry getFlights() { return flights; }
+    public PassengerSearchIndex getPassengerIndex() { return passengerIndex; }
+    public FlightSearchIndex getFlightIndex() { return flightIndex; }
+    public BookingHistory getHistory() { return history; }
+    public void setNotifier(Notifier notifier) {
+        store.setNotifier(notifier);
+        engine.setNotifier(notifier);
+    }
+
+    @Override
+    public Passenger getPassenger(String passengerId) {
+        return passengers.get(passengerId);
+    }
+
+    @Override
+    public boolean addPassenger(Passenger passenger) {
+        return engine.addPassenger(passenger);
+    }
+
+    @Override
+    public BatchTransfer.Report importPassengers(RecordReader rows, Consumer<String> errors) throws IOException {
+        return BatchTransfer.importPassengers(rows, engine, errors);
+    }
+
+    @Override
+    public Passenger updatePassenger(String passengerId, String name, String email, String phone) {
+        Passenger passenger = passengers.get(passengerId);
+        if (passenger == null) {
+            return null;
+        }
+        // Two clients editing the same passenger do not interleave fields
+        synchronized (passenger) {
+            if (!name.isEmpty()) passenger.setName(name);
+            if (!email.isEmpty()) passenger.setEmail(email);
+            if (!phone.isEmpty()) passenger.setPhone(phone);
+        }
+        return engine.updatePassenger(passenger) ? passenger : null;
+    }
+
+    @Override
+    public Passenger removePassenger(String passengerId) {
+        return engine.removePassenger(passengerId);
+    }
+
+    @Override
+    public List<Passenger> searchPassengers(String query, int limit) {
+        List<Passenger> found = new ArrayList<>();
+        for (String key : passengerIndex.search(query)) {
+            Passenger passenger = passengers.get(key);
+            if (passenger != null) {
+                found.add(passenger);
+                if (found.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Flight getFlight(String flightNumber) {
+        return flights.get(flightNumber);
+    }
+
+    @Override
+    public boolean addFlight(Flight flight) {
+        return engine.addFlight(flight);
+    }
+
+    @Override
+    public BatchTransfer.Report importFlights(RecordReader rows, Consumer<String> errors) throws IOException {
+        return BatchTransfer.importFlights(rows, engine, errors);
+    }
+
+    @Override
+    public Flight updateFlight(String flightNumber, String departureCity, String arrivalCity,
+                               String departureTime, String arrivalTime, int availableSeats) {
+        Flight flight = flights.get(flightNumber);
+        if (flight == null) {
+            return null;
+        }
+        synchronized (flight) {
+            if (!departureCity.isEmpty()) flight.setDepartureCity(departureCity);
+            if (!arrivalCity.isEmpty()) flight.setArrivalCity(arrivalCity);
+            if (!departureTime.isEmpty()) flight.setDepartureTime(departureTime);
+            if (!arrivalTime.isEmpty()) flight.setArrivalTime(arrivalTime);
+        }
+        if (availableSeats >= 0) engine.setAvailableSeats(flightNumber, availableSeats);
+        return engine.updateFlight(flight) ? flight : null;
+    }
+
+    @Override
+    public Flight removeFlight(String flightNumber) {
+        return engine.removeFlight(flightNumber);
+    }
+
+    @Override
+    public List<Flight> searchFlights(String query, int limit) {
+        List<Flight> found = new ArrayList<>();
+        for (String key : flightIndex.search(query)) {
+            Flight flight = flights.get(key);
+            if (flight != null) {
+                found.add(flight);
+                if (found.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int book(String passengerId, String flightNumber) {
+        return engine.book(passengerId, flightNumber);
+    }
+
+    @Override
+    public boolean bookGroup(List<String> passengerIds, List<String> flightNumbers) {
+        return engine.bookGroup(passengerIds, flightNumbers);
+    }
+
+    @Override
+    public boolean cancel(String passengerId, String flightNumber) {
+        return engine.cancel(passengerId, flightNumber);
+    }
+
+    @Override
+    public int joinWaitlist(String passengerId, String flightNumber, FareClass fareClass) {
+        return engine.joinWaitlist(passengerId, flightNumber, fareClass);
+    }
+
+    @Override
+    public boolean leaveWaitlist(String passengerId, String flightNumber) {
+        return engine.leaveWaitlist(passengerId, flightNumber);
+    }
+
+    @Override
+    public int getWaitlistPosition(String passengerId, String flightNumber) {
+        return engine.getWaitlistPosition(passengerId, flightNumber);
+    }
+
+    @Override
+    public List<Waitlist.Entry> getWaitlist(String flightNumber) {
+        return engine.getWaitlist(flightNumber);
+    }
+
+    @Override
+    public SeatHold holdSeat(String passengerId, String flightNumber, int seconds) {
+        return engine.holdSeat(passengerId, flightNumber, TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    @Override
+    public boolean confirmHold(String passengerId, String flightNumber) {
+        return engine.confirmHold(passengerId, flightNumber);
+    }
+
+    @Override
+    public boolean releaseHold(String passengerId, String flightNumber) {
+        return engine.releaseHold(passengerId, flightNumber);
+    }
+
+    @Override
+    public SeatHold getHold(String passengerId, String flightNumber) {
+        return engine.getHold(passengerId, flightNumber);
+    }
+
+    @Override
+    public List<Flight> getBookedFlights(String passengerId) {
+        return engine.getBookedFlights(passengerId);
+    }
+
+    @Override
+    public int getSeatNumber(String passengerId, String flightNumber) {
+        return engine.getSeatNumber(passengerId, flightNumber);
+    }
+
+    @Override
+    public FlightDetails getFlightDetails(String flightNumber) {
+        return engine.getFlightDetails(flightNumber);
+    }
+
+    @Override
+    public List<Flight> findFlights(RouteQuery query) {
+        return routeIndex.find(query);
+    }
+
+    @Override
+    public List<Itinerary> findConnections(RouteQuery query, ConnectionFinder.Order order, int limit) {
+        return connectionFinder.find(query, order, limit);
+    }
+
+    @Override
+    public String metricsReport() {
+        return metricsReporter.report();
+    }
+
+    // Writes the final snapshot and metrics report. The resources close in
+    // reverse order of declaration, each even if one before it failed (or
+    // was never opened); the first failure is thrown with the later ones
+    // suppressed, so the store is always closed.
+    @Override
+    public void close() throws IOException {
+        try (ReservationStore closingStore = store;
+             BookingHistory closingHistory = history;
+             MetricsReporter closingReporter = metricsReporter) {
+            engine.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// Notifier for headless use: one timestamped line per message. A message
+// repeating the previous one is counted instead of printed, and the count is
+// written once a different message arrives or on flush.
+class LogNotifier implements Notifier {
+    private final PrintStream out;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private String lastLine;
+    private int repeats;
+
+    public LogNotifier(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void info(String message) {
+        log("INFO ", message);
+    }
+
+    @Override
+    public void error(String message) {
+        log("ERROR", message);
+    }
+
+    public synchronized void flush() {
+        if (repeats > 0) {
+            print(lastLine + " (repeated " + repeats + (repeats == 1 ? " time)" : " times)"));
+            repeats = 0;
+        }
+        out.flush();
+    }
+
+    private synchronized void log(String level, String message) {
+        String line = level + " " + message;
+        if (line.equals(lastLine)) {
+            repeats++;
+            return;
+        }
+        flush();
+        lastLine = line;
+        print(line);
+    }
+
+    private void print(String line) {
+        out.println(timeFormat.format(new Date()) + " " + line);
+    }
+}
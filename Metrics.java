@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Per-operation call counters and latency histograms. An operation counts
+// as rejected when it completes without doing anything (a full flight, a
+// duplicate key) and as an error when it throws. Counts are exact; latency
+// is measured on a random one call in SAMPLE_EVERY, since reading the clock
+// twice costs more than a booking itself, and a uniform sample leaves the
+// percentiles unbiased.
+class Metrics {
+    private static final int SAMPLE_EVERY = 8;
+
+    static class Operation {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        public long getCalls() { return calls.sum(); }
+        public long getRejected() { return rejected.sum(); }
+        public long getErrors() { return errors.sum(); }
+        public LatencyHistogram getLatency() { return latency; }
+
+        // Runs the action and records its outcome, and for sampled calls its
+        // latency
+        public <T> T time(Supplier<T> action, Predicate<T> succeeded) {
+            boolean sampled = ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0;
+            long start = sampled ? System.nanoTime() : 0;
+            T result;
+            try {
+                result = action.get();
+            } catch (RuntimeException | Error e) {
+                failed();
+                if (sampled) {
+                    latency.record(System.nanoTime() - start);
+                }
+                throw e;
+            }
+            if (sampled) {
+                latency.record(System.nanoTime() - start);
+            }
+            completed(succeeded.test(result));
+            return result;
+        }
+
+        void completed(boolean succeeded) {
+            calls.increment();
+            if (!succeeded) {
+                rejected.increment();
+            }
+        }
+
+        void failed() {
+            calls.increment();
+            errors.increment();
+        }
+    }
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final long startedAt = System.nanoTime();
+
+    public Operation operation(String name) {
+        return operations.computeIfAbsent(name, key -> new Operation());
+    }
+
+    public List<String> getOperationNames() {
+        List<String> names = new ArrayList<>(operations.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    public double getUptimeSeconds() {
+        return (System.nanoTime() - startedAt) / 1e9;
+    }
+
+    // Runs the action under the named operation; see Operation.time
+    public <T> T time(String name, Supplier<T> action, Predicate<T> succeeded) {
+        return operation(name).time(action, succeeded);
+    }
+
+    // One line per operation: counts, rate since start, latency percentiles in microseconds
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%-22s %10s %9s %7s %9s %9s %9s %9s %9s %10s%n",
+                "operation", "calls", "rejected", "errors", "per sec", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        double uptime = Math.max(getUptimeSeconds(), 1e-9);
+        for (String name : getOperationNames()) {
+            Operation operation = operations.get(name);
+            LatencyHistogram latency = operation.getLatency();
+            report.append(String.format(Locale.ROOT, "%-22s %10d %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %10.1f%n",
+                    name, operation.getCalls(), operation.getRejected(), operation.getErrors(),
+                    operation.getCalls() / uptime,
+                    latency.getPercentile(50) / 1e3, latency.getPercentile(90) / 1e3,
+                    latency.getPercentile(99) / 1e3, latency.getPercentile(99.9) / 1e3, latency.getMax() / 1e3));
+        }
+        return report.toString();
+    }
+}
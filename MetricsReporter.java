@@ -0,0 +1,239 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Publishes the engine's metrics. A text report is rewritten to a file every
+// DUMP_SECONDS and on close, and the same figures are exposed over JMX as
+// "AirlineReservation:type=Metrics": an attribute per operation statistic
+// (e.g. "booking.book.p99Micros"), seat utilization attributes, and a
+// loadFactor(flightNumber) operation for any single flight. Seat totals
+// come from the engine's running counts and per-flight figures from
+// FlightRegistry.seatCounts, so a report never builds lazily loaded flights.
+class MetricsReporter implements AutoCloseable {
+    private static final long DUMP_SECONDS = 60;
+    private static final int FULLEST_FLIGHTS = 20;
+    private static final String[] STATISTICS = {"calls", "rejected", "errors", "p50Micros", "p90Micros",
+                                                "p99Micros", "p999Micros", "maxMicros", "meanMicros"};
+
+    private final BookingEngine engine;
+    private final Metrics metrics;
+    private final FlightRegistry flights;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+    private ObjectName name;
+
+    public MetricsReporter(BookingEngine engine, Path file) {
+        this.engine = engine;
+        this.metrics = engine.getMetrics();
+        this.flights = engine.getFlights();
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::dumpQuietly, DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("AirlineReservation:type=Metrics");
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new Bean(), objectName);
+                name = objectName;
+            }
+        } catch (JMException e) {
+            // The file report still works without JMX
+        }
+    }
+
+    // Operation table, seat utilization summary and the fullest flights
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("Metrics at ").append(new Date()).append(String.format(Locale.ROOT,
+                ", uptime %.0f s%n%n", metrics.getUptimeSeconds()));
+        report.append(metrics.report()).append('\n');
+
+        long booked = engine.getBookedSeats();
+        long capacity = engine.getSeatCapacity();
+        List<FlightRegistry.SeatCount> seatCounts = flights.seatCounts();
+        int[] deciles = new int[11];
+        Comparator<FlightRegistry.SeatCount> byLoad = Comparator.comparingDouble(FlightRegistry.SeatCount::getLoadFactor);
+        PriorityQueue<FlightRegistry.SeatCount> fullest = new PriorityQueue<>(byLoad);
+        for (FlightRegistry.SeatCount seats : seatCounts) {
+            deciles[(int) (seats.getLoadFactor() * 10)]++;
+            fullest.add(seats);
+            if (fullest.size() > FULLEST_FLIGHTS) {
+                fullest.poll();
+            }
+        }
+        report.append(String.format(Locale.ROOT, "Seat utilization: %d of %d seats booked (%.1f%%) on %d flights%n",
+                booked, capacity, capacity == 0 ? 0.0 : 100.0 * booked / capacity, seatCounts.size()));
+        report.append("Flights by load factor:");
+        for (int decile = 0; decile < 10; decile++) {
+            int count = deciles[decile] + (decile == 9 ? deciles[10] : 0);
+            report.append(String.format(Locale.ROOT, " %d-%d%%: %d", decile * 10, decile == 9 ? 100 : decile * 10 + 9, count));
+        }
+        report.append(String.format("%nFullest flights:%n"));
+        List<FlightRegistry.SeatCount> top = new ArrayList<>(fullest);
+        top.sort(byLoad.reversed());
+        for (FlightRegistry.SeatCount seats : top) {
+            report.append(String.format(Locale.ROOT, "  %-12s %5d/%-5d %5.1f%%%n", seats.getFlightNumber(),
+                    seats.getBooked(), seats.getCapacity(), 100 * seats.getLoadFactor()));
+        }
+        return report.toString();
+    }
+
+    // Writes the report to a temporary file and moves it into place, so a
+    // reader never sees half a report
+    public void dump() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, report().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                // Already gone
+            }
+            name = null;
+        }
+        dump();
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump();
+        } catch (IOException | RuntimeException e) {
+            // Try again at the next interval
+        }
+    }
+
+    private double seatUtilization() {
+        long capacity = engine.getSeatCapacity();
+        return capacity == 0 ? 0 : (double) engine.getBookedSeats() / capacity;
+    }
+
+    // Attributes are named "<operation>.<statistic>"; the set grows as new
+    // operations are first used
+    private class Bean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (attribute.equals("seatUtilization")) {
+                return seatUtilization();
+            }
+            if (attribute.equals("flightCount")) {
+                return flights.size();
+            }
+            int dot = attribute.lastIndexOf('.');
+            if (dot == -1 || !metrics.getOperationNames().contains(attribute.substring(0, dot))) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            Metrics.Operation operation = metrics.operation(attribute.substring(0, dot));
+            LatencyHistogram latency = operation.getLatency();
+            switch (attribute.substring(dot + 1)) {
+                case "calls": return operation.getCalls();
+                case "rejected": return operation.getRejected();
+                case "errors": return operation.getErrors();
+                case "p50Micros": return latency.getPercentile(50) / 1e3;
+                case "p90Micros": return latency.getPercentile(90) / 1e3;
+                case "p99Micros": return latency.getPercentile(99) / 1e3;
+                case "p999Micros": return latency.getPercentile(99.9) / 1e3;
+                case "maxMicros": return latency.getMax() / 1e3;
+                case "meanMicros": return latency.getMean() / 1e3;
+                default: throw new AttributeNotFoundException(attribute);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Left out, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            if (action.equals("report") && (params == null || params.length == 0)) {
+                return report();
+            }
+            if (action.equals("loadFactor") && params != null && params.length == 1) {
+                Flight flight = flights.get(String.valueOf(params[0]));
+                return flight == null ? -1.0 : new FlightRegistry.SeatCount(flight).getLoadFactor();
+            }
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            attributes.add(new MBeanAttributeInfo("seatUtilization", "double",
+                    "Booked seats over capacity across all flights", true, false, false));
+            attributes.add(new MBeanAttributeInfo("flightCount", "int", "Number of flights", true, false, false));
+            for (String operation : metrics.getOperationNames()) {
+                for (String statistic : STATISTICS) {
+                    boolean count = statistic.equals("calls") || statistic.equals("rejected") || statistic.equals("errors");
+                    attributes.add(new MBeanAttributeInfo(operation + "." + statistic, count ? "long" : "double",
+                            statistic + " of " + operation, true, false, false));
+                }
+            }
+            MBeanOperationInfo[] operations = {
+                new MBeanOperationInfo("report", "Full text report", new MBeanParameterInfo[0],
+                                       "java.lang.String", MBeanOperationInfo.INFO),
+                new MBeanOperationInfo("loadFactor", "Booked seats over capacity for one flight (-1 if unknown)",
+                                       new MBeanParameterInfo[] {
+                                           new MBeanParameterInfo("flightNumber", "java.lang.String", "Flight number")},
+                                       "double", MBeanOperationInfo.INFO)
+            };
+            return new MBeanInfo(MetricsReporter.class.getName(), "Airline reservation metrics",
+                                 attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// Where operation outcomes are reported: a status bar in the UI (see
+// StatusBar), a log when running headless (see LogNotifier). Neither blocks
+// the caller, and both may be called from any thread.
+interface Notifier {
+    void info(String message);
+    void error(String message);
+}
@@ -0,0 +1,5 @@
+// Passengers keyed by passenger ID
+class PassengerRegistry extends Registry<Passenger> {
+    @Override
+    protected String keyOf(Passenger passenger) { return passenger.getPassengerId(); }
+}
@@ -0,0 +1,12 @@
+// Substring index over passenger ID, name, email and phone
+class PassengerSearchIndex extends SearchIndex<Passenger> {
+    public PassengerSearchIndex(PassengerRegistry passengers) {
+        super(passengers, "search.passengers");
+    }
+
+    @Override
+    protected String[] fieldsOf(Passenger passenger) {
+        return new String[] {passenger.getPassengerId(), passenger.getName(),
+                             passenger.getEmail(), passenger.getPhone()};
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Streams rows of named fields from a CSV file with a header line (.csv) or
+// a JSON array of flat objects (.json); a lone JSON object reads as an array
+// of one. Readers can also be opened on any character stream, such as an
+// HTTP request body. Each row comes back with its fields
+// in the order of the requested columns; missing fields are empty and
+// unknown ones are ignored. Malformed syntax fails the whole read with the
+// line number; whether the field values make sense is up to the caller.
+abstract class RecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    protected final String[] columns;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int line = 1;
+    private int rowLine;
+
+    protected RecordReader(Reader in, String[] columns) {
+        this.in = in;
+        this.columns = columns;
+        for (int i = 0; i < columns.length; i++) {
+            columnIndexes.put(columns[i], i);
+        }
+    }
+
+    public static RecordReader open(Path file, String... columns) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        if (name.endsWith(".csv")) {
+            return new Csv(in, columns);
+        }
+        if (name.endsWith(".json")) {
+            return new Json(in, columns);
+        }
+        in.close();
+        throw new IOException("Unsupported file type (use .csv or .json): " + file);
+    }
+
+    public static RecordReader csv(Reader in, String... columns) {
+        return new Csv(in, columns);
+    }
+
+    public static RecordReader json(Reader in, String... columns) {
+        return new Json(in, columns);
+    }
+
+    // The next row, or null at the end of the file
+    public abstract String[] next() throws IOException;
+
+    // Line on which the row last returned by next() starts
+    public int getLine() { return rowLine; }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    protected void startRow() { rowLine = line; }
+
+    // Index of a column in the rows returned, or -1 if it was not requested
+    protected int columnIndex(String name) {
+        Integer index = columnIndexes.get(name.trim().toLowerCase());
+        return index == null ? -1 : index;
+    }
+
+    protected String[] emptyRow() {
+        String[] row = new String[columns.length];
+        Arrays.fill(row, "");
+        return row;
+    }
+
+    protected int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    protected int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    protected IOException syntaxError(String message) {
+        return new IOException(message + " at line " + line);
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    // RFC 4180 style: comma separated, fields optionally in double quotes
+    // with "" for a quote, quoted fields may span lines
+    private static final class Csv extends RecordReader {
+        private int[] targets;
+
+        Csv(Reader in, String[] columns) {
+            super(in, columns);
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            if (targets == null) {
+                readHeader();
+            }
+            while (true) {
+                startRow();
+                if (peek() == -1) {
+                    return null;
+                }
+                String[] row = emptyRow();
+                boolean blank = true;
+                int field = 0;
+                StringBuilder value = new StringBuilder();
+                while (true) {
+                    boolean endOfRow = readField(value);
+                    if (value.length() > 0 || field > 0 || !endOfRow) {
+                        blank = false;
+                    }
+                    if (field < targets.length && targets[field] != -1) {
+                        row[targets[field]] = value.toString();
+                    }
+                    field++;
+                    value.setLength(0);
+                    if (endOfRow) {
+                        break;
+                    }
+                }
+                if (!blank) {
+                    return row;
+                }
+            }
+        }
+
+        private void readHeader() throws IOException {
+            startRow();
+            StringBuilder value = new StringBuilder();
+            int[] found = new int[0];
+            boolean[] seen = new boolean[columns.length];
+            boolean endOfRow = peek() == -1;
+            while (!endOfRow) {
+                endOfRow = readField(value);
+                int index = columnIndex(value.toString());
+                found = Arrays.copyOf(found, found.length + 1);
+                found[found.length - 1] = index;
+                if (index != -1) {
+                    seen[index] = true;
+                }
+                value.setLength(0);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (!seen[i]) {
+                    throw new IOException("Missing column in CSV header: " + columns[i]);
+                }
+            }
+            targets = found;
+        }
+
+        // Reads one field into value; returns true if it ended the row
+        private boolean readField(StringBuilder value) throws IOException {
+            int c = read();
+            if (c == '"') {
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw syntaxError("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        if (peek() != '"') {
+                            break;
+                        }
+                        read();
+                    }
+                    value.append((char) c);
+                }
+                c = read();
+                if (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    throw syntaxError("Unexpected character after quoted field");
+                }
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    value.append((char) c);
+                    c = read();
+                }
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            }
+            return c != ',';
+        }
+    }
+
+    // A top-level array of objects whose values are strings, numbers,
+    // booleans or null
+    private static final class Json extends RecordReader {
+        private boolean started;
+        private boolean finished;
+
+        Json(Reader in, String[] columns) {
+            super(in, columns);
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            int c = skipWhitespace();
+            if (!started) {
+                started = true;
+                if (c == '{') {
+                    finished = true;
+                    startRow();
+                    return readObject();
+                }
+                if (c != '[') {
+                    throw syntaxError("Expected '[' or '{'");
+                }
+                c = skipWhitespace();
+                if (c == ']') {
+                    finished = true;
+                    return null;
+                }
+            } else if (c == ']') {
+                finished = true;
+                return null;
+            } else if (c == ',') {
+                c = skipWhitespace();
+            } else {
+                throw syntaxError("Expected ',' or ']'");
+            }
+            if (c != '{') {
+                throw syntaxError("Expected '{'");
+            }
+            startRow();
+            return readObject();
+        }
+
+        private String[] readObject() throws IOException {
+            String[] row = emptyRow();
+            StringBuilder text = new StringBuilder();
+            int c = skipWhitespace();
+            if (c == '}') {
+                return row;
+            }
+            while (true) {
+                if (c != '"') {
+                    throw syntaxError("Expected a field name");
+                }
+                readString(text);
+                int index = columnIndex(text.toString());
+                text.setLength(0);
+                if (skipWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                readValue(text);
+                if (index != -1) {
+                    row[index] = text.toString();
+                }
+                text.setLength(0);
+                c = skipWhitespace();
+                if (c == '}') {
+                    return row;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                c = skipWhitespace();
+            }
+        }
+
+        private void readValue(StringBuilder value) throws IOException {
+            int c = skipWhitespace();
+            if (c == '"') {
+                readString(value);
+                return;
+            }
+            if (c == '{' || c == '[' || c == -1) {
+                throw syntaxError("Expected a string, number, boolean or null");
+            }
+            value.append((char) c);
+            while ((c = peek()) != -1 && c != ',' && c != '}' && !Character.isWhitespace(c)) {
+                value.append((char) read());
+            }
+            if ("null".contentEquals(value)) {
+                value.setLength(0);
+            }
+        }
+
+        private void readString(StringBuilder value) throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1 || c == '\n') {
+                    throw syntaxError("Unterminated string");
+                }
+                if (c == '"') {
+                    return;
+                }
+                if (c != '\\') {
+                    value.append((char) c);
+                    continue;
+                }
+                c = read();
+                switch (c) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u': {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw syntaxError("Bad \\u escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        value.append((char) code);
+                        break;
+                    }
+                    case '"': case '\\': case '/': value.append((char) c); break;
+                    default: throw syntaxError("Bad escape");
+                }
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c = read();
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = read();
+            }
+            return c;
+        }
+    }
+}
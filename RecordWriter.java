@@ -0,0 +1,128 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Writes rows in the formats RecordReader reads: CSV with a header line, or
+// a JSON array with one object per line. Numeric columns are written as
+// JSON numbers.
+abstract class RecordWriter implements Closeable {
+    protected final String[] columns;
+    protected final Writer out;
+
+    protected RecordWriter(Writer out, String[] columns) {
+        this.out = out;
+        this.columns = columns;
+    }
+
+    public static RecordWriter open(Path file, String[] columns, boolean[] numeric) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        if (!name.endsWith(".csv") && !name.endsWith(".json")) {
+            throw new IOException("Unsupported file type (use .csv or .json): " + file);
+        }
+        Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        return name.endsWith(".csv") ? new Csv(out, columns) : new Json(out, columns, numeric);
+    }
+
+    public abstract void write(String... fields) throws IOException;
+
+    private static final class Csv extends RecordWriter {
+        Csv(Writer out, String[] columns) throws IOException {
+            super(out, columns);
+            write(columns);
+        }
+
+        @Override
+        public void write(String... fields) throws IOException {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeField(fields[i]);
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeField(String field) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < field.length() && !quote; i++) {
+                char c = field.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(field);
+                return;
+            }
+            out.write('"');
+            out.write(field.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    private static final class Json extends RecordWriter {
+        private final boolean[] numeric;
+        private boolean first = true;
+
+        Json(Writer out, String[] columns, boolean[] numeric) throws IOException {
+            super(out, columns);
+            this.numeric = numeric;
+            out.write('[');
+        }
+
+        @Override
+        public void write(String... fields) throws IOException {
+            out.write(first ? "\n{" : ",\n{");
+            first = false;
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    out.write(", ");
+                }
+                writeString(columns[i]);
+                out.write(": ");
+                if (numeric[i]) {
+                    out.write(fields[i]);
+                } else {
+                    writeString(fields[i]);
+                }
+            }
+            out.write('}');
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.write("\n]\n");
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                }
+            }
+            out.write('"');
+        }
+    }
+}
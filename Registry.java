@@ -0,0 +1,311 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+// Ordered record store with a hash index on the primary key.
+// Insertion order is kept so the JList views stay stable. Key lookups are
+// lock-free; changes and ordered access are serialized on the registry.
+// Records bulk-loaded with loadLazily are only built on first access.
+// Removal leaves a tombstone in the record's slot instead of shifting the
+// ones after it; the slots are compacted once tombstones make up half of
+// them, so removal stays O(1) amortized.
+abstract class Registry<T> implements Iterable<T> {
+    private static final int MIN_COMPACTION_TOMBSTONES = 64;
+    // Fills the slot of a removed record until the next compaction
+    private static final Object REMOVED = new Object();
+
+    // Placeholder for a lazily loaded record that has not been built yet
+    private static final class Unloaded {
+        final int source;
+
+        Unloaded(int source) { this.source = source; }
+    }
+
+    private List<Object> records = new ArrayList<>();
+    // Slot of each record in records
+    private Map<String, Integer> positions = new HashMap<>();
+    private int tombstones;
+    private final Map<String, T> byKey = new ConcurrentHashMap<>();
+    private final List<RegistryListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private volatile long version;
+    private volatile IntFunction<T> loader;
+    private IntFunction<String> loaderKeys;
+    private int unloaded;
+
+    protected abstract String keyOf(T record);
+
+    // Records already in the registry are replayed to the new listener as
+    // additions, so it starts out in sync
+    public void addListener(RegistryListener<T> listener) {
+        addListener(listener, true);
+    }
+
+    public synchronized void addListener(RegistryListener<T> listener, boolean replayExisting) {
+        if (replayExisting) {
+            for (int slot = 0; slot < records.size(); slot++) {
+                if (records.get(slot) != REMOVED) {
+                    listener.recordAdded(recordAt(slot));
+                }
+            }
+        }
+        listeners.add(listener);
+    }
+
+    // Registers the listener and returns the keys of the records it has not
+    // been told about, in order, without building lazily loaded records
+    public synchronized List<String> keysAndAddListener(RegistryListener<T> listener) {
+        List<String> keys = keys();
+        listeners.add(listener);
+        return keys;
+    }
+
+    public void removeListener(RegistryListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    // Fills an empty registry with `count` records that are built by the
+    // loader on first access; keys must be available without building them.
+    // Listeners are not notified.
+    public synchronized void loadLazily(int count, IntFunction<String> keys, IntFunction<T> loader) {
+        if (!isEmpty()) {
+            throw new IllegalStateException("Registry is not empty");
+        }
+        records.clear();
+        tombstones = 0;
+        positions = new HashMap<>(count * 4 / 3 + 16);
+        ((ArrayList<Object>) records).ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            positions.put(keys.apply(i), i);
+            records.add(new Unloaded(i));
+        }
+        this.loaderKeys = keys;
+        this.unloaded = count;
+        this.loader = count > 0 ? loader : null;
+        version++;
+    }
+
+    public synchronized boolean add(T record) {
+        String key = keyOf(record);
+        if (positions.containsKey(key)) {
+            return false;
+        }
+        positions.put(key, records.size());
+        records.add(record);
+        byKey.put(key, record);
+        version++;
+        for (RegistryListener<T> listener : listeners) {
+            listener.recordAdded(record);
+        }
+        return true;
+    }
+
+    // Adds the records whose keys are not taken yet, with one version bump
+    // and one recordsAdded callback, and returns the ones that were not added
+    public synchronized List<T> addAll(List<T> batch) {
+        List<T> added = new ArrayList<>(batch.size());
+        List<T> rejected = new ArrayList<>();
+        for (T record : batch) {
+            String key = keyOf(record);
+            if (positions.containsKey(key)) {
+                rejected.add(record);
+                continue;
+            }
+            positions.put(key, records.size());
+            records.add(record);
+            byKey.put(key, record);
+            added.add(record);
+        }
+        if (!added.isEmpty()) {
+            version++;
+            for (RegistryListener<T> listener : listeners) {
+                listener.recordsAdded(added);
+            }
+        }
+        return rejected;
+    }
+
+    public synchronized boolean update(T record) {
+        String key = keyOf(record);
+        Integer position = positions.get(key);
+        if (position == null) {
+            return false;
+        }
+        if (records.get(position) instanceof Unloaded) {
+            markLoaded();
+        }
+        records.set(position, record);
+        byKey.put(key, record);
+        version++;
+        for (RegistryListener<T> listener : listeners) {
+            listener.recordUpdated(record);
+        }
+        return true;
+    }
+
+    public T get(String key) {
+        T record = byKey.get(key);
+        if (record != null || loader == null) {
+            return record;
+        }
+        synchronized (this) {
+            Integer position = positions.get(key);
+            return position == null ? null : recordAt(position);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T recordAt(int index) {
+        Object record = records.get(index);
+        if (!(record instanceof Unloaded)) {
+            return (T) record;
+        }
+        T loaded = loader.apply(((Unloaded) record).source);
+        records.set(index, loaded);
+        byKey.put(keyOf(loaded), loaded);
+        markLoaded();
+        return loaded;
+    }
+
+    public boolean contains(String key) {
+        if (byKey.containsKey(key)) {
+            return true;
+        }
+        if (loader == null) {
+            return false;
+        }
+        synchronized (this) {
+            return positions.containsKey(key);
+        }
+    }
+
+    public synchronized T remove(String key) {
+        Integer position = positions.get(key);
+        if (position == null) {
+            return null;
+        }
+        T removed = recordAt(position);
+        records.set(position, REMOVED);
+        positions.remove(key);
+        byKey.remove(key);
+        if (++tombstones >= MIN_COMPACTION_TOMBSTONES && tombstones * 2 >= records.size()) {
+            compact();
+        }
+        version++;
+        for (RegistryListener<T> listener : listeners) {
+            listener.recordRemoved(removed);
+        }
+        return removed;
+    }
+
+    // Bumped on every change; lets callers tell whether cached results are stale
+    public long getVersion() { return version; }
+
+    public synchronized int size() { return records.size() - tombstones; }
+    public synchronized boolean isEmpty() { return size() == 0; }
+
+    // Keys of all records in order, without building lazily loaded records
+    public synchronized List<String> keys() {
+        List<String> keys = new ArrayList<>(size());
+        for (int slot = 0; slot < records.size(); slot++) {
+            if (records.get(slot) != REMOVED) {
+                keys.add(keyAt(slot));
+            }
+        }
+        return keys;
+    }
+
+    // Builds any records that are still unloaded
+    public synchronized List<T> snapshot() {
+        List<T> copy = new ArrayList<>(size());
+        for (int slot = 0; slot < records.size(); slot++) {
+            if (records.get(slot) != REMOVED) {
+                copy.add(recordAt(slot));
+            }
+        }
+        return copy;
+    }
+
+    // The records in order, for reading after the registry has moved on:
+    // built records are copied now, while records still unloaded are built
+    // and copied only when read from the returned list. They cannot have
+    // changed, since a change builds them first.
+    public synchronized <R> List<R> cut(Function<T, R> copy) {
+        Object[] cut = new Object[size()];
+        int index = 0;
+        for (Object record : records) {
+            if (record instanceof Unloaded) {
+                cut[index++] = record;
+            } else if (record != REMOVED) {
+                @SuppressWarnings("unchecked")
+                T built = (T) record;
+                cut[index++] = copy.apply(built);
+            }
+        }
+        IntFunction<T> source = loader;
+        return new AbstractList<R>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public R get(int index) {
+                Object record = cut[index];
+                return record instanceof Unloaded ? copy.apply(source.apply(((Unloaded) record).source)) : (R) record;
+            }
+
+            @Override
+            public int size() { return cut.length; }
+        };
+    }
+
+    // Maps the records in order without building lazily loaded ones:
+    // records already built go through `built`, the others through
+    // `unloaded` with their loader index (or are built if it is null)
+    public synchronized <R> List<R> map(Function<T, R> built, IntFunction<R> unloaded) {
+        List<R> mapped = new ArrayList<>(size());
+        for (int slot = 0; slot < records.size(); slot++) {
+            Object record = records.get(slot);
+            if (record instanceof Unloaded && unloaded != null) {
+                mapped.add(unloaded.apply(((Unloaded) record).source));
+            } else if (record != REMOVED) {
+                mapped.add(built.apply(recordAt(slot)));
+            }
+        }
+        return mapped;
+    }
+
+    // Iterates over a snapshot so callers never see a concurrent change
+    @Override
+    public Iterator<T> iterator() { return snapshot().iterator(); }
+
+    private void markLoaded() {
+        if (--unloaded == 0) {
+            // Everything is built; drop the loader and whatever it holds on to
+            loader = null;
+            loaderKeys = null;
+        }
+    }
+
+    // Drops the tombstones; each remaining record moves to its new slot
+    private void compact() {
+        List<Object> live = new ArrayList<>(size());
+        for (int slot = 0; slot < records.size(); slot++) {
+            if (records.get(slot) != REMOVED) {
+                positions.put(keyAt(slot), live.size());
+                live.add(records.get(slot));
+            }
+        }
+        records = live;
+        tombstones = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String keyAt(int index) {
+        Object record = records.get(index);
+        return record instanceof Unloaded ? loaderKeys.apply(((Unloaded) record).source) : keyOf((T) record);
+    }
+}
@@ -0,0 +1,136 @@
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.Component;
+import java.util.function.Function;
+
+// Combo box model over a registry. Rows come from a RegistryListModel, so
+// registry changes arrive as single-row inserts, updates and removals
+// instead of rebuilding the dropdown, and rows are formatted only when shown.
+// Items are the records themselves and the selection is kept by key: it
+// survives updates and filtering and is cleared only when the selected
+// record is removed. filter() exposes the row model so a LiveSearch can
+// narrow the rows for type-ahead.
+class RegistryComboBoxModel<T> extends AbstractListModel<T> implements ComboBoxModel<T> {
+    private final Registry<T> registry;
+    private final RegistryListModel<T> rows;
+    private String selectedKey;
+
+    public RegistryComboBoxModel(Registry<T> registry, Function<T, String> formatter) {
+        this.registry = registry;
+        this.rows = new RegistryListModel<>(registry, formatter);
+        rows.addListDataListener(new ListDataListener() {
+            public void intervalAdded(ListDataEvent e) {
+                fireIntervalAdded(RegistryComboBoxModel.this, e.getIndex0(), e.getIndex1());
+                if (selectedKey == null && rows.getSize() > 0) {
+                    setSelectedKey(rows.getKeyAt(0));
+                }
+            }
+
+            public void intervalRemoved(ListDataEvent e) {
+                fireIntervalRemoved(RegistryComboBoxModel.this, e.getIndex0(), e.getIndex1());
+                selectionChanged();
+            }
+
+            public void contentsChanged(ListDataEvent e) {
+                fireContentsChanged(RegistryComboBoxModel.this, e.getIndex0(), e.getIndex1());
+                selectionChanged();
+            }
+        });
+        if (rows.getSize() > 0) {
+            selectedKey = rows.getKeyAt(0);
+        }
+    }
+
+    // Row model the dropdown shows; a LiveSearch over it filters the rows
+    public RegistryListModel<T> filter() { return rows; }
+
+    @Override
+    public int getSize() { return rows.getSize(); }
+
+    @Override
+    public T getElementAt(int index) { return rows.getElementAt(index); }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setSelectedItem(Object item) {
+        setSelectedKey(item == null ? null : registry.keyOf((T) item));
+    }
+
+    // The selected record, or null if there is none or it has been removed
+    @Override
+    public T getSelectedItem() {
+        return selectedKey == null ? null : registry.get(selectedKey);
+    }
+
+    public String getSelectedKey() { return selectedKey; }
+
+    public void setSelectedKey(String key) {
+        if (key == null ? selectedKey != null : !key.equals(selectedKey)) {
+            selectedKey = key;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    // The row text of the selection may have changed, or its record may be gone
+    private void selectionChanged() {
+        if (selectedKey == null) {
+            return;
+        }
+        if (!registry.contains(selectedKey)) {
+            selectedKey = null;
+        }
+        fireContentsChanged(this, -1, -1);
+    }
+
+    // JComboBox finds an item's index by comparing it with every row, which
+    // would fetch every record; this combo goes by key instead. The prototype
+    // record sizes the combo, and fixed popup cells stop the popup list from
+    // measuring every row.
+    public static class Combo<T> extends JComboBox<T> {
+        private final RegistryComboBoxModel<T> model;
+
+        public Combo(RegistryComboBoxModel<T> model, T prototype) {
+            super(model);
+            this.model = model;
+            setRenderer(new DefaultListCellRenderer() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                              boolean isSelected, boolean cellHasFocus) {
+                    Object text = value == null ? "" : model.rows.getRowText((T) value);
+                    return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+                }
+            });
+            setPrototypeDisplayValue(prototype);
+            Object popup = getUI().getAccessibleChild(this, 0);
+            if (popup instanceof javax.swing.plaf.basic.ComboPopup) {
+                JList<?> list = ((javax.swing.plaf.basic.ComboPopup) popup).getList();
+                JLabel probe = new JLabel(model.rows.getRowText(prototype));
+                list.setFixedCellHeight(probe.getPreferredSize().height + 2);
+                list.setFixedCellWidth(probe.getPreferredSize().width);
+            }
+        }
+
+        // Also called while the superclass constructor installs the UI, before
+        // the model field is set, so this goes through getModel()
+        @Override
+        public int getSelectedIndex() {
+            String key = ((RegistryComboBoxModel<?>) getModel()).getSelectedKey();
+            return key == null ? -1 : ((RegistryComboBoxModel<?>) getModel()).rows.indexOf(key);
+        }
+
+        @Override
+        public void setSelectedIndex(int index) {
+            if (index < -1 || index >= model.getSize()) {
+                throw new IllegalArgumentException("setSelectedIndex: " + index + " out of bounds");
+            }
+            model.setSelectedKey(index == -1 ? null : model.rows.getKeyAt(index));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// List model over a registry that only holds record keys. Records are
+// fetched, and their row text formatted, when a row is actually painted;
+// formatted rows are kept in a small LRU cache. Registry changes are applied
+// on the EDT, one list event each, and bulk replacement (search results)
+// fires a single event. Use with a fixed cell width and height so the JList
+// never measures every row. A key-to-row map makes indexOf a hash lookup;
+// a removal only marks the rows after it as shifted, and their positions
+// are brought up to date on the next lookup that needs one of them.
+class RegistryListModel<T> extends AbstractListModel<T> implements RegistryListener<T> {
+    private static final int ROW_CACHE_SIZE = 1024;
+
+    private final Registry<T> registry;
+    private final Function<T, String> formatter;
+    private final List<String> keys;
+    // Row of each shown key; exact below staleFrom, possibly too high from there on
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int staleFrom;
+    private final Map<String, String> rows = new LinkedHashMap<String, String>(ROW_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > ROW_CACHE_SIZE;
+        }
+    };
+
+    public RegistryListModel(Registry<T> registry, Function<T, String> formatter) {
+        this.registry = registry;
+        this.formatter = formatter;
+        this.keys = new ArrayList<>();
+        addKeys(registry.keysAndAddListener(this));
+    }
+
+    @Override
+    public int getSize() { return keys.size(); }
+
+    // May be null if the record was removed and the removal is still queued
+    @Override
+    public T getElementAt(int index) { return registry.get(keys.get(index)); }
+
+    public String getKeyAt(int index) { return keys.get(index); }
+
+    public String getRowText(int index) {
+        return getRowText(keys.get(index));
+    }
+
+    // Row text for any key, shown or not; empty once the record is gone
+    public String getRowText(String key) {
+        String row = rows.get(key);
+        if (row == null) {
+            T record = registry.get(key);
+            if (record == null) {
+                return "";
+            }
+            row = formatter.apply(record);
+            rows.put(key, row);
+        }
+        return row;
+    }
+
+    // Row text for a record, which need not be in the registry (e.g. a
+    // prototype used for sizing)
+    public String getRowText(T record) {
+        String key = registry.keyOf(record);
+        return registry.get(key) == record ? getRowText(key) : formatter.apply(record);
+    }
+
+    public int indexOf(String key) {
+        Integer position = positions.get(key);
+        if (position == null) {
+            return -1;
+        }
+        if (position >= staleFrom) {
+            for (int i = staleFrom; i < keys.size(); i++) {
+                positions.put(keys.get(i), i);
+            }
+            staleFrom = keys.size();
+            position = positions.get(key);
+        }
+        return position;
+    }
+
+    // Shows exactly these keys (e.g. search results), with one list event
+    public void replaceAll(Collection<String> replacement) {
+        int oldSize = keys.size();
+        keys.clear();
+        positions.clear();
+        staleFrom = 0;
+        addKeys(replacement);
+        int span = Math.max(oldSize, keys.size());
+        if (span > 0) {
+            fireContentsChanged(this, 0, span - 1);
+        }
+    }
+
+    public void addAll(Collection<String> batch) {
+        int first = keys.size();
+        addKeys(batch);
+        if (keys.size() > first) {
+            fireIntervalAdded(this, first, keys.size() - 1);
+        }
+    }
+
+    // Reformats a row whose text changed without a registry update, e.g.
+    // the seat count after a booking
+    public void refresh(String key) {
+        rows.remove(key);
+        int index = indexOf(key);
+        if (index != -1) {
+            fireContentsChanged(this, index, index);
+        }
+    }
+
+    // Registry callbacks arrive on the changing thread; apply them on the EDT
+    @Override
+    public void recordAdded(T record) {
+        String key = registry.keyOf(record);
+        SwingUtilities.invokeLater(() -> {
+            if (addKey(key)) {
+                fireIntervalAdded(this, keys.size() - 1, keys.size() - 1);
+            }
+        });
+    }
+
+    // A whole batch becomes one list event
+    @Override
+    public void recordsAdded(List<T> records) {
+        List<String> added = new ArrayList<>(records.size());
+        for (T record : records) {
+            added.add(registry.keyOf(record));
+        }
+        SwingUtilities.invokeLater(() -> addAll(added));
+    }
+
+    @Override
+    public void recordUpdated(T record) {
+        String key = registry.keyOf(record);
+        SwingUtilities.invokeLater(() -> refresh(key));
+    }
+
+    @Override
+    public void recordRemoved(T record) {
+        String key = registry.keyOf(record);
+        SwingUtilities.invokeLater(() -> {
+            rows.remove(key);
+            int index = indexOf(key);
+            if (index != -1) {
+                keys.remove(index);
+                positions.remove(key);
+                staleFrom = Math.min(staleFrom, index);
+                fireIntervalRemoved(this, index, index);
+            }
+        });
+    }
+
+    private void addKeys(Collection<String> batch) {
+        for (String key : batch) {
+            addKey(key);
+        }
+    }
+
+    // Appended rows go after every shifted one, so their positions are exact
+    private boolean addKey(String key) {
+        if (positions.containsKey(key)) {
+            return false;
+        }
+        if (staleFrom == keys.size()) {
+            staleFrom++;
+        }
+        positions.put(key, keys.size());
+        keys.add(key);
+        return true;
+    }
+
+    // Paints rows from the model's cached row text
+    public static class RowRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            Object text = list.getModel() instanceof RegistryListModel
+                          ? ((RegistryListModel<?>) list.getModel()).getRowText(index) : value;
+            return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+import java.util.List;
+
+// Receives changes made to a Registry. Callbacks run on the thread that made
+// the change, while the registry is locked, so they arrive in change order.
+interface RegistryListener<T> {
+    void recordAdded(T record);
+    void recordUpdated(T record);
+    void recordRemoved(T record);
+
+    // Records added together by Registry.addAll; listeners that can apply a
+    // batch more cheaply than one record at a time override this
+    default void recordsAdded(List<T> records) {
+        for (T record : records) {
+            recordAdded(record);
+        }
+    }
+}
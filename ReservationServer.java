@@ -0,0 +1,782 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+// JSON over HTTP front end for a ReservationService, on the JDK's built-in
+// server. Requests run on a fixed pool of worker threads, so bookings from
+// different clients proceed in parallel under the engine's per-flight locks.
+//
+//   GET    /passengers?q=text&limit=50    search
+//   POST   /passengers                    add one object, a JSON array or CSV (text/csv)
+//   GET    /passengers/{id}               passenger with booked flight numbers
+//   PUT    /passengers/{id}               change name, email or phone
+//   DELETE /passengers/{id}               remove and cancel their bookings
+//   GET    /passengers/{id}/bookings      booked flights
+//   GET    /flights?q=text&limit=50       search
+//   POST   /flights                       add, as for passengers
+//   GET    /flights/{number}              flight with capacity, free and held seats
+//   PUT    /flights/{number}              change cities, times or free seats
+//   DELETE /flights/{number}              remove
+//   GET    /flights/{number}/waitlist     waiting passengers in promotion order
+//   POST   /bookings                      book each {"passenger", "flight"} in the body
+//   POST   /bookings/cancel               cancel each {"passenger", "flight"} in the body
+//   POST   /bookings/group                book each {"passengers", "flights"} group, given as
+//                                         comma-separated lists, all or nothing
+//   POST   /waitlist                      waitlist each {"passenger", "flight", "fare"}, or
+//                                         book them if a seat is free
+//   POST   /waitlist/leave                withdraw each {"passenger", "flight"}
+//   POST   /holds                         hold a seat for each {"passenger", "flight", "seconds"}
+//   POST   /holds/confirm                 book each held {"passenger", "flight"}
+//   POST   /holds/release                 release each held {"passenger", "flight"}
+//   GET    /routes?from&to&after&before&seats
+//   GET    /connections?from&to&after&before&seats&order=fastest|fewest_stops&limit
+//   GET    /metrics                       text report
+//
+// Adds go through the batch importer, so a bulk POST is validated row by row
+// and answered with the counts and the first MAX_REPORTED_ERRORS problems.
+class ReservationServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final String[] BOOKING_COLUMNS = {"passenger", "flight"};
+    private static final String[] WAITLIST_COLUMNS = {"passenger", "flight", "fare"};
+    private static final String[] HOLD_COLUMNS = {"passenger", "flight", "seconds"};
+    private static final String[] GROUP_COLUMNS = {"passengers", "flights"};
+    private static final String[] PASSENGER_CHANGE_COLUMNS = {"name", "email", "phone"};
+    private static final String[] FLIGHT_CHANGE_COLUMNS = {"from", "to", "departure", "arrival", "seats"};
+
+    // Ends a request early with a status and message
+    private static class HttpError extends Exception {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final ReservationService service;
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    public ReservationServer(ReservationService service, InetSocketAddress address, int threads)
+            throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(address, 0);
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "http-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(workers);
+        server.createContext("/", this::handle);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting requests and waits briefly for those in progress
+    public void stop() {
+        server.stop(1);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // java ReservationServer [port] [data-directory]; listens on localhost only
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        LocalReservationService service = LocalReservationService.open(Paths.get(args.length > 1 ? args[1] : "data"));
+        LogNotifier log = new LogNotifier(System.err);
+        service.setNotifier(log);
+        // Handlers mostly wait on journal flushes, so use more threads than cores
+        int threads = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+        ReservationServer server = new ReservationServer(service,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                service.close();
+            } catch (IOException e) {
+                log.error("Error saving data: " + e.getMessage());
+            }
+            log.flush();
+        }));
+        server.start();
+        log.info("Listening on http://localhost:" + server.getPort() + "/");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route(exchange);
+        } catch (HttpError e) {
+            status = e.status;
+            body = new Json().object().field("error", e.getMessage()).end().toString();
+        } catch (IOException e) {
+            // Unreadable request bodies; RecordReader reports the line
+            status = 400;
+            body = new Json().object().field("error", e.getMessage()).end().toString();
+        } catch (RuntimeException e) {
+            status = 500;
+            body = new Json().object().field("error", String.valueOf(e)).end().toString();
+        }
+        send(exchange, status, "application/json", body);
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/metrics")) {
+            handle(exchange);
+        } else if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, "application/json",
+                 new Json().object().field("error", "Method not allowed: " + exchange.getRequestMethod())
+                           .end().toString());
+        } else {
+            send(exchange, 200, "text/plain", service.metricsReport());
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Returns the JSON response body
+    private String route(HttpExchange exchange) throws HttpError, IOException {
+        String method = exchange.getRequestMethod();
+        List<String> path = segments(exchange.getRequestURI().getRawPath());
+        Map<String, String> query = parameters(exchange.getRequestURI().getRawQuery());
+        String resource = path.isEmpty() ? "" : path.get(0);
+        switch (resource) {
+            case "passengers":
+                if (path.size() == 1) {
+                    if (method.equals("GET")) {
+                        return passengersJson(service.searchPassengers(query.getOrDefault("q", ""), limit(query)));
+                    }
+                    requireMethod(method, "POST");
+                    return importReport(exchange, BatchTransfer.PASSENGER_COLUMNS, true);
+                }
+                if (path.size() == 3 && path.get(2).equals("bookings")) {
+                    requireMethod(method, "GET");
+                    requirePassenger(path.get(1));
+                    return flightsJson(service.getBookedFlights(path.get(1)));
+                }
+                if (path.size() == 2) {
+                    return passenger(method, path.get(1), exchange);
+                }
+                break;
+            case "flights":
+                if (path.size() == 1) {
+                    if (method.equals("GET")) {
+                        return flightsJson(service.searchFlights(query.getOrDefault("q", ""), limit(query)));
+                    }
+                    requireMethod(method, "POST");
+                    return importReport(exchange, BatchTransfer.FLIGHT_COLUMNS, false);
+                }
+                if (path.size() == 3 && path.get(2).equals("waitlist")) {
+                    requireMethod(method, "GET");
+                    requireFlight(path.get(1));
+                    return waitlistJson(service.getWaitlist(path.get(1)));
+                }
+                if (path.size() == 2) {
+                    return flight(method, path.get(1), exchange);
+                }
+                break;
+            case "bookings":
+                if (path.size() == 1) {
+                    requireMethod(method, "POST");
+                    return applyToPairs(exchange, "booked",
+                                        (passengerId, flightNumber) -> service.book(passengerId, flightNumber) > 0);
+                }
+                if (path.size() == 2 && path.get(1).equals("cancel")) {
+                    requireMethod(method, "POST");
+                    return applyToPairs(exchange, "cancelled", service::cancel);
+                }
+                if (path.size() == 2 && path.get(1).equals("group")) {
+                    requireMethod(method, "POST");
+                    return groupBookings(exchange);
+                }
+                break;
+            case "waitlist":
+                if (path.size() == 1) {
+                    requireMethod(method, "POST");
+                    return joinWaitlist(exchange);
+                }
+                if (path.size() == 2 && path.get(1).equals("leave")) {
+                    requireMethod(method, "POST");
+                    return applyToPairs(exchange, "left", service::leaveWaitlist);
+                }
+                break;
+            case "holds":
+                if (path.size() == 1) {
+                    requireMethod(method, "POST");
+                    return holdSeats(exchange);
+                }
+                if (path.size() == 2 && path.get(1).equals("confirm")) {
+                    requireMethod(method, "POST");
+                    return applyToPairs(exchange, "confirmed", service::confirmHold);
+                }
+                if (path.size() == 2 && path.get(1).equals("release")) {
+                    requireMethod(method, "POST");
+                    return applyToPairs(exchange, "released", service::releaseHold);
+                }
+                break;
+            case "routes":
+                requireMethod(method, "GET");
+                return flightsJson(service.findFlights(routeQuery(query)));
+            case "connections":
+                requireMethod(method, "GET");
+                return itinerariesJson(service.findConnections(routeQuery(query), order(query), limit(query)));
+            default:
+                break;
+        }
+        throw new HttpError(404, "No such resource: " + exchange.getRequestURI().getPath());
+    }
+
+    private String passenger(String method, String passengerId, HttpExchange exchange) throws HttpError, IOException {
+        switch (method) {
+            case "GET": {
+                Passenger passenger = requirePassenger(passengerId);
+                Json json = passengerJson(new Json(), passenger).name("bookings").array();
+                for (Flight flight : service.getBookedFlights(passengerId)) {
+                    json.value(flight.getFlightNumber());
+                }
+                return json.end().end().toString();
+            }
+            case "PUT": {
+                requirePassenger(passengerId);
+                String[] fields = readObject(exchange, PASSENGER_CHANGE_COLUMNS);
+                String problem = Validation.checkPassengerChanges(fields[0], fields[1], fields[2]);
+                if (problem != null) {
+                    throw new HttpError(400, problem);
+                }
+                Passenger updated = service.updatePassenger(passengerId, fields[0], fields[1], fields[2]);
+                if (updated == null) {
+                    throw new HttpError(404, "No such passenger: " + passengerId);
+                }
+                return passengerJson(new Json(), updated).end().toString();
+            }
+            case "DELETE": {
+                Passenger removed = service.removePassenger(passengerId);
+                if (removed == null) {
+                    throw new HttpError(404, "No such passenger: " + passengerId);
+                }
+                return passengerJson(new Json(), removed).end().toString();
+            }
+            default:
+                throw new HttpError(405, "Method not allowed: " + method);
+        }
+    }
+
+    private String flight(String method, String flightNumber, HttpExchange exchange) throws HttpError, IOException {
+        switch (method) {
+            case "GET":
+                return flightJson(new Json(), requireFlight(flightNumber)).end().toString();
+            case "PUT": {
+                requireFlight(flightNumber);
+                String[] fields = readObject(exchange, FLIGHT_CHANGE_COLUMNS);
+                String problem = Validation.checkFlightChanges(fields[2], fields[3], fields[4]);
+                if (problem != null) {
+                    throw new HttpError(400, problem);
+                }
+                int seats = fields[4].isEmpty() ? -1 : Integer.parseInt(fields[4]);
+                Flight updated = service.updateFlight(flightNumber, fields[0], fields[1], fields[2], fields[3], seats);
+                if (updated == null) {
+                    throw new HttpError(404, "No such flight: " + flightNumber);
+                }
+                return flightJson(new Json(), updated).end().toString();
+            }
+            case "DELETE": {
+                Flight removed = service.removeFlight(flightNumber);
+                if (removed == null) {
+                    throw new HttpError(404, "No such flight: " + flightNumber);
+                }
+                return flightJson(new Json(), removed).end().toString();
+            }
+            default:
+                throw new HttpError(405, "Method not allowed: " + method);
+        }
+    }
+
+    private String importReport(HttpExchange exchange, String[] columns, boolean passengers) throws IOException {
+        List<String> errors = new ArrayList<>();
+        int[] unreported = new int[1];
+        BatchTransfer.Report report;
+        try (RecordReader rows = bodyReader(exchange, columns)) {
+            report = passengers
+                    ? service.importPassengers(rows, error -> collect(errors, unreported, error))
+                    : service.importFlights(rows, error -> collect(errors, unreported, error));
+        }
+        Json json = new Json().object()
+                .field("rows", report.getRows())
+                .field("imported", report.getImported())
+                .field("failed", report.getFailed())
+                .name("errors").array();
+        for (String error : errors) {
+            json.value(error);
+        }
+        return json.end().field("unreportedErrors", unreported[0]).end().toString();
+    }
+
+    private static void collect(List<String> errors, int[] unreported, String error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        } else {
+            unreported[0]++;
+        }
+    }
+
+    // Applies the action to each passenger and flight pair in turn; one pair
+    // failing does not stop the rest
+    private String applyToPairs(HttpExchange exchange, String outcome, BiPredicate<String, String> action)
+            throws IOException {
+        int succeeded = 0;
+        int failed = 0;
+        Json results = new Json().array();
+        try (RecordReader rows = bodyReader(exchange, BOOKING_COLUMNS)) {
+            String[] row;
+            while ((row = rows.next()) != null) {
+                String passengerId = row[0].trim();
+                String flightNumber = row[1].trim();
+                boolean done = action.test(passengerId, flightNumber);
+                if (done) {
+                    succeeded++;
+                } else {
+                    failed++;
+                }
+                results.object().field("passenger", passengerId).field("flight", flightNumber)
+                       .field(outcome, done).end();
+            }
+        }
+        results.end();
+        return new Json().object()
+                .field(outcome, succeeded)
+                .field("failed", failed)
+                .name("results").raw(results.toString())
+                .end().toString();
+    }
+
+    // Each result has the passenger's position, 0 when a free seat was booked
+    // instead, or an error. The fare defaults to economy.
+    private String joinWaitlist(HttpExchange exchange) throws IOException {
+        int waiting = 0;
+        int booked = 0;
+        int failed = 0;
+        Json results = new Json().array();
+        try (RecordReader rows = bodyReader(exchange, WAITLIST_COLUMNS)) {
+            String[] row;
+            while ((row = rows.next()) != null) {
+                String passengerId = row[0].trim();
+                String flightNumber = row[1].trim();
+                FareClass fareClass = row[2].trim().isEmpty() ? FareClass.ECONOMY : FareClass.parse(row[2]);
+                results.object().field("passenger", passengerId).field("flight", flightNumber);
+                if (fareClass == null) {
+                    failed++;
+                    results.field("error", "Unknown fare class: " + row[2].trim()).end();
+                    continue;
+                }
+                int position = service.joinWaitlist(passengerId, flightNumber, fareClass);
+                if (position < 0) {
+                    failed++;
+                    results.field("error", "Not found, already booked or already waiting").end();
+                } else {
+                    if (position == 0) {
+                        booked++;
+                    } else {
+                        waiting++;
+                    }
+                    results.field("booked", position == 0).field("position", position).end();
+                }
+            }
+        }
+        results.end();
+        return new Json().object()
+                .field("waiting", waiting)
+                .field("booked", booked)
+                .field("failed", failed)
+                .name("results").raw(results.toString())
+                .end().toString();
+    }
+
+    // Each group is booked whole or not at all, independently of the others
+    private String groupBookings(HttpExchange exchange) throws IOException {
+        int booked = 0;
+        int failed = 0;
+        Json results = new Json().array();
+        try (RecordReader rows = bodyReader(exchange, GROUP_COLUMNS)) {
+            String[] row;
+            while ((row = rows.next()) != null) {
+                List<String> passengerIds = splitList(row[0]);
+                List<String> flightNumbers = splitList(row[1]);
+                boolean done = service.bookGroup(passengerIds, flightNumbers);
+                if (done) {
+                    booked++;
+                } else {
+                    failed++;
+                }
+                results.object().name("passengers").array();
+                passengerIds.forEach(results::value);
+                results.end().name("flights").array();
+                flightNumbers.forEach(results::value);
+                results.end().field("booked", done).end();
+            }
+        }
+        results.end();
+        return new Json().object()
+                .field("booked", booked)
+                .field("failed", failed)
+                .name("results").raw(results.toString())
+                .end().toString();
+    }
+
+    private static List<String> splitList(String text) {
+        List<String> items = new ArrayList<>();
+        for (String item : text.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    // Each result has the hold's expiry time, or an error
+    private String holdSeats(HttpExchange exchange) throws IOException {
+        int held = 0;
+        int failed = 0;
+        Json results = new Json().array();
+        try (RecordReader rows = bodyReader(exchange, HOLD_COLUMNS)) {
+            String[] row;
+            while ((row = rows.next()) != null) {
+                String passengerId = row[0].trim();
+                String flightNumber = row[1].trim();
+                String seconds = row[2].trim();
+                results.object().field("passenger", passengerId).field("flight", flightNumber);
+                String problem = Validation.checkHoldSeconds(seconds);
+                if (problem != null) {
+                    failed++;
+                    results.field("error", problem).end();
+                    continue;
+                }
+                SeatHold hold = service.holdSeat(passengerId, flightNumber, seconds.isEmpty()
+                        ? SeatHold.DEFAULT_HOLD_SECONDS : Integer.parseInt(seconds));
+                if (hold == null) {
+                    failed++;
+                    results.field("error", "Not found, no seat available or already booked").end();
+                } else {
+                    held++;
+                    results.field("expiresAt", hold.getExpiresAt()).end();
+                }
+            }
+        }
+        results.end();
+        return new Json().object()
+                .field("held", held)
+                .field("failed", failed)
+                .name("results").raw(results.toString())
+                .end().toString();
+    }
+
+    private RouteQuery routeQuery(Map<String, String> query) throws HttpError {
+        String from = query.getOrDefault("from", "").trim();
+        String to = query.getOrDefault("to", "").trim();
+        String after = query.getOrDefault("after", "00:00").trim();
+        String before = query.getOrDefault("before", "23:59").trim();
+        String seats = query.getOrDefault("seats", "").trim();
+        String problem = Validation.checkRouteQuery(from, to, after, before, seats);
+        if (problem != null) {
+            throw new HttpError(400, problem);
+        }
+        return new RouteQuery(from, to, FlightTimes.toMinutes(after), FlightTimes.toMinutes(before),
+                              seats.isEmpty() ? 1 : Integer.parseInt(seats));
+    }
+
+    private static ConnectionFinder.Order order(Map<String, String> query) throws HttpError {
+        String order = query.getOrDefault("order", "fastest");
+        for (ConnectionFinder.Order candidate : ConnectionFinder.Order.values()) {
+            if (candidate.name().equalsIgnoreCase(order)) {
+                return candidate;
+            }
+        }
+        throw new HttpError(400, "Unknown order: " + order);
+    }
+
+    private static int limit(Map<String, String> query) throws HttpError {
+        String limit = query.get("limit");
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value > 0) {
+                return Math.min(value, MAX_LIMIT);
+            }
+        } catch (NumberFormatException e) {
+            // Falls through to the error below
+        }
+        throw new HttpError(400, "Invalid limit: " + limit);
+    }
+
+    private Passenger requirePassenger(String passengerId) throws HttpError {
+        Passenger passenger = service.getPassenger(passengerId);
+        if (passenger == null) {
+            throw new HttpError(404, "No such passenger: " + passengerId);
+        }
+        return passenger;
+    }
+
+    private Flight requireFlight(String flightNumber) throws HttpError {
+        Flight flight = service.getFlight(flightNumber);
+        if (flight == null) {
+            throw new HttpError(404, "No such flight: " + flightNumber);
+        }
+        return flight;
+    }
+
+    private static void requireMethod(String method, String allowed) throws HttpError {
+        if (!method.equals(allowed)) {
+            throw new HttpError(405, "Method not allowed: " + method);
+        }
+    }
+
+    // CSV when the client says so, otherwise JSON
+    private static RecordReader bodyReader(HttpExchange exchange, String[] columns) {
+        Reader body = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        return contentType != null && contentType.contains("csv")
+               ? RecordReader.csv(body, columns) : RecordReader.json(body, columns);
+    }
+
+    // A single JSON object whose fields are trimmed, blank when absent
+    private static String[] readObject(HttpExchange exchange, String[] columns) throws IOException, HttpError {
+        try (RecordReader rows = RecordReader.json(new InputStreamReader(exchange.getRequestBody(),
+                                                                         StandardCharsets.UTF_8), columns)) {
+            String[] fields = rows.next();
+            if (fields == null || rows.next() != null) {
+                throw new HttpError(400, "Expected one JSON object");
+            }
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = fields[i].trim();
+            }
+            return fields;
+        }
+    }
+
+    private static List<String> segments(String rawPath) throws HttpError {
+        List<String> segments = new ArrayList<>();
+        for (String segment : rawPath.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(decode(segment.replace("+", "%2B")));
+            }
+        }
+        return segments;
+    }
+
+    private static Map<String, String> parameters(String rawQuery) throws HttpError {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+                } else if (!pair.isEmpty()) {
+                    parameters.put(decode(pair), "");
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static String decode(String text) throws HttpError {
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            throw new HttpError(400, "Malformed URL: " + text);
+        }
+    }
+
+    private static String passengersJson(List<Passenger> passengers) {
+        Json json = new Json().array();
+        for (Passenger passenger : passengers) {
+            passengerJson(json, passenger).end();
+        }
+        return json.end().toString();
+    }
+
+    private static String flightsJson(List<Flight> flights) {
+        Json json = new Json().array();
+        for (Flight flight : flights) {
+            flightJson(json, flight).end();
+        }
+        return json.end().toString();
+    }
+
+    private static String itinerariesJson(List<Itinerary> itineraries) {
+        Json json = new Json().array();
+        for (Itinerary itinerary : itineraries) {
+            json.object()
+                .field("departure", FlightTimes.format(itinerary.getDeparture()))
+                .field("arrival", FlightTimes.format(itinerary.getArrival()))
+                .field("minutes", itinerary.getDuration())
+                .field("stops", itinerary.getStops())
+                .name("legs").array();
+            for (Flight leg : itinerary.getLegs()) {
+                flightJson(json, leg).end();
+            }
+            json.end().end();
+        }
+        return json.end().toString();
+    }
+
+    private static String waitlistJson(List<Waitlist.Entry> entries) {
+        Json json = new Json().array();
+        int position = 0;
+        for (Waitlist.Entry entry : entries) {
+            json.object()
+                .field("position", ++position)
+                .field("passenger", entry.getPassengerId())
+                .field("fare", entry.getFareClass().name())
+                .field("requestedAt", entry.getRequestedAt())
+                .end();
+        }
+        return json.end().toString();
+    }
+
+    // Leave the object open so callers can add fields
+    private static Json passengerJson(Json json, Passenger passenger) {
+        return json.object()
+                   .field("id", passenger.getPassengerId())
+                   .field("name", passenger.getName())
+                   .field("email", passenger.getEmail())
+                   .field("phone", passenger.getPhone());
+    }
+
+    private static Json flightJson(Json json, Flight flight) {
+        return json.object()
+                   .field("number", flight.getFlightNumber())
+                   .field("from", flight.getDepartureCity())
+                   .field("to", flight.getArrivalCity())
+                   .field("departure", flight.getDepartureTime())
+                   .field("arrival", flight.getArrivalTime())
+                   .field("seats", flight.getCapacity())
+                   .field("available", flight.getAvailableSeats())
+                   .field("held", flight.getHeldSeats());
+    }
+
+    // Minimal JSON text builder; commas are inserted as values are added
+    private static class Json {
+        private final StringBuilder text = new StringBuilder();
+        // Closing brackets of the objects and arrays still open
+        private final StringBuilder closers = new StringBuilder();
+        private boolean needsComma;
+
+        Json object() { return open('{', '}'); }
+        Json array() { return open('[', ']'); }
+
+        Json end() {
+            text.append(closers.charAt(closers.length() - 1));
+            closers.setLength(closers.length() - 1);
+            needsComma = true;
+            return this;
+        }
+
+        Json name(String name) {
+            separate();
+            string(name);
+            text.append(':');
+            needsComma = false;
+            return this;
+        }
+
+        Json field(String name, String value) { return name(name).value(value); }
+        Json field(String name, long value) { return name(name).raw(String.valueOf(value)); }
+        Json field(String name, boolean value) { return name(name).raw(String.valueOf(value)); }
+
+        Json value(String value) {
+            separate();
+            string(value);
+            needsComma = true;
+            return this;
+        }
+
+        Json raw(String json) {
+            separate();
+            text.append(json);
+            needsComma = true;
+            return this;
+        }
+
+        @Override
+        public String toString() { return text.toString(); }
+
+        private Json open(char bracket, char closer) {
+            separate();
+            text.append(bracket);
+            closers.append(closer);
+            needsComma = false;
+            return this;
+        }
+
+        private void separate() {
+            if (needsComma) {
+                text.append(',');
+            }
+        }
+
+        private void string(String value) {
+            text.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': text.append("\\\""); break;
+                    case '\\': text.append("\\\\"); break;
+                    case '\n': text.append("\\n"); break;
+                    case '\r': text.append("\\r"); break;
+                    case '\t': text.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            text.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            text.append(c);
+                        }
+                }
+            }
+            text.append('"');
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// The reservation operations, independent of how they are reached. The
+// Swing UI and the HTTP front end (see ReservationServer) are both clients
+// of it. Implementations are safe to call from many threads at once;
+// callers validate single records first (see Validation), while imports
+// validate row by row and report each bad row to the errors consumer.
+interface ReservationService {
+    Passenger getPassenger(String passengerId);
+    boolean addPassenger(Passenger passenger);
+    BatchTransfer.Report importPassengers(RecordReader rows, Consumer<String> errors) throws IOException;
+
+    // Blank fields keep their current value; null if there is no such passenger
+    Passenger updatePassenger(String passengerId, String name, String email, String phone);
+
+    // Also cancels every booking the passenger holds
+    Passenger removePassenger(String passengerId);
+
+    List<Passenger> searchPassengers(String query, int limit);
+
+    Flight getFlight(String flightNumber);
+    boolean addFlight(Flight flight);
+    BatchTransfer.Report importFlights(RecordReader rows, Consumer<String> errors) throws IOException;
+
+    // Blank fields keep their current value, as does a negative seat count;
+    // null if there is no such flight
+    Flight updateFlight(String flightNumber, String departureCity, String arrivalCity,
+                        String departureTime, String arrivalTime, int availableSeats);
+
+    Flight removeFlight(String flightNumber);
+    List<Flight> searchFlights(String query, int limit);
+
+    // The seat assigned, or -1 if the passenger was not booked
+    int book(String passengerId, String flightNumber);
+    // Every passenger on every flight, or nothing at all
+    boolean bookGroup(List<String> passengerIds, List<String> flightNumbers);
+    boolean cancel(String passengerId, String flightNumber);
+    List<Flight> getBookedFlights(String passengerId);
+    // -1 if the passenger has no seat on the flight
+    int getSeatNumber(String passengerId, String flightNumber);
+    // Seat counts read together under the flight's lock; null if there is no
+    // such flight. Views show these instead of reading a live Flight.
+    FlightDetails getFlightDetails(String flightNumber);
+
+    // Position on the waitlist (1 is next), 0 if a seat was free and has been
+    // booked, -1 if the passenger or flight does not exist or the passenger
+    // is already booked or waiting
+    int joinWaitlist(String passengerId, String flightNumber, FareClass fareClass);
+    boolean leaveWaitlist(String passengerId, String flightNumber);
+    // 0 if not waiting
+    int getWaitlistPosition(String passengerId, String flightNumber);
+    List<Waitlist.Entry> getWaitlist(String flightNumber);
+
+    // Sets a seat aside for the passenger; null if there is none available
+    // or the passenger is already booked. Holding again extends the hold.
+    SeatHold holdSeat(String passengerId, String flightNumber, int seconds);
+    // Books the held seat; false once the hold has expired
+    boolean confirmHold(String passengerId, String flightNumber);
+    boolean releaseHold(String passengerId, String flightNumber);
+    SeatHold getHold(String passengerId, String flightNumber);
+
+    List<Flight> findFlights(RouteQuery query);
+    List<Itinerary> findConnections(RouteQuery query, ConnectionFinder.Order order, int limit);
+
+    // Operation counts, latencies and seat utilization as text
+    String metricsReport();
+}
@@ -0,0 +1,471 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Durable storage for passengers, flights and bookings. Every change is
+// appended to a write-ahead journal (see BookingJournal); a binary snapshot
+// of the full state (see SnapshotFile) is written periodically and on close,
+// after which the journal starts a new generation and older files are
+// deleted. Waitlists are not part of the snapshot: they are appended afresh
+// at the start of each new journal instead. On open the latest snapshot is mapped and loaded lazily into the
+// registries, and the journals written since are replayed. Changes are only
+// held off while a snapshot copies the records; it is written out after.
+class ReservationStore implements ChangeLog, AutoCloseable {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    // Text snapshot written by earlier versions; read once if present
+    private static final String LEGACY_SNAPSHOT_FILE = "snapshot.txt";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final long SNAPSHOT_EVERY_RECORDS = 10_000;
+    private static final long SNAPSHOT_CHECK_SECONDS = 60;
+
+    private final Path directory;
+    private final BookingEngine engine;
+    private final BookingJournal journal;
+    private final ScheduledExecutorService scheduler;
+    private volatile Notifier notifier = new LogNotifier(System.err);
+    // Held for a whole snapshot, so a periodic one and close never overlap
+    private final Object snapshotLock = new Object();
+    private long generation;
+    // Journal sequence the latest snapshot covers, or -1 if the stored state
+    // has changes that no snapshot holds yet
+    private long snapshotSequence = -1;
+
+    // A consistent copy of the state, taken under runExclusively
+    private static class Cut {
+        List<Passenger> passengers;
+        List<SnapshotFile.FlightImage> flights;
+    }
+
+    private ReservationStore(Path directory, BookingEngine engine, long generation) throws IOException {
+        this.directory = directory;
+        this.engine = engine;
+        this.generation = generation;
+        this.journal = new BookingJournal(journalFile(directory, generation));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Loads the stored state into the engine's (empty) registries and starts
+    // journaling every further change
+    public static ReservationStore open(Path directory, BookingEngine engine) throws IOException {
+        Files.createDirectories(directory);
+        boolean changed = snapshotGenerations(directory).isEmpty()
+                          && Files.exists(directory.resolve(LEGACY_SNAPSHOT_FILE));
+        long generation = loadSnapshot(directory, engine);
+        long current = generation;
+        for (long journalGeneration : journalGenerations(directory)) {
+            Path file = journalFile(directory, journalGeneration);
+            if (journalGeneration < generation) {
+                Files.delete(file);
+            } else {
+                changed |= replay(BookingJournal.recover(file), engine);
+                current = journalGeneration;
+            }
+        }
+
+        // Loading bypassed the engine, so its seat totals start from here
+        engine.recountSeats();
+        ReservationStore store = new ReservationStore(directory, engine, current);
+        if (!changed) {
+            store.snapshotSequence = 0;
+        }
+        // Only changes from here on are journaled; the loaded state is
+        // already covered by the snapshot and journals on disk
+        engine.getPassengers().addListener(store.new PassengerChanges(), false);
+        engine.getFlights().addListener(store.new FlightChanges(), false);
+        engine.setChangeLog(store);
+        store.scheduler.scheduleWithFixedDelay(store::snapshotIfDue, SNAPSHOT_CHECK_SECONDS,
+                                               SNAPSHOT_CHECK_SECONDS, TimeUnit.SECONDS);
+        return store;
+    }
+
+    // Receives background failures, such as a periodic snapshot that could
+    // not be written; they go to standard error until this is set
+    public void setNotifier(Notifier notifier) { this.notifier = notifier; }
+
+    @Override
+    public long booked(String passengerId, String flightNumber, int seatNumber) {
+        return journal.append(record("B", passengerId, flightNumber, String.valueOf(seatNumber)));
+    }
+
+    // One record, so a torn write loses the whole group: the journal's
+    // checksum rejects a record cut anywhere, even inside the last seat
+    // number, and replay checks the field count against the count up front
+    @Override
+    public long bookedGroup(String[] passengerIds, String[] flightNumbers, int[] seatNumbers) {
+        String[] fields = new String[1 + 3 * passengerIds.length];
+        fields[0] = String.valueOf(passengerIds.length);
+        for (int i = 0; i < passengerIds.length; i++) {
+            fields[1 + 3 * i] = passengerIds[i];
+            fields[2 + 3 * i] = flightNumbers[i];
+            fields[3 + 3 * i] = String.valueOf(seatNumbers[i]);
+        }
+        return journal.append(record("G", fields));
+    }
+
+    @Override
+    public long cancelled(String passengerId, String flightNumber) {
+        return journal.append(record("C", passengerId, flightNumber));
+    }
+
+    @Override
+    public long seatsChanged(String flightNumber, int availableSeats) {
+        return journal.append(record("S", flightNumber, String.valueOf(availableSeats)));
+    }
+
+    @Override
+    public long waitlisted(String passengerId, String flightNumber, FareClass fareClass, long requestedAt) {
+        return journal.append(record("W+", passengerId, flightNumber, fareClass.name(),
+                                     String.valueOf(requestedAt)));
+    }
+
+    @Override
+    public long unwaitlisted(String passengerId, String flightNumber) {
+        return journal.append(record("W-", passengerId, flightNumber));
+    }
+
+    @Override
+    public long lastSequence() {
+        return journal.lastSequence();
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+        journal.awaitDurable(sequence);
+    }
+
+    // Writes a snapshot of the current state and starts a new journal, unless
+    // nothing has been journaled since the last one. Changes are held off
+    // only while the journal rolls over and the records are copied; the
+    // copies are written out after that. Until the new snapshot is in place,
+    // the previous one and the journals still add up to the same state.
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long next = generation + 1;
+            Cut cut = new Cut();
+            try {
+                engine.runExclusively(() -> {
+                    if (journal.lastSequence() == snapshotSequence) {
+                        return;
+                    }
+                    try {
+                        journal.rollTo(journalFile(directory, next));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    generation = next;
+                    for (String flightNumber : engine.getWaitlistedFlights()) {
+                        for (Waitlist.Entry entry : engine.getWaitlist(flightNumber)) {
+                            waitlisted(entry.getPassengerId(), flightNumber, entry.getFareClass(),
+                                       entry.getRequestedAt());
+                        }
+                    }
+                    snapshotSequence = journal.lastSequence();
+                    cut.passengers = engine.getPassengers().cut(
+                            passenger -> new Passenger(passenger.getPassengerId(), passenger.getName(),
+                                                       passenger.getEmail(), passenger.getPhone()));
+                    cut.flights = engine.getFlights().cut(SnapshotFile.FlightImage::new);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (cut.flights == null) {
+                return;
+            }
+            try {
+                writeSnapshot(next, cut);
+                for (long journalGeneration : journalGenerations(directory)) {
+                    if (journalGeneration < next) {
+                        Files.delete(journalFile(directory, journalGeneration));
+                    }
+                }
+                deleteOldSnapshots(directory, next);
+            } catch (IOException | RuntimeException e) {
+                // The journals still hold the changes; the next attempt retries
+                snapshotSequence = -1;
+                throw e;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        snapshot();
+        journal.close();
+    }
+
+    private void snapshotIfDue() {
+        if (journal.getRecordsInFile() < SNAPSHOT_EVERY_RECORDS) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            notifier.error("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    // The rename is forced to disk before returning, since the caller goes
+    // on to delete the journals the new snapshot replaces
+    private void writeSnapshot(long snapshotGeneration, Cut cut) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_PREFIX + snapshotGeneration + SNAPSHOT_SUFFIX + ".tmp");
+        SnapshotFile.write(temp, snapshotGeneration, cut.passengers, cut.flights);
+        Files.move(temp, snapshotFile(directory, snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory);
+    }
+
+    // Some platforms (Windows among them) cannot open or force a directory;
+    // there the rename is left to the file system
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+
+    // Returns the journal generation the loaded snapshot covers (0 if none)
+    private static long loadSnapshot(Path directory, BookingEngine engine) throws IOException {
+        List<Long> generations = snapshotGenerations(directory);
+        if (generations.isEmpty()) {
+            return loadLegacySnapshot(directory.resolve(LEGACY_SNAPSHOT_FILE), engine);
+        }
+        long generation = generations.get(generations.size() - 1);
+        deleteOldSnapshots(directory, generation);
+        SnapshotFile snapshot = SnapshotFile.open(snapshotFile(directory, generation));
+        engine.getPassengers().loadLazily(snapshot.getPassengerCount(), snapshot::passengerId, snapshot::passenger);
+        engine.getFlights().loadLazily(snapshot.getFlightCount(), snapshot::flightNumber, snapshot::flight,
+                                       snapshot::seatCount);
+        return snapshot.getGeneration();
+    }
+
+    // Older snapshots may still be mapped by this process, which some
+    // platforms do not allow deleting; they are retried on the next start
+    private static void deleteOldSnapshots(Path directory, long keep) throws IOException {
+        for (long generation : snapshotGenerations(directory)) {
+            if (generation < keep) {
+                try {
+                    Files.delete(snapshotFile(directory, generation));
+                } catch (IOException e) {
+                    // Left for the next cleanup
+                }
+            }
+        }
+        Files.deleteIfExists(directory.resolve(LEGACY_SNAPSHOT_FILE));
+    }
+
+    private static long loadLegacySnapshot(Path file, BookingEngine engine) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String[] header = fields(lines.get(0));
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = fields(lines.get(i));
+            switch (fields[0]) {
+                case "P":
+                    engine.getPassengers().add(new Passenger(fields[1], fields[2], fields[3], fields[4]));
+                    break;
+                case "F":
+                    engine.getFlights().add(new Flight(fields[1], fields[2], fields[3], fields[4], fields[5],
+                                                       Integer.parseInt(fields[6])));
+                    break;
+                case "B":
+                    engine.getFlights().get(fields[2]).bookPassenger(fields[1], Integer.parseInt(fields[3]));
+                    break;
+                default:
+                    throw new IOException("Unknown snapshot record: " + fields[0]);
+            }
+        }
+        return Long.parseLong(header[1]);
+    }
+
+    // The records are intact (see BookingJournal.recover), so any that does
+    // not apply means the journal does not match the snapshot. Returns
+    // whether any record changed more than the waitlists, which snapshots
+    // do not hold.
+    private static boolean replay(List<String> records, BookingEngine engine) throws IOException {
+        PassengerRegistry passengers = engine.getPassengers();
+        FlightRegistry flights = engine.getFlights();
+        boolean changed = false;
+        for (int i = 0; i < records.size(); i++) {
+            String[] fields = fields(records.get(i));
+            changed |= !fields[0].startsWith("W");
+            try {
+                switch (fields[0]) {
+                    case "P+":
+                        passengers.add(new Passenger(fields[1], fields[2], fields[3], fields[4]));
+                        break;
+                    case "P~": {
+                        Passenger passenger = passengers.get(fields[1]);
+                        passenger.setName(fields[2]);
+                        passenger.setEmail(fields[3]);
+                        passenger.setPhone(fields[4]);
+                        passengers.update(passenger);
+                        break;
+                    }
+                    case "P-":
+                        passengers.remove(fields[1]);
+                        break;
+                    case "F+":
+                        flights.add(new Flight(fields[1], fields[2], fields[3], fields[4], fields[5],
+                                               Integer.parseInt(fields[6])));
+                        break;
+                    case "F~": {
+                        Flight flight = flights.get(fields[1]);
+                        flight.setDepartureCity(fields[2]);
+                        flight.setArrivalCity(fields[3]);
+                        flight.setDepartureTime(fields[4]);
+                        flight.setArrivalTime(fields[5]);
+                        flights.update(flight);
+                        break;
+                    }
+                    case "F-":
+                        flights.remove(fields[1]);
+                        break;
+                    case "B":
+                        flights.get(fields[2]).bookPassenger(fields[1], Integer.parseInt(fields[3]));
+                        break;
+                    case "G": {
+                        int count = Integer.parseInt(fields[1]);
+                        if (fields.length != 2 + 3 * count) {
+                            throw new IllegalArgumentException("Malformed group booking");
+                        }
+                        for (int j = 0; j < count; j++) {
+                            flights.get(fields[3 + 3 * j]).bookPassenger(fields[2 + 3 * j],
+                                                                         Integer.parseInt(fields[4 + 3 * j]));
+                        }
+                        break;
+                    }
+                    case "C":
+                        flights.get(fields[2]).cancelBooking(fields[1]);
+                        break;
+                    case "S":
+                        flights.get(fields[1]).setAvailableSeats(Integer.parseInt(fields[2]));
+                        break;
+                    case "W+":
+                        engine.restoreWaitlistEntry(fields[1], fields[2], FareClass.valueOf(fields[3]),
+                                                    Long.parseLong(fields[4]));
+                        break;
+                    case "W-":
+                        engine.discardWaitlistEntry(fields[1], fields[2]);
+                        break;
+                    default:
+                        throw new IOException("Unknown journal record: " + fields[0]);
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt journal record " + (i + 1), e);
+            }
+        }
+        return changed;
+    }
+
+    // Journals the passenger registry
+    private class PassengerChanges implements RegistryListener<Passenger> {
+        public void recordAdded(Passenger passenger) { journal.append(passengerRecord("P+", passenger)); }
+        public void recordUpdated(Passenger passenger) { journal.append(passengerRecord("P~", passenger)); }
+        public void recordRemoved(Passenger passenger) { journal.append(record("P-", passenger.getPassengerId())); }
+    }
+
+    // Journals the flight registry; seat changes are logged by the engine
+    private class FlightChanges implements RegistryListener<Flight> {
+        public void recordAdded(Flight flight) { journal.append(flightRecord("F+", flight)); }
+        public void recordUpdated(Flight flight) {
+            journal.append(record("F~", flight.getFlightNumber(), flight.getDepartureCity(), flight.getArrivalCity(),
+                                  flight.getDepartureTime(), flight.getArrivalTime()));
+        }
+        public void recordRemoved(Flight flight) { journal.append(record("F-", flight.getFlightNumber())); }
+    }
+
+    private static String passengerRecord(String type, Passenger passenger) {
+        return record(type, passenger.getPassengerId(), passenger.getName(), passenger.getEmail(), passenger.getPhone());
+    }
+
+    private static String flightRecord(String type, Flight flight) {
+        return record(type, flight.getFlightNumber(), flight.getDepartureCity(), flight.getArrivalCity(),
+                      flight.getDepartureTime(), flight.getArrivalTime(), String.valueOf(flight.getCapacity()));
+    }
+
+    // Tab-separated fields; tabs, newlines and backslashes are escaped
+    static String record(String type, String... fields) {
+        StringBuilder line = new StringBuilder(type);
+        for (String field : fields) {
+            line.append('\t');
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                switch (c) {
+                    case '\\': line.append("\\\\"); break;
+                    case '\t': line.append("\\t"); break;
+                    case '\n': line.append("\\n"); break;
+                    case '\r': line.append("\\r"); break;
+                    default: line.append(c);
+                }
+            }
+        }
+        return line.toString();
+    }
+
+    static String[] fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                field.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private static Path snapshotFile(Path directory, long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    private static List<Long> snapshotGenerations(Path directory) throws IOException {
+        return generations(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    }
+
+    private static List<Long> journalGenerations(Path directory) throws IOException {
+        return generations(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX);
+    }
+
+    private static Path journalFile(Path directory, long generation) {
+        return directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    private static List<Long> generations(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                generations.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Flights grouped by (departure city, arrival city), each group sorted by
+// departure time in minutes past midnight. A route query is one hash lookup
+// plus a range scan over the departure window. Kept in step with the flight
+// registry through RegistryListener callbacks. Like SearchIndex, it is built
+// on first use from the records then in the registry, which also covers
+// flights bulk-loaded from a snapshot without any callback.
+class RouteIndex implements RegistryListener<Flight> {
+    private static final Comparator<Entry> BY_DEPARTURE = (a, b) -> a.departure != b.departure
+            ? Integer.compare(a.departure, b.departure)
+            : a.flightNumber.compareTo(b.flightNumber);
+
+    // Snapshot of the indexed fields, so an entry can be found again after
+    // the flight itself has been edited
+    private static final class Entry {
+        final String route;
+        final int departure;
+        final String flightNumber;
+        final Flight flight;
+
+        Entry(String route, int departure, String flightNumber, Flight flight) {
+            this.route = route;
+            this.departure = departure;
+            this.flightNumber = flightNumber;
+            this.flight = flight;
+        }
+
+        // Sorts before every real entry departing at the given minute
+        static Entry probe(int departure) {
+            return new Entry(null, departure, "", null);
+        }
+    }
+
+    private final FlightRegistry flights;
+    private boolean attached;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, TreeSet<Entry>> routes = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private volatile Metrics metrics;
+
+    public RouteIndex(FlightRegistry flights) {
+        this.flights = flights;
+    }
+
+    private void attach() {
+        synchronized (this) {
+            if (!attached) {
+                flights.addListener(this);
+                attached = true;
+            }
+        }
+    }
+
+    @Override
+    public void recordAdded(Flight flight) {
+        lock.writeLock().lock();
+        try {
+            insert(flight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recordsAdded(List<Flight> flights) {
+        lock.writeLock().lock();
+        try {
+            for (Flight flight : flights) {
+                insert(flight);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recordUpdated(Flight flight) {
+        lock.writeLock().lock();
+        try {
+            delete(flight.getFlightNumber());
+            insert(flight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recordRemoved(Flight flight) {
+        lock.writeLock().lock();
+        try {
+            delete(flight.getFlightNumber());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Times queries as "route.find" from now on
+    public void setMetrics(Metrics metrics) { this.metrics = metrics; }
+
+    // Matching flights in departure order
+    public List<Flight> find(RouteQuery query) {
+        Metrics timing = metrics;
+        return timing == null ? findFlights(query) : timing.time("route.find", () -> findFlights(query), found -> true);
+    }
+
+    private List<Flight> findFlights(RouteQuery query) {
+        List<Flight> result = new ArrayList<>();
+        attach();
+        lock.readLock().lock();
+        try {
+            TreeSet<Entry> route = routes.get(routeKey(query.getFromCity(), query.getToCity()));
+            if (route == null) {
+                return result;
+            }
+            int earliest = query.getEarliestDeparture();
+            int latest = query.getLatestDeparture();
+            if (earliest <= latest) {
+                collect(window(route, earliest, latest), query.getMinSeats(), result);
+            } else {
+                collect(window(route, earliest, FlightTimes.MINUTES_PER_DAY - 1), query.getMinSeats(), result);
+                collect(window(route, 0, latest), query.getMinSeats(), result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static NavigableSet<Entry> window(TreeSet<Entry> route, int from, int to) {
+        return route.subSet(Entry.probe(from), true, Entry.probe(to + 1), false);
+    }
+
+    private static void collect(NavigableSet<Entry> window, int minSeats, List<Flight> result) {
+        for (Entry entry : window) {
+            if (entry.flight.getAvailableSeats() >= minSeats) {
+                result.add(entry.flight);
+            }
+        }
+    }
+
+    private void insert(Flight flight) {
+        Entry entry = new Entry(routeKey(flight.getDepartureCity(), flight.getArrivalCity()),
+                                FlightTimes.toMinutes(flight.getDepartureTime()), flight.getFlightNumber(), flight);
+        entries.put(flight.getFlightNumber(), entry);
+        routes.computeIfAbsent(entry.route, key -> new TreeSet<>(BY_DEPARTURE)).add(entry);
+    }
+
+    private void delete(String flightNumber) {
+        Entry entry = entries.remove(flightNumber);
+        if (entry == null) {
+            return;
+        }
+        TreeSet<Entry> route = routes.get(entry.route);
+        route.remove(entry);
+        if (route.isEmpty()) {
+            routes.remove(entry.route);
+        }
+    }
+
+    static String routeKey(String fromCity, String toCity) {
+        return fromCity.trim().toLowerCase() + '\u0000' + toCity.trim().toLowerCase();
+    }
+}
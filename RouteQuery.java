@@ -0,0 +1,28 @@
+// Structured flight query: exact city pair, departure window in minutes past
+// midnight (a window with earliest > latest wraps past midnight) and the
+// number of free seats the caller needs
+class RouteQuery {
+    private final String fromCity;
+    private final String toCity;
+    private final int earliestDeparture;
+    private final int latestDeparture;
+    private final int minSeats;
+
+    public RouteQuery(String fromCity, String toCity, int earliestDeparture, int latestDeparture, int minSeats) {
+        this.fromCity = fromCity;
+        this.toCity = toCity;
+        this.earliestDeparture = earliestDeparture;
+        this.latestDeparture = latestDeparture;
+        this.minSeats = minSeats;
+    }
+
+    public RouteQuery(String fromCity, String toCity) {
+        this(fromCity, toCity, 0, FlightTimes.MINUTES_PER_DAY - 1, 1);
+    }
+
+    public String getFromCity() { return fromCity; }
+    public String getToCity() { return toCity; }
+    public int getEarliestDeparture() { return earliestDeparture; }
+    public int getLatestDeparture() { return latestDeparture; }
+    public int getMinSeats() { return minSeats; }
+}
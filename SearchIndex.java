@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trigram inverted index for case-insensitive substring search over the
+// text fields of registry records. Each record's fields are lowercased once
+// when it is indexed; a query intersects the posting lists of its trigrams
+// and only the surviving candidates are checked with indexOf. The index
+// follows its registry through RegistryListener callbacks; it is built on
+// first use, so opening a large data set does not pay for it up front.
+abstract class SearchIndex<T> implements RegistryListener<T> {
+    // Separates fields in the stored text so no trigram spans two fields
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final Registry<T> registry;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final Map<Long, IntSet> postings = new HashMap<>();
+    private int[] freeDocIds = new int[16];
+    private int freeCount;
+    private String[] keys = new String[16];
+    private String[] texts = new String[16];
+    private long[] sequence = new long[16];
+    private int docCount;
+    private long nextSequence;
+    private boolean attached;
+    private final String metricName;
+    private volatile Metrics metrics;
+
+    protected SearchIndex(Registry<T> registry, String metricName) {
+        this.registry = registry;
+        this.metricName = metricName;
+    }
+
+    // Times searches under this index's metric name from now on
+    public void setMetrics(Metrics metrics) { this.metrics = metrics; }
+
+    private void attach() {
+        synchronized (this) {
+            if (!attached) {
+                registry.addListener(this);
+                attached = true;
+            }
+        }
+    }
+
+    // Searchable fields of a record; the first field ranks highest
+    protected abstract String[] fieldsOf(T record);
+
+    @Override
+    public void recordAdded(T record) {
+        lock.writeLock().lock();
+        try {
+            index(registry.keyOf(record), record, nextSequence++);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recordsAdded(List<T> records) {
+        lock.writeLock().lock();
+        try {
+            for (T record : records) {
+                index(registry.keyOf(record), record, nextSequence++);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recordUpdated(T record) {
+        lock.writeLock().lock();
+        try {
+            // Keeps its place in insertion order, as it does in the registry
+            String key = registry.keyOf(record);
+            Integer doc = docIds.get(key);
+            long ordinal = doc != null ? sequence[doc] : nextSequence++;
+            unindex(key);
+            index(key, record, ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recordRemoved(T record) {
+        lock.writeLock().lock();
+        try {
+            unindex(registry.keyOf(record));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        attach();
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Keys of the records containing the query, best matches first: a match
+    // at the start of the first field, then at the start of any field, then
+    // anywhere; ties keep registry insertion order
+    public List<String> search(String query) {
+        Metrics timing = metrics;
+        return timing == null ? searchAll(query) : timing.time(metricName, () -> searchAll(query), found -> true);
+    }
+
+    private List<String> searchAll(String query) {
+        String needle = query.toLowerCase();
+        if (needle.isEmpty()) {
+            return Collections.emptyList();
+        }
+        attach();
+        lock.readLock().lock();
+        try {
+            List<long[]> hits = new ArrayList<>();
+            if (needle.length() < 3) {
+                for (int doc = 0; doc < docCount; doc++) {
+                    collect(doc, needle, hits);
+                }
+            } else {
+                IntSet[] lists = postingsFor(needle);
+                if (lists == null) {
+                    return Collections.emptyList();
+                }
+                IntSet smallest = lists[0];
+                for (int slot = 0; slot < smallest.table.length; slot++) {
+                    int doc = smallest.table[slot];
+                    if (doc != IntSet.EMPTY && containsAll(lists, doc)) {
+                        collect(doc, needle, hits);
+                    }
+                }
+            }
+            return ranked(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Same as search, restricted to the given candidate keys. Used to narrow
+    // an earlier result set when the query is extended.
+    public List<String> searchWithin(String query, Collection<String> candidates) {
+        Metrics timing = metrics;
+        return timing == null ? searchCandidates(query, candidates)
+               : timing.time(metricName, () -> searchCandidates(query, candidates), found -> true);
+    }
+
+    private List<String> searchCandidates(String query, Collection<String> candidates) {
+        String needle = query.toLowerCase();
+        if (needle.isEmpty()) {
+            return Collections.emptyList();
+        }
+        attach();
+        lock.readLock().lock();
+        try {
+            List<long[]> hits = new ArrayList<>();
+            for (String key : candidates) {
+                Integer doc = docIds.get(key);
+                if (doc != null) {
+                    collect(doc, needle, hits);
+                }
+            }
+            return ranked(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<String> ranked(List<long[]> hits) {
+        hits.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        List<String> result = new ArrayList<>(hits.size());
+        for (long[] hit : hits) {
+            result.add(keys[(int) hit[2]]);
+        }
+        return result;
+    }
+
+    private void collect(int doc, String needle, List<long[]> hits) {
+        String text = texts[doc];
+        if (text == null) {
+            return;
+        }
+        int at = text.indexOf(needle);
+        if (at < 0) {
+            return;
+        }
+        int rank;
+        if (at == 0) {
+            rank = 0;
+        } else if (text.charAt(at - 1) == FIELD_SEPARATOR) {
+            rank = 1;
+        } else {
+            rank = 2;
+        }
+        hits.add(new long[] {rank, sequence[doc], doc});
+    }
+
+    // Posting lists for every trigram of the query, smallest first, or null
+    // if some trigram occurs nowhere
+    private IntSet[] postingsFor(String needle) {
+        IntSet[] lists = new IntSet[needle.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            IntSet list = postings.get(trigram(needle, i));
+            if (list == null || list.size() == 0) {
+                return null;
+            }
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+        return lists;
+    }
+
+    private static boolean containsAll(IntSet[] lists, int doc) {
+        for (int i = 1; i < lists.length; i++) {
+            if (!lists[i].contains(doc)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(String key, T record, long ordinal) {
+        StringBuilder text = new StringBuilder();
+        for (String field : fieldsOf(record)) {
+            if (text.length() > 0) {
+                text.append(FIELD_SEPARATOR);
+            }
+            text.append(field.toLowerCase());
+        }
+        int doc = allocateDoc();
+        keys[doc] = key;
+        texts[doc] = text.toString();
+        sequence[doc] = ordinal;
+        docIds.put(key, doc);
+        forEachTrigram(texts[doc], trigram -> {
+            IntSet list = postings.get(trigram);
+            if (list == null) {
+                list = new IntSet();
+                postings.put(trigram, list);
+            }
+            list.add(doc);
+        });
+    }
+
+    private void unindex(String key) {
+        Integer doc = docIds.remove(key);
+        if (doc == null) {
+            return;
+        }
+        forEachTrigram(texts[doc], trigram -> {
+            IntSet list = postings.get(trigram);
+            if (list != null) {
+                list.remove(doc);
+                if (list.size() == 0) {
+                    postings.remove(trigram);
+                }
+            }
+        });
+        keys[doc] = null;
+        texts[doc] = null;
+        if (freeCount == freeDocIds.length) {
+            freeDocIds = Arrays.copyOf(freeDocIds, freeCount * 2);
+        }
+        freeDocIds[freeCount++] = doc;
+    }
+
+    private int allocateDoc() {
+        if (freeCount > 0) {
+            return freeDocIds[--freeCount];
+        }
+        if (docCount == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+            sequence = Arrays.copyOf(sequence, capacity);
+        }
+        return docCount++;
+    }
+
+    private interface TrigramConsumer {
+        void accept(long trigram);
+    }
+
+    private static void forEachTrigram(String text, TrigramConsumer consumer) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            if (text.charAt(i) == FIELD_SEPARATOR || text.charAt(i + 1) == FIELD_SEPARATOR
+                    || text.charAt(i + 2) == FIELD_SEPARATOR) {
+                continue;
+            }
+            consumer.accept(trigram(text, i));
+        }
+    }
+
+    private static long trigram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    // Open-addressing set of non-negative ints used for posting lists
+    static final class IntSet {
+        static final int EMPTY = -1;
+
+        int[] table = newTable(8);
+        private int size;
+
+        int size() { return size; }
+
+        boolean contains(int value) {
+            int mask = table.length - 1;
+            for (int slot = mix(value) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (table[slot] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(int value) {
+            if ((size + 1) * 4 > table.length * 3) {
+                resize(table.length * 2);
+            }
+            int mask = table.length - 1;
+            int slot = mix(value) & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == value) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            size++;
+        }
+
+        void remove(int value) {
+            int mask = table.length - 1;
+            int slot = mix(value) & mask;
+            while (table[slot] != value) {
+                if (table[slot] == EMPTY) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Backward-shift deletion keeps probe chains intact without tombstones
+            int gap = slot;
+            for (int next = (gap + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+                int home = mix(table[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    table[gap] = table[next];
+                    gap = next;
+                }
+            }
+            table[gap] = EMPTY;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            int[] old = table;
+            table = newTable(capacity);
+            size = 0;
+            for (int value : old) {
+                if (value != EMPTY) {
+                    add(value);
+                }
+            }
+        }
+
+        private static int[] newTable(int capacity) {
+            int[] table = new int[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        private static int mix(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import javax.swing.SwingWorker;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+// Runs a search in the background and streams the matching keys into a list
+// model.
+// The first chunk replaces the model's contents and later chunks are
+// appended, one list event per chunk. Cancelling a worker (e.g. when a newer
+// search starts) stops publishing and drops chunks not yet shown.
+abstract class SearchWorker<T> extends SwingWorker<Integer, String> {
+    private final RegistryListModel<T> target;
+    private boolean replaced;
+
+    protected SearchWorker(RegistryListModel<T> target) {
+        this.target = target;
+    }
+
+    protected abstract List<String> search();
+
+    // Called on the EDT once a search that was not cancelled completes
+    protected abstract void finished(int found);
+
+    protected abstract void failed(Throwable cause);
+
+    @Override
+    protected Integer doInBackground() {
+        int found = 0;
+        for (String key : search()) {
+            if (isCancelled()) {
+                break;
+            }
+            publish(key);
+            found++;
+        }
+        return found;
+    }
+
+    @Override
+    protected void process(List<String> chunk) {
+        if (isCancelled()) {
+            return;
+        }
+        if (replaced) {
+            target.addAll(chunk);
+        } else {
+            target.replaceAll(chunk);
+            replaced = true;
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            int found = get();
+            if (found == 0) {
+                target.replaceAll(Collections.<String>emptyList());
+            }
+            finished(found);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            failed(e.getCause());
+        }
+    }
+}
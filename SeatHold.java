@@ -0,0 +1,26 @@
+// A seat set aside for a passenger on a flight until it is booked, released
+// or expires. The seat itself is only assigned when the hold is confirmed.
+class SeatHold {
+    // Hold lengths offered to the UI and the HTTP API
+    static final int DEFAULT_HOLD_SECONDS = 600;
+    static final int MAX_HOLD_SECONDS = 3600;
+
+    private final String passengerId;
+    private final Flight flight;
+    private final long expiresAt;
+    // Set once scheduled; cancelled when the hold ends early
+    TimingWheel.Timer expiry;
+
+    public SeatHold(String passengerId, Flight flight, long expiresAt) {
+        this.passengerId = passengerId;
+        this.flight = flight;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getPassengerId() { return passengerId; }
+    public String getFlightNumber() { return flight.getFlightNumber(); }
+    // Milliseconds since the epoch
+    public long getExpiresAt() { return expiresAt; }
+
+    Flight getFlight() { return flight; }
+}
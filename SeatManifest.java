@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Seat map for a single flight. Each booked passenger ID is mapped to a
+// seat slot and occupied slots are tracked in a bitset, so booking,
+// cancelling and membership checks do not depend on how full the flight is.
+class SeatManifest {
+    private final Map<String, Integer> slotsByPassenger = new HashMap<>();
+    private final BitSet occupied = new BitSet();
+    private String[] holders;
+
+    public SeatManifest(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative");
+        }
+        this.holders = new String[capacity];
+    }
+
+    public int getCapacity() { return holders.length; }
+    public int getBookedCount() { return slotsByPassenger.size(); }
+    public int getAvailableSeats() { return holders.length - slotsByPassenger.size(); }
+
+    public boolean contains(String passengerId) {
+        return slotsByPassenger.containsKey(passengerId);
+    }
+
+    // Seat numbers are 1-based; returns -1 if the passenger has no seat
+    public int getSeatNumber(String passengerId) {
+        Integer slot = slotsByPassenger.get(passengerId);
+        return slot == null ? -1 : slot + 1;
+    }
+
+    public String getPassengerAt(int seatNumber) {
+        if (seatNumber < 1 || seatNumber > holders.length) {
+            return null;
+        }
+        return holders[seatNumber - 1];
+    }
+
+    // Assigns the lowest free seat and returns its number, or -1 if the
+    // flight is full or the passenger already holds a seat
+    public int assign(String passengerId) {
+        if (slotsByPassenger.containsKey(passengerId)) {
+            return -1;
+        }
+        int slot = occupied.nextClearBit(0);
+        if (slot >= holders.length) {
+            return -1;
+        }
+        occupy(passengerId, slot);
+        return slot + 1;
+    }
+
+    public boolean assign(String passengerId, int seatNumber) {
+        int slot = seatNumber - 1;
+        if (slot < 0 || slot >= holders.length || occupied.get(slot)
+                || slotsByPassenger.containsKey(passengerId)) {
+            return false;
+        }
+        occupy(passengerId, slot);
+        return true;
+    }
+
+    public boolean release(String passengerId) {
+        Integer slot = slotsByPassenger.remove(passengerId);
+        if (slot == null) {
+            return false;
+        }
+        occupied.clear(slot);
+        holders[slot] = null;
+        return true;
+    }
+
+    // Resizes the cabin. Passengers seated beyond the new capacity are moved
+    // to the lowest free seats below it.
+    public void setCapacity(int capacity) {
+        if (capacity < slotsByPassenger.size()) {
+            throw new IllegalArgumentException("Capacity is below the number of booked passengers");
+        }
+        for (int slot = occupied.nextSetBit(capacity); slot >= 0; slot = occupied.nextSetBit(slot + 1)) {
+            String passengerId = holders[slot];
+            occupied.clear(slot);
+            holders[slot] = null;
+            occupy(passengerId, occupied.nextClearBit(0));
+        }
+        holders = Arrays.copyOf(holders, capacity);
+    }
+
+    // Copy of the holder of each seat, null where the seat is free
+    public String[] copySeats() {
+        return holders.clone();
+    }
+
+    // Booked passenger IDs in seat order
+    public List<String> getPassengers() {
+        List<String> passengers = new ArrayList<>(slotsByPassenger.size());
+        for (int slot = occupied.nextSetBit(0); slot >= 0; slot = occupied.nextSetBit(slot + 1)) {
+            passengers.add(holders[slot]);
+        }
+        return passengers;
+    }
+
+    // Rough heap footprint of the manifest itself (IDs are shared with the
+    // passenger records and not counted)
+    public long getMemoryBytes() {
+        long bytes = 16 + 16 + 4L * holders.length;                 // manifest and holders array
+        bytes += 48L * slotsByPassenger.size();                    // map entries and boxed slots
+        bytes += 16 + 4L * Integer.highestOneBit(Math.max(16, slotsByPassenger.size() * 2)); // map table
+        bytes += 24 + 16 + occupied.size() / 8;                    // bitset and its words
+        return bytes;
+    }
+
+    private void occupy(String passengerId, int slot) {
+        occupied.set(slot);
+        holders[slot] = passengerId;
+        slotsByPassenger.put(passengerId, slot);
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary snapshot of passengers, flights and seat assignments.
+//
+// Layout (big-endian):
+//   header        magic, format, generation, string/passenger/flight counts,
+//                 string data length
+//   string table  int offsets[strings + 1], then UTF-8 bytes; every distinct
+//                 string (IDs, names, cities, times) is stored once
+//   passengers    4 ints each: id, name, email, phone (string refs)
+//   flights       8 ints each: number, from, to, departure, arrival (string
+//                 refs), capacity, booked count, offset of its seat data
+//   seat data     per flight: occupied-seat bitset (capacity bits, in longs)
+//                 followed by the passenger ref of each occupied seat in order
+//
+// The file is read through a memory mapping; records are decoded one at a
+// time, which lets a registry build them lazily on first access.
+class SnapshotFile {
+    private static final int MAGIC = 0x41525331; // "ARS1"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int PASSENGER_BYTES = 16;
+    private static final int FLIGHT_BYTES = 32;
+
+    // A flight's stored fields, copied so it can be written out while the
+    // flight itself goes on changing
+    static final class FlightImage {
+        final String flightNumber;
+        final String departureCity;
+        final String arrivalCity;
+        final String departureTime;
+        final String arrivalTime;
+        // Holder of each seat, null where the seat is free
+        final String[] seats;
+
+        FlightImage(Flight flight) {
+            this.flightNumber = flight.getFlightNumber();
+            this.departureCity = flight.getDepartureCity();
+            this.arrivalCity = flight.getArrivalCity();
+            this.departureTime = flight.getDepartureTime();
+            this.arrivalTime = flight.getArrivalTime();
+            this.seats = flight.copySeats();
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final long generation;
+    private final int passengerCount;
+    private final int flightCount;
+    private final int offsetsStart;
+    private final int stringsStart;
+    private final int passengersStart;
+    private final int flightsStart;
+    private final int seatsStart;
+    private final String[] strings;
+
+    private SnapshotFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IOException("Not a reservation snapshot");
+        }
+        this.generation = buffer.getLong(8);
+        int stringCount = buffer.getInt(16);
+        this.passengerCount = buffer.getInt(20);
+        this.flightCount = buffer.getInt(24);
+        int stringBytes = buffer.getInt(28);
+        this.offsetsStart = HEADER_BYTES;
+        this.stringsStart = offsetsStart + 4 * (stringCount + 1);
+        this.passengersStart = stringsStart + stringBytes;
+        this.flightsStart = passengersStart + PASSENGER_BYTES * passengerCount;
+        this.seatsStart = flightsStart + FLIGHT_BYTES * flightCount;
+        this.strings = new String[stringCount];
+    }
+
+    public static SnapshotFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SnapshotFile(buffer);
+        }
+    }
+
+    public long getGeneration() { return generation; }
+    public int getPassengerCount() { return passengerCount; }
+    public int getFlightCount() { return flightCount; }
+
+    public String passengerId(int index) {
+        return string(buffer.getInt(passengersStart + PASSENGER_BYTES * index));
+    }
+
+    public Passenger passenger(int index) {
+        int at = passengersStart + PASSENGER_BYTES * index;
+        return new Passenger(string(buffer.getInt(at)), string(buffer.getInt(at + 4)),
+                             string(buffer.getInt(at + 8)), string(buffer.getInt(at + 12)));
+    }
+
+    public String flightNumber(int index) {
+        return string(buffer.getInt(flightsStart + FLIGHT_BYTES * index));
+    }
+
+    // Read without decoding the flight's other fields or seats
+    public FlightRegistry.SeatCount seatCount(int index) {
+        int at = flightsStart + FLIGHT_BYTES * index;
+        return new FlightRegistry.SeatCount(flightNumber(index), buffer.getInt(at + 24), buffer.getInt(at + 20));
+    }
+
+    public Flight flight(int index) {
+        int at = flightsStart + FLIGHT_BYTES * index;
+        int capacity = buffer.getInt(at + 20);
+        int booked = buffer.getInt(at + 24);
+        int seats = seatsStart + buffer.getInt(at + 28);
+        Flight flight = new Flight(string(buffer.getInt(at)), string(buffer.getInt(at + 4)),
+                                   string(buffer.getInt(at + 8)), string(buffer.getInt(at + 12)),
+                                   string(buffer.getInt(at + 16)), capacity);
+        int words = (capacity + 63) / 64;
+        int holders = seats + 8 * words;
+        int seen = 0;
+        for (int word = 0; word < words && seen < booked; word++) {
+            long bits = buffer.getLong(seats + 8 * word);
+            while (bits != 0) {
+                int seat = word * 64 + Long.numberOfTrailingZeros(bits) + 1;
+                flight.bookPassenger(string(buffer.getInt(holders + 4 * seen++)), seat);
+                bits &= bits - 1;
+            }
+        }
+        return flight;
+    }
+
+    // Decoded strings are cached; a racing decode just produces an equal copy
+    private String string(int ref) {
+        String value = strings[ref];
+        if (value == null) {
+            int start = stringsStart + buffer.getInt(offsetsStart + 4 * ref);
+            int length = stringsStart + buffer.getInt(offsetsStart + 4 * (ref + 1)) - start;
+            // IDs, times and most names are ASCII and can skip the UTF-8 decoder
+            char[] chars = new char[length];
+            int i = 0;
+            for (byte b; i < length && (b = buffer.get(start + i)) >= 0; i++) {
+                chars[i] = (char) b;
+            }
+            if (i == length) {
+                value = new String(chars);
+            } else {
+                byte[] bytes = new byte[length];
+                ByteBuffer view = buffer.duplicate();
+                view.position(start);
+                view.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            strings[ref] = value;
+        }
+        return value;
+    }
+
+    // Each flight is read from the list once
+    public static void write(Path file, long generation, List<Passenger> passengers, List<FlightImage> flights)
+            throws IOException {
+        Map<String, Integer> refs = new HashMap<>();
+        List<byte[]> encoded = new ArrayList<>();
+        int[] passengerRefs = new int[4 * passengers.size()];
+        for (int i = 0; i < passengers.size(); i++) {
+            Passenger passenger = passengers.get(i);
+            passengerRefs[4 * i] = ref(passenger.getPassengerId(), refs, encoded);
+            passengerRefs[4 * i + 1] = ref(passenger.getName(), refs, encoded);
+            passengerRefs[4 * i + 2] = ref(passenger.getEmail(), refs, encoded);
+            passengerRefs[4 * i + 3] = ref(passenger.getPhone(), refs, encoded);
+        }
+        int[] flightRefs = new int[8 * flights.size()];
+        List<String[]> seatMaps = new ArrayList<>(flights.size());
+        int seatOffset = 0;
+        for (int i = 0; i < flights.size(); i++) {
+            FlightImage flight = flights.get(i);
+            seatMaps.add(flight.seats);
+            int booked = 0;
+            for (String passengerId : flight.seats) {
+                if (passengerId != null) {
+                    ref(passengerId, refs, encoded);
+                    booked++;
+                }
+            }
+            flightRefs[8 * i] = ref(flight.flightNumber, refs, encoded);
+            flightRefs[8 * i + 1] = ref(flight.departureCity, refs, encoded);
+            flightRefs[8 * i + 2] = ref(flight.arrivalCity, refs, encoded);
+            flightRefs[8 * i + 3] = ref(flight.departureTime, refs, encoded);
+            flightRefs[8 * i + 4] = ref(flight.arrivalTime, refs, encoded);
+            flightRefs[8 * i + 5] = flight.seats.length;
+            flightRefs[8 * i + 6] = booked;
+            flightRefs[8 * i + 7] = seatOffset;
+            seatOffset += 8 * ((flight.seats.length + 63) / 64) + 4 * booked;
+        }
+        int stringBytes = 0;
+        for (byte[] bytes : encoded) {
+            stringBytes += bytes.length;
+        }
+
+        try (FileOutputStream stream = new FileOutputStream(file.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(generation);
+            out.writeInt(encoded.size());
+            out.writeInt(passengers.size());
+            out.writeInt(flights.size());
+            out.writeInt(stringBytes);
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+            for (int ref : passengerRefs) {
+                out.writeInt(ref);
+            }
+            for (int ref : flightRefs) {
+                out.writeInt(ref);
+            }
+            for (String[] seats : seatMaps) {
+                long[] words = new long[(seats.length + 63) / 64];
+                for (int slot = 0; slot < seats.length; slot++) {
+                    if (seats[slot] != null) {
+                        words[slot / 64] |= 1L << (slot % 64);
+                    }
+                }
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+                for (String passengerId : seats) {
+                    if (passengerId != null) {
+                        out.writeInt(refs.get(passengerId));
+                    }
+                }
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+    }
+
+    private static int ref(String value, Map<String, Integer> refs, List<byte[]> encoded) {
+        Integer ref = refs.get(value);
+        if (ref == null) {
+            ref = encoded.size();
+            refs.put(value, ref);
+            encoded.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return ref;
+    }
+}
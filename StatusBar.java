@@ -0,0 +1,157 @@
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.UIManager;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+
+// Non-modal notifications along the bottom of the window. Messages queue up
+// and are shown in turn: each stays at least a short dwell while others are
+// waiting, or longer once the queue is empty, then the bar goes back to
+// idle. A message equal to the one showing or one already queued is counted
+// ("Booking successful! (x4)") rather than queued again, and when the queue
+// is full the oldest waiting message is dropped. The tooltip lists the most
+// recent messages.
+class StatusBar extends JPanel implements Notifier {
+    private static final String IDLE_TEXT = "Ready";
+    private static final int INFO_MILLIS = 4000;
+    private static final int ERROR_MILLIS = 8000;
+    private static final int INFO_DWELL_MILLIS = 600;
+    private static final int ERROR_DWELL_MILLIS = 1500;
+    private static final int MAX_PENDING = 20;
+    private static final int RECENT = 15;
+    private static final Color ERROR_COLOR = new Color(176, 0, 32);
+
+    private final JLabel messageLabel = new JLabel(IDLE_TEXT);
+    private final JLabel pendingLabel = new JLabel();
+    private final Timer timer = new Timer(0, e -> showNext());
+    private final Deque<Notice> pending = new ArrayDeque<>();
+    private final Deque<String> recent = new ArrayDeque<>();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+    private Notice current;
+    private long shownAt;
+
+    public StatusBar() {
+        super(new BorderLayout());
+        setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(1, 0, 0, 0, UIManager.getColor("Separator.foreground")),
+                BorderFactory.createEmptyBorder(3, 6, 3, 6)));
+        pendingLabel.setForeground(Color.GRAY);
+        add(messageLabel, BorderLayout.CENTER);
+        add(pendingLabel, BorderLayout.EAST);
+        timer.setRepeats(false);
+    }
+
+    @Override
+    public void info(String message) {
+        post(new Notice(message, false));
+    }
+
+    @Override
+    public void error(String message) {
+        post(new Notice(message, true));
+    }
+
+    private void post(Notice notice) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> post(notice));
+            return;
+        }
+        remember(notice);
+        if (current != null && current.sameAs(notice)) {
+            current.count++;
+            display();
+            // A repeat keeps the message up as long as a new one would stay
+            if (pending.isEmpty()) {
+                schedule(current.error ? ERROR_MILLIS : INFO_MILLIS);
+            }
+            return;
+        }
+        for (Notice waiting : pending) {
+            if (waiting.sameAs(notice)) {
+                waiting.count++;
+                display();
+                return;
+            }
+        }
+        if (pending.size() == MAX_PENDING) {
+            pending.removeFirst();
+        }
+        pending.addLast(notice);
+        if (current == null) {
+            showNext();
+        } else {
+            // Let the current message finish its dwell, then move on
+            long shown = System.currentTimeMillis() - shownAt;
+            schedule((int) Math.max(0, dwell(current) - shown));
+            display();
+        }
+    }
+
+    private void showNext() {
+        current = pending.pollFirst();
+        shownAt = System.currentTimeMillis();
+        display();
+        if (current != null) {
+            schedule(!pending.isEmpty() ? dwell(current) : current.error ? ERROR_MILLIS : INFO_MILLIS);
+        }
+    }
+
+    private void schedule(int millis) {
+        timer.setInitialDelay(millis);
+        timer.restart();
+    }
+
+    private void display() {
+        if (current == null) {
+            messageLabel.setText(IDLE_TEXT);
+            messageLabel.setForeground(UIManager.getColor("Label.foreground"));
+        } else {
+            messageLabel.setText(current.count > 1 ? current.text + " (x" + current.count + ")" : current.text);
+            messageLabel.setForeground(current.error ? ERROR_COLOR : UIManager.getColor("Label.foreground"));
+        }
+        pendingLabel.setText(pending.isEmpty() ? "" : pending.size() + " more");
+    }
+
+    private void remember(Notice notice) {
+        recent.addFirst(timeFormat.format(new Date()) + (notice.error ? "  Error: " : "  ") + notice.text);
+        if (recent.size() > RECENT) {
+            recent.removeLast();
+        }
+        StringBuilder tip = new StringBuilder("<html>");
+        for (Iterator<String> it = recent.iterator(); it.hasNext(); ) {
+            tip.append(escape(it.next())).append(it.hasNext() ? "<br>" : "");
+        }
+        setToolTipText(tip.append("</html>").toString());
+    }
+
+    private static int dwell(Notice notice) {
+        return notice.error ? ERROR_DWELL_MILLIS : INFO_DWELL_MILLIS;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static class Notice {
+        final String text;
+        final boolean error;
+        int count = 1;
+
+        Notice(String text, boolean error) {
+            this.text = text;
+            this.error = error;
+        }
+
+        boolean sameAs(Notice other) {
+            return error == other.error && text.equals(other.text);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel (Varghese and Lauck) for very many timeouts.
+// Time advances in ticks of tickMillis. Level 0 has one slot per tick for
+// the next SLOTS ticks, each higher level has slots SLOTS times as wide, and
+// when the wheel turns past a boundary the matching higher slot is emptied
+// into the levels below. Scheduling and cancelling are O(1) whatever the
+// number pending, and a timeout fires within one tick of its deadline. A
+// single daemon thread, started on first use, turns the wheel and runs
+// onExpiry for each timeout that fires, outside the wheel's lock.
+class TimingWheel<T> implements AutoCloseable {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    // Furthest deadline, in ticks, that has a slot; later ones are parked at
+    // the top level and placed again as the wheel turns
+    private static final long HORIZON = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    // A scheduled timeout; also a node in its slot's circular list
+    static final class Timer {
+        private final TimingWheel<?> wheel;
+        private final Object value;
+        private long deadline;
+        private Timer previous;
+        private Timer next;
+
+        private Timer(TimingWheel<?> wheel, Object value) {
+            this.wheel = wheel;
+            this.value = value;
+        }
+
+        // False if it has already fired or been cancelled
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+
+    private final long tickMillis;
+    private final String threadName;
+    private final Consumer<T> onExpiry;
+    private final long origin = System.nanoTime();
+    // The head of each slot's list, never itself scheduled
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    // The last tick processed
+    private long currentTick;
+    private int size;
+    private ScheduledExecutorService ticker;
+
+    TimingWheel(long tickMillis, String threadName, Consumer<T> onExpiry) {
+        this.tickMillis = tickMillis;
+        this.threadName = threadName;
+        this.onExpiry = onExpiry;
+        for (Timer[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                Timer head = new Timer(this, null);
+                head.previous = head;
+                head.next = head;
+                level[i] = head;
+            }
+        }
+    }
+
+    public Timer schedule(T value, long delayMillis) {
+        Timer timer = new Timer(this, value);
+        long elapsed = elapsedMillis();
+        synchronized (this) {
+            if (ticker == null) {
+                start();
+            }
+            // Rounded up, so a timeout never fires early
+            timer.deadline = Math.max(currentTick + 1, (elapsed + Math.max(delayMillis, 0) + tickMillis - 1) / tickMillis);
+            place(timer);
+            size++;
+        }
+        return timer;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private synchronized boolean cancel(Timer timer) {
+        if (timer.previous == null) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    private void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> advance(elapsedMillis() / tickMillis),
+                                   tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Processes every tick up to now, catching up after a stall
+    private void advance(long now) {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            while (currentTick < now && size > 0) {
+                long tick = ++currentTick;
+                // Higher levels first, so their timers can land in this tick's slot
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                        cascade(slots[level][slotIndex(tick, level)]);
+                    }
+                }
+                collect(slots[0][slotIndex(tick, 0)], tick, expired);
+            }
+            // Nothing pending: skip the empty ticks
+            currentTick = Math.max(currentTick, now);
+        }
+        for (T value : expired) {
+            try {
+                onExpiry.accept(value);
+            } catch (RuntimeException e) {
+                // One failing callback must not stop the rest, or the ticker
+            }
+        }
+    }
+
+    private void cascade(Timer head) {
+        Timer timer = detachAll(head);
+        while (timer != head) {
+            Timer next = timer.next;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(Timer head, long tick, List<T> expired) {
+        Timer timer = detachAll(head);
+        while (timer != head) {
+            Timer next = timer.next;
+            if (timer.deadline <= tick) {
+                timer.previous = null;
+                timer.next = null;
+                size--;
+                expired.add((T) timer.value);
+            } else {
+                // Parked beyond the horizon
+                place(timer);
+            }
+            timer = next;
+        }
+    }
+
+    // Empties the slot, returning its first timer; the detached timers still
+    // link forward to the head, which marks the end
+    private static Timer detachAll(Timer head) {
+        Timer first = head.next;
+        head.previous.next = head;
+        head.next = head;
+        head.previous = head;
+        return first;
+    }
+
+    // The lowest level whose span covers the time left picks the slot, so a
+    // timer is cascaded at most once per level
+    private void place(Timer timer) {
+        long delta = Math.min(timer.deadline - currentTick, HORIZON);
+        int level = 0;
+        long target = currentTick;
+        if (delta > 0) {
+            level = (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+            target += delta;
+        }
+        Timer head = slots[level][slotIndex(target, level)];
+        timer.previous = head.previous;
+        timer.next = head;
+        head.previous.next = timer;
+        head.previous = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        timer.previous.next = timer.next;
+        timer.next.previous = timer.previous;
+        timer.previous = null;
+        timer.next = null;
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - origin) / 1_000_000;
+    }
+}
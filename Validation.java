@@ -0,0 +1,234 @@
+// Field rules shared by the forms, the batch importer and the HTTP API.
+// The check methods return the problem with a record's fields, or null if
+// they are valid. The format checks are hand-written scanners that accept
+// exactly what the original regular expressions (quoted above each one)
+// accepted with Matcher.matches(), without allocating or backtracking.
+final class Validation {
+    private Validation() {
+    }
+
+    static String checkPassenger(String id, String name, String email, String phone) {
+        if (id.isEmpty() || name.isEmpty() || email.isEmpty() || phone.isEmpty()) {
+            return "Please fill all fields";
+        }
+        if (!isEmail(email)) {
+            return "Invalid email format";
+        }
+        if (!isPhone(phone)) {
+            return "Invalid phone number format";
+        }
+        return null;
+    }
+
+    static String checkFlight(String number, String departure, String arrival,
+                              String departureTime, String arrivalTime, String seats) {
+        if (number.isEmpty() || departure.isEmpty() || arrival.isEmpty() ||
+            departureTime.isEmpty() || arrivalTime.isEmpty() || seats.isEmpty()) {
+            return "Please fill all fields";
+        }
+        if (!isTime(departureTime) || !isTime(arrivalTime)) {
+            return "Invalid time format (use HH:MM)";
+        }
+        try {
+            if (Integer.parseInt(seats) <= 0) {
+                return "Seats must be positive";
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid number for seats";
+        }
+        return null;
+    }
+
+    // For edits, where a blank field keeps its current value
+    static String checkPassengerChanges(String name, String email, String phone) {
+        if (!name.isEmpty() && name.length() < 2) {
+            return "Name must be at least 2 characters";
+        }
+        if (!email.isEmpty() && !isEmail(email)) {
+            return "Invalid email format";
+        }
+        if (!phone.isEmpty() && !isPhone(phone)) {
+            return "Invalid phone number format";
+        }
+        return null;
+    }
+
+    static String checkFlightChanges(String departureTime, String arrivalTime, String seats) {
+        if (!departureTime.isEmpty() && !isTime(departureTime)) {
+            return "Invalid departure time format (use HH:MM)";
+        }
+        if (!arrivalTime.isEmpty() && !isTime(arrivalTime)) {
+            return "Invalid arrival time format (use HH:MM)";
+        }
+        if (!seats.isEmpty()) {
+            try {
+                if (Integer.parseInt(seats) < 0) {
+                    return "Seats must be non-negative";
+                }
+            } catch (NumberFormatException e) {
+                return "Invalid number for seats";
+            }
+        }
+        return null;
+    }
+
+    // Route searches; a blank seat count means one seat
+    static String checkRouteQuery(String from, String to, String after, String before, String seats) {
+        if (from.isEmpty() || to.isEmpty()) {
+            return "Please enter both cities";
+        }
+        if (!isTime(after) || !isTime(before)) {
+            return "Invalid time format (use HH:MM)";
+        }
+        try {
+            if (!seats.isEmpty() && Integer.parseInt(seats) <= 0) {
+                return "Seats must be positive";
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid number for seats";
+        }
+        return null;
+    }
+
+    // Seat holds; blank means SeatHold.DEFAULT_HOLD_SECONDS
+    static String checkHoldSeconds(String seconds) {
+        try {
+            if (!seconds.isEmpty()) {
+                int value = Integer.parseInt(seconds);
+                if (value <= 0 || value > SeatHold.MAX_HOLD_SECONDS) {
+                    return "Hold time must be between 1 and " + SeatHold.MAX_HOLD_SECONDS + " seconds";
+                }
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid number for hold time";
+        }
+        return null;
+    }
+
+    // ^[\w-.]+@([\w-]+\.)+[\w-]{2,4}$
+    // A local part of word characters, '-' and '.', then a domain of at
+    // least two dot-separated labels of word characters and '-', the last
+    // one 2 to 4 characters long.
+    static boolean isEmail(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && (isWordOrDash(text.charAt(i)) || text.charAt(i) == '.')) {
+            i++;
+        }
+        if (i == 0 || i == length || text.charAt(i) != '@') {
+            return false;
+        }
+        int dots = 0;
+        int label = 0;
+        for (i++; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (label == 0) {
+                    return false;
+                }
+                dots++;
+                label = 0;
+            } else if (isWordOrDash(c)) {
+                label++;
+            } else {
+                return false;
+            }
+        }
+        return dots > 0 && label >= 2 && label <= 4;
+    }
+
+    // ^[+]?[(]?[0-9]{1,4}[)]?[-\s.]?[0-9]{1,4}[-\s.]?[0-9]{1,6}$
+    // Three digit groups (1-4, 1-4 and 1-6 digits) that may run together.
+    // After the optional prefix the text is one to three digit runs; what
+    // separates them decides which groups each run can hold.
+    static boolean isPhone(String text) {
+        int length = text.length();
+        int i = 0;
+        if (i < length && text.charAt(i) == '+') {
+            i++;
+        }
+        if (i < length && text.charAt(i) == '(') {
+            i++;
+        }
+        int start = i;
+        while (i < length && isDigit(text.charAt(i))) {
+            i++;
+        }
+        int first = i - start;
+        if (first == 0) {
+            return false;
+        }
+        if (i == length) {
+            return first >= 3 && first <= 14;          // all three groups run together
+        }
+        // First gap: ")", ")" + separator, or a separator
+        boolean paren = text.charAt(i) == ')';
+        if (paren) {
+            i++;
+        }
+        boolean separated = i < length && isSeparator(text.charAt(i));
+        if (separated) {
+            i++;
+        }
+        if (!paren && !separated) {
+            return false;
+        }
+        start = i;
+        while (i < length && isDigit(text.charAt(i))) {
+            i++;
+        }
+        int second = i - start;
+        if (second == 0) {
+            return false;
+        }
+        if (i == length) {
+            // The gap split the first and second groups, or (a bare
+            // separator only) the second and third
+            return first <= 4 && second >= 2 && second <= 10
+                   || !paren && first >= 2 && first <= 8 && second <= 6;
+        }
+        // Second gap: a single separator between the second and third groups
+        if (!isSeparator(text.charAt(i))) {
+            return false;
+        }
+        start = ++i;
+        while (i < length && isDigit(text.charAt(i))) {
+            i++;
+        }
+        int third = i - start;
+        return i == length && third >= 1 && third <= 6 && first <= 4 && second <= 4;
+    }
+
+    // ^([01]?[0-9]|2[0-3]):[0-5][0-9]$
+    static boolean isTime(String text) {
+        int length = text.length();
+        if (length != 4 && length != 5) {
+            return false;
+        }
+        int colon = length - 3;
+        if (text.charAt(colon) != ':' || !isDigit(text.charAt(colon + 2))
+            || text.charAt(colon + 1) < '0' || text.charAt(colon + 1) > '5') {
+            return false;
+        }
+        char tens = text.charAt(0);
+        char units = text.charAt(colon - 1);
+        if (!isDigit(units)) {
+            return false;
+        }
+        return colon == 1 || tens == '0' || tens == '1' || tens == '2' && units <= '3';
+    }
+
+    // \w without UNICODE_CHARACTER_CLASS is [a-zA-Z_0-9]
+    private static boolean isWordOrDash(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // [-\s.] where \s is [ \t\n\x0B\f\r]
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == '.' || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Passengers waiting for a seat on one flight, in promotion order: higher
+// fare class first, then earlier request. There are only a few fare classes,
+// so this is a bucketed priority queue, one FIFO list per class, and adding,
+// taking the head and withdrawing are all O(1). A passenger's entry is found
+// through a map in O(1). Their position is the number waiting in the classes
+// ahead plus their rank within their own class, and a Fenwick tree over
+// arrival tickets gives that rank in O(log n) even after people in front of
+// them withdraw. Not thread-safe; the engine guards each flight's waitlist
+// with that flight's lock.
+class Waitlist {
+    static class Entry {
+        private final String passengerId;
+        private final FareClass fareClass;
+        private final long requestedAt;
+        private int ticket;
+        private Entry previous;
+        private Entry next;
+
+        Entry(String passengerId, FareClass fareClass, long requestedAt) {
+            this.passengerId = passengerId;
+            this.fareClass = fareClass;
+            this.requestedAt = requestedAt;
+        }
+
+        public String getPassengerId() { return passengerId; }
+        public FareClass getFareClass() { return fareClass; }
+        // Milliseconds since the epoch
+        public long getRequestedAt() { return requestedAt; }
+    }
+
+    private final ClassQueue[] queues = new ClassQueue[FareClass.values().length];
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    Waitlist() {
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ClassQueue();
+        }
+    }
+
+    // False if the passenger is already waiting
+    public boolean add(String passengerId, FareClass fareClass, long requestedAt) {
+        if (entries.containsKey(passengerId)) {
+            return false;
+        }
+        Entry entry = new Entry(passengerId, fareClass, requestedAt);
+        entries.put(passengerId, entry);
+        queues[fareClass.ordinal()].add(entry);
+        return true;
+    }
+
+    // Takes the next passenger to promote, or null if nobody is waiting
+    public Entry poll() {
+        for (ClassQueue queue : queues) {
+            if (queue.head != null) {
+                Entry entry = queue.head;
+                queue.remove(entry);
+                entries.remove(entry.passengerId);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public Entry remove(String passengerId) {
+        Entry entry = entries.remove(passengerId);
+        if (entry != null) {
+            queues[entry.fareClass.ordinal()].remove(entry);
+        }
+        return entry;
+    }
+
+    public boolean contains(String passengerId) {
+        return entries.containsKey(passengerId);
+    }
+
+    // 1 for the next passenger to be promoted; 0 if not waiting
+    public int position(String passengerId) {
+        Entry entry = entries.get(passengerId);
+        if (entry == null) {
+            return 0;
+        }
+        int ahead = 0;
+        for (int i = 0; i < entry.fareClass.ordinal(); i++) {
+            ahead += queues[i].size;
+        }
+        return ahead + queues[entry.fareClass.ordinal()].rank(entry) + 1;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    // Everyone waiting, in promotion order
+    public List<Entry> entries() {
+        List<Entry> ordered = new ArrayList<>(entries.size());
+        for (ClassQueue queue : queues) {
+            for (Entry entry = queue.head; entry != null; entry = entry.next) {
+                ordered.add(entry);
+            }
+        }
+        return ordered;
+    }
+
+    // One fare class: a doubly linked list in arrival order, and a Fenwick
+    // tree counting the live entries by ticket. Tickets only grow, so when
+    // they reach the end of the tree the live entries are renumbered from 0
+    // into a tree twice their count, which keeps additions amortized O(1).
+    private static final class ClassQueue {
+        private static final int MIN_CAPACITY = 16;
+
+        Entry head;
+        Entry tail;
+        int size;
+        private int[] tree = new int[MIN_CAPACITY + 1];
+        private int nextTicket;
+
+        void add(Entry entry) {
+            if (nextTicket == tree.length - 1) {
+                renumber();
+            }
+            entry.ticket = nextTicket++;
+            adjust(entry.ticket, 1);
+            entry.previous = tail;
+            entry.next = null;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+            size++;
+        }
+
+        void remove(Entry entry) {
+            adjust(entry.ticket, -1);
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.previous = null;
+            entry.next = null;
+            size--;
+        }
+
+        // Live entries with a smaller ticket
+        int rank(Entry entry) {
+            int count = 0;
+            for (int i = entry.ticket; i > 0; i -= i & -i) {
+                count += tree[i];
+            }
+            return count;
+        }
+
+        private void adjust(int ticket, int delta) {
+            for (int i = ticket + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        // Linear-time rebuild: every live entry counts one at its new ticket
+        private void renumber() {
+            tree = new int[Math.max(MIN_CAPACITY, size * 2) + 1];
+            int ticket = 0;
+            for (Entry entry = head; entry != null; entry = entry.next) {
+                entry.ticket = ticket++;
+                tree[ticket] = 1;
+            }
+            for (int i = 1; i < tree.length; i++) {
+                int parent = i + (i & -i);
+                if (parent < tree.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+            nextTicket = ticket;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Micro-benchmarks for the booking, lookup and search hot paths, with no
+// dependencies beyond the JDK. Each benchmark runs timed batches after a
+// warm-up and reports the median rate. As with JMH, every group (the format
+// checks, then each data set size) runs in fresh JVMs, FORKS times, so JIT
+// decisions in one group cannot skew another; the best fork counts.
+// Results are compared with the committed baseline; --check fails the run if
+// anything is more than TOLERANCE slower, and --write-baseline records a new
+// baseline.
+//
+//   javac -d out *.java bench/*.java
+//   java -Xmx4g -cp out Benchmarks [--sizes 1000,100000,1000000] [--check] [--write-baseline]
+class Benchmarks {
+    private static final Path BASELINE = Paths.get("bench", "baseline.txt");
+    private static final double TOLERANCE = 0.30;
+    private static final int FORKS = 2;
+    private static final String RESULT_PREFIX = "result\t";
+    private static final int WARMUP_BATCHES = 5;
+    private static final int MEASURED_BATCHES = 5;
+    private static final long BATCH_NANOS = 500_000_000L;
+    private static final int CITIES = 100;
+    private static final int SEATS_PER_FLIGHT = 200;
+
+    // Keeps results observable so the JIT cannot drop the work
+    static volatile long sink;
+
+    private interface Operation {
+        long run(int i);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 2 && args[0].equals("--group")) {
+            runGroup(args[1]);
+            return;
+        }
+        String sizes = "1000,100000,1000000";
+        boolean check = false;
+        boolean writeBaseline = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": sizes = args[++i]; break;
+                case "--check": check = true; break;
+                case "--write-baseline": writeBaseline = true; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Map<String, Double> results = new LinkedHashMap<>();
+        List<String> groups = new ArrayList<>();
+        groups.add("formats");
+        groups.addAll(Arrays.asList(sizes.split(",")));
+        for (String group : groups) {
+            for (int fork = 1; fork <= FORKS; fork++) {
+                System.out.println("Group " + group + ", fork " + fork + " of " + FORKS);
+                fork(group, results);
+            }
+        }
+
+        Map<String, Double> baseline = Files.exists(BASELINE) ? readBaseline() : new LinkedHashMap<>();
+        int regressions = 0;
+        System.out.printf("%n%-32s %14s %14s %8s%n", "benchmark", "ops/s", "baseline", "ratio");
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            Double expected = baseline.get(result.getKey());
+            String verdict = "";
+            if (expected != null && result.getValue() < expected * (1 - TOLERANCE)) {
+                verdict = "  REGRESSION";
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-32s %14.0f %14s %8s%s%n", result.getKey(), result.getValue(),
+                              expected == null ? "-" : String.format(Locale.ROOT, "%.0f", expected),
+                              expected == null ? "-" : String.format(Locale.ROOT, "%.2f", result.getValue() / expected),
+                              verdict);
+        }
+        if (writeBaseline) {
+            baseline.putAll(results);
+            writeBaseline(baseline);
+            System.out.println("Baseline written to " + BASELINE);
+        }
+        if (check && regressions > 0) {
+            System.err.println(regressions + " benchmark(s) regressed by more than " + (int) (TOLERANCE * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    // Runs one group in a child JVM with the same classpath and heap settings
+    // and keeps the best rate seen for each benchmark
+    private static void fork(String group, Map<String, Double> results) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Benchmarks.class.getName());
+        command.add("--group");
+        command.add(group);
+        Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream(),
+                                                                           StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    String[] fields = line.split("\t");
+                    results.merge(fields[1], Double.parseDouble(fields[2]), Math::max);
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        if (child.waitFor() != 0) {
+            throw new IOException("Benchmark group " + group + " failed");
+        }
+    }
+
+    private static void runGroup(String group) {
+        Map<String, Double> results = new LinkedHashMap<>();
+        if (group.equals("formats")) {
+            runFormatChecks(results);
+        } else {
+            runDataSet(Integer.parseInt(group), results);
+        }
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            System.out.println(RESULT_PREFIX + result.getKey() + "\t" + result.getValue());
+        }
+    }
+
+    private static void runFormatChecks(Map<String, Double> results) {
+        String[] emails = {"user123@example.com", "first.last-name@mail.example.co.uk", "broken@@example.com"};
+        String[] phones = {"+1 (555) 123-4567", "555.123.4567", "+44 20 7946 0958", "12-34"};
+        String[] times = {"09:30", "23:59", "7:05", "24:00"};
+        measure(results, "validate.email", i -> Validation.isEmail(emails[i % emails.length]) ? 1 : 0);
+        measure(results, "validate.phone", i -> Validation.isPhone(phones[i & 3]) ? 1 : 0);
+        measure(results, "validate.time", i -> Validation.isTime(times[i & 3]) ? 1 : 0);
+    }
+
+    // `size` passengers and size / 10 flights between CITIES cities, every
+    // passenger booked on one flight
+    private static void runDataSet(int size, Map<String, Double> results) {
+        System.out.println("Building data set with " + size + " passengers...");
+        PassengerRegistry passengers = new PassengerRegistry();
+        FlightRegistry flights = new FlightRegistry();
+        BookingEngine engine = new BookingEngine(passengers, flights);
+        int flightCount = Math.max(CITIES, size / 10);
+        String[] passengerIds = new String[size];
+        String[] flightNumbers = new String[flightCount];
+
+        List<Passenger> passengerBatch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            passengerIds[i] = "P" + i;
+            passengerBatch.add(new Passenger(passengerIds[i], "Passenger " + i, "user" + i + "@example.com",
+                                             "+1 555 " + (1_000_000 + i)));
+        }
+        engine.addPassengers(passengerBatch);
+        List<Flight> flightBatch = new ArrayList<>(flightCount);
+        for (int i = 0; i < flightCount; i++) {
+            flightNumbers[i] = "FL" + i;
+            String departure = String.format("%02d:%02d", i % 24, (i * 7) % 60);
+            String arrival = String.format("%02d:%02d", (i + 3) % 24, (i * 7) % 60);
+            flightBatch.add(new Flight(flightNumbers[i], city(i), city(i * 7 + 1), departure, arrival, SEATS_PER_FLIGHT));
+        }
+        engine.addFlights(flightBatch);
+        for (int i = 0; i < size; i++) {
+            engine.book(passengerIds[i], flightNumbers[i % flightCount]);
+        }
+        // Passengers with no other bookings, for the book and cancel pair
+        String[] spareIds = new String[1000];
+        List<Passenger> spares = new ArrayList<>();
+        for (int i = 0; i < spareIds.length; i++) {
+            spareIds[i] = "B" + i;
+            spares.add(new Passenger(spareIds[i], "Spare " + i, "spare" + i + "@example.com", "+1 555 0000"));
+        }
+        engine.addPassengers(spares);
+
+        PassengerSearchIndex passengerIndex = new PassengerSearchIndex(passengers);
+        FlightSearchIndex flightIndex = new FlightSearchIndex(flights);
+        RouteIndex routeIndex = new RouteIndex(flights);
+
+        String suffix = "@" + size;
+        measure(results, "registry.passenger.get" + suffix, i -> passengers.get(passengerIds[spread(i, size)]).hashCode());
+        measure(results, "registry.flight.get" + suffix, i -> flights.get(flightNumbers[spread(i, flightCount)]).hashCode());
+        measure(results, "engine.bookAndCancel" + suffix, i -> {
+            String passengerId = spareIds[i % spareIds.length];
+            String flightNumber = flightNumbers[spread(i, flightCount)];
+            return (engine.book(passengerId, flightNumber) > 0 ? 1 : 0) + (engine.cancel(passengerId, flightNumber) ? 2 : 0);
+        });
+        measure(results, "engine.bookedFlights" + suffix, i -> engine.getBookedFlights(passengerIds[spread(i, size)]).size());
+        measure(results, "search.passengers" + suffix,
+                i -> passengerIndex.search("user" + spread(i, size) + "@").size());
+        measure(results, "search.flights" + suffix, i -> flightIndex.search(city(i)).size());
+        measure(results, "route.find" + suffix,
+                i -> routeIndex.find(new RouteQuery(city(i), city(i * 7 + 1), 360, 720, 1)).size());
+    }
+
+    private static String city(int i) {
+        return "City" + Math.floorMod(i, CITIES);
+    }
+
+    // Scatters consecutive operations over the data set
+    private static int spread(int i, int size) {
+        return (int) ((i * 2_654_435_761L & 0xFFFFFFFFL) % size);
+    }
+
+    private static void measure(Map<String, Double> results, String name, Operation operation) {
+        for (int batch = 0; batch < WARMUP_BATCHES; batch++) {
+            runBatch(operation);
+        }
+        double[] rates = new double[MEASURED_BATCHES];
+        for (int batch = 0; batch < MEASURED_BATCHES; batch++) {
+            rates[batch] = runBatch(operation);
+        }
+        Arrays.sort(rates);
+        double median = rates[MEASURED_BATCHES / 2];
+        results.put(name, median);
+        System.out.printf(Locale.ROOT, "  %-32s %14.0f ops/s%n", name, median);
+    }
+
+    // Runs the operation for about BATCH_NANOS and returns operations per second
+    private static double runBatch(Operation operation) {
+        long result = 0;
+        int done = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 256; i++) {
+                result += operation.run(done++);
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < BATCH_NANOS);
+        sink += result;
+        return done * 1e9 / elapsed;
+    }
+
+    private static Map<String, Double> readBaseline() throws IOException {
+        Map<String, Double> baseline = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(BASELINE, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            baseline.put(fields[0], Double.parseDouble(fields[1]));
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Map<String, Double> baseline) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Benchmark baseline in operations per second; regenerate with --write-baseline");
+        lines.add("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ", "
+                  + Runtime.getRuntime().availableProcessors() + " CPU(s)");
+        for (Map.Entry<String, Double> entry : baseline.entrySet()) {
+            lines.add(entry.getKey() + "\t" + String.format(Locale.ROOT, "%.0f", entry.getValue()));
+        }
+        Files.write(BASELINE, lines, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,647 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Load generator and soak test for the booking workflow. It synthesizes a
+// schedule between hub and regional airports and a passenger base, then
+// replays a mixed workload against a LocalReservationService, journal and
+// all, from several threads for a fixed time. Flight popularity is skewed
+// (Zipf), so popular flights sell out and bookings start to be refused as
+// in peak season. Passengers are also removed and replaced, which cancels
+// their bookings concurrently with new ones. Passengers turned away from a
+// full flight may join its waitlist and are promoted as seats free up.
+// Seats are held for a few seconds, and the holds are confirmed, released
+// or left to expire. Groups of passengers book one or two flights at once,
+// all or nothing.
+//
+// With a target rate the load is open-loop: each thread keeps to a fixed
+// schedule and latency counts from when a call was due, so a stall shows up
+// in the percentiles instead of silently lowering the offered load. Without
+// one, threads run flat out. Progress is printed every PROGRESS_SECONDS.
+//
+// At the end it reports throughput and latency percentiles per operation and
+// checks the invariants: no flight holds more passengers than seats, every
+// booked passenger still exists, the passenger-to-flights index agrees with
+// the flights' manifests, and nobody waits for a flight with free seats, one
+// they already hold a seat on, or after being removed. Once the last holds
+// have had time to expire, no flight may still have held seats. The exit status is 1 if any check fails.
+//
+//   javac -d out *.java bench/*.java
+//   java -cp out LoadTest [--passengers 100000] [--flights 2000] [--threads 8] [--rate 0]
+//                         [--seconds 60] [--prefill 0.3] [--seed 1] [--data directory]
+//                         [--mix book=40,cancel=20,search=15,lookup=10,route=5,update=7,churn=3,
+//                                waitlist=5,hold=5,group=3]
+class LoadTest {
+    private static final int PROGRESS_SECONDS = 10;
+    private static final int MAX_HOLD_SECONDS = 4;
+    private static final int HUBS = 8;
+    private static final int CITIES = 60;
+    private static final int[] CAPACITIES = {50, 76, 150, 180, 220, 300};
+    private static final String[] FIRST_NAMES = {"Ana", "Ben", "Chen", "Dara", "Elif", "Femi", "Gita", "Hugo",
+            "Ines", "Jon", "Kai", "Lena", "Mei", "Nils", "Omar", "Priya", "Quinn", "Rosa", "Sam", "Tariq"};
+    private static final String[] LAST_NAMES = {"Abe", "Brown", "Costa", "Diaz", "Evans", "Fischer", "Garcia",
+            "Haddad", "Ito", "Jensen", "Kim", "Lopez", "Martin", "Nowak", "Okafor", "Patel", "Rossi", "Silva",
+            "Tanaka", "Weber"};
+
+    private enum Kind { BOOK, CANCEL, SEARCH, LOOKUP, ROUTE, UPDATE, CHURN, WAITLIST, HOLD, GROUP }
+
+    // Per-operation counts and latencies, shared by all threads
+    private static class Stats {
+        final AtomicLongArray succeeded = new AtomicLongArray(Kind.values().length);
+        final AtomicLongArray rejected = new AtomicLongArray(Kind.values().length);
+        final AtomicLongArray errors = new AtomicLongArray(Kind.values().length);
+        final LatencyHistogram[] latency = new LatencyHistogram[Kind.values().length];
+        final AtomicLong firstError = new AtomicLong();
+        volatile String firstErrorText;
+
+        Stats() {
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = new LatencyHistogram();
+            }
+        }
+
+        long total() {
+            long total = 0;
+            for (int i = 0; i < latency.length; i++) {
+                total += succeeded.get(i) + rejected.get(i) + errors.get(i);
+            }
+            return total;
+        }
+    }
+
+    private static class Options {
+        int passengers = 100_000;
+        int flights = 2_000;
+        int threads = 8;
+        double rate;
+        int seconds = 60;
+        double prefill = 0.3;
+        long seed = 1;
+        Path data;
+        int[] mix = {40, 20, 15, 10, 5, 7, 3, 5, 5, 3};
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = parse(args);
+        boolean temporary = options.data == null;
+        Path data = temporary ? Files.createTempDirectory("loadtest") : options.data;
+        int violations;
+        try (LocalReservationService service = LocalReservationService.open(data)) {
+            // Errors only; waitlist promotions would drown the progress lines
+            LogNotifier log = new LogNotifier(System.err);
+            service.setNotifier(new Notifier() {
+                @Override
+                public void info(String message) { }
+
+                @Override
+                public void error(String message) { log.error(message); }
+            });
+            Schedule schedule = Schedule.create(options);
+            load(service, schedule, options);
+            Stats stats = run(service, schedule, options);
+            report(stats, options);
+            // Let the remaining holds run out before counting held seats
+            Thread.sleep(TimeUnit.SECONDS.toMillis(MAX_HOLD_SECONDS + 1));
+            violations = checkInvariants(service);
+        } finally {
+            if (temporary) {
+                deleteRecursively(data);
+            }
+        }
+        System.exit(violations == 0 ? 0 : 1);
+    }
+
+    // The synthetic world: flights with Zipf popularity, and the city pairs
+    // they serve for route queries
+    private static class Schedule {
+        final List<Flight> flights = new ArrayList<>();
+        final double[] cumulativePopularity;
+        final String[] cities = new String[CITIES];
+
+        private Schedule(int flightCount) {
+            cumulativePopularity = new double[flightCount];
+        }
+
+        static Schedule create(Options options) {
+            Random random = new Random(options.seed);
+            Schedule schedule = new Schedule(options.flights);
+            for (int i = 0; i < CITIES; i++) {
+                schedule.cities[i] = (i < HUBS ? "Hub" : "City") + i;
+            }
+            double total = 0;
+            for (int i = 0; i < options.flights; i++) {
+                // Most routes touch a hub; departures cluster in the morning and evening banks
+                String from = schedule.cities[random.nextInt(4) == 0 ? random.nextInt(CITIES) : random.nextInt(HUBS)];
+                String to;
+                do {
+                    to = schedule.cities[random.nextInt(CITIES)];
+                } while (to.equals(from));
+                int bank = random.nextBoolean() ? 7 * 60 : 17 * 60;
+                int departure = Math.floorMod(bank + (int) (random.nextGaussian() * 120), FlightTimes.MINUTES_PER_DAY);
+                int arrival = (departure + 45 + random.nextInt(600)) % FlightTimes.MINUTES_PER_DAY;
+                schedule.flights.add(new Flight(String.format("LT%05d", i), from, to, FlightTimes.format(departure),
+                                                FlightTimes.format(arrival), CAPACITIES[random.nextInt(CAPACITIES.length)]));
+                total += 1.0 / (i + 1);
+                schedule.cumulativePopularity[i] = total;
+            }
+            for (int i = 0; i < options.flights; i++) {
+                schedule.cumulativePopularity[i] /= total;
+            }
+            return schedule;
+        }
+
+        // Flight index drawn with probability proportional to 1 / rank
+        int popularFlight(Random random) {
+            double target = random.nextDouble();
+            int low = 0;
+            int high = cumulativePopularity.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulativePopularity[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Adds the passengers and flights through the bulk import, then books
+    // the prefill share of all seats on randomly chosen flights
+    private static void load(LocalReservationService service, Schedule schedule, Options options) throws Exception {
+        long start = System.nanoTime();
+        StringBuilder csv = new StringBuilder("id,name,email,phone\n");
+        Random random = new Random(options.seed + 1);
+        for (int i = 0; i < options.passengers; i++) {
+            Passenger passenger = newPassenger(passengerId(i), random);
+            csv.append(passenger.getPassengerId()).append(',').append(passenger.getName()).append(',')
+               .append(passenger.getEmail()).append(',').append(passenger.getPhone()).append('\n');
+        }
+        List<String> errors = new ArrayList<>();
+        service.importPassengers(RecordReader.csv(new StringReader(csv.toString()), BatchTransfer.PASSENGER_COLUMNS),
+                                 errors::add);
+        csv.setLength(0);
+        csv.append("number,from,to,departure,arrival,seats\n");
+        long seats = 0;
+        for (Flight flight : schedule.flights) {
+            csv.append(flight.getFlightNumber()).append(',').append(flight.getDepartureCity()).append(',')
+               .append(flight.getArrivalCity()).append(',').append(flight.getDepartureTime()).append(',')
+               .append(flight.getArrivalTime()).append(',').append(flight.getCapacity()).append('\n');
+            seats += flight.getCapacity();
+        }
+        service.importFlights(RecordReader.csv(new StringReader(csv.toString()), BatchTransfer.FLIGHT_COLUMNS),
+                              errors::add);
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Synthetic data rejected: " + errors.get(0));
+        }
+
+        long bookings = Math.min((long) (seats * options.prefill), options.passengers * 4L);
+        Thread[] threads = new Thread[options.threads];
+        for (int t = 0; t < threads.length; t++) {
+            long share = bookings / threads.length + (t < bookings % threads.length ? 1 : 0);
+            Random threadRandom = new Random(options.seed * 31 + t);
+            threads[t] = new Thread(() -> {
+                for (long i = 0; i < share; i++) {
+                    service.book(passengerId(threadRandom.nextInt(options.passengers)),
+                                 schedule.flights.get(threadRandom.nextInt(schedule.flights.size())).getFlightNumber());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf(Locale.ROOT, "Loaded %d passengers, %d flights (%d seats) and up to %d bookings in %.1f s%n",
+                          options.passengers, schedule.flights.size(), seats, bookings,
+                          (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Stats run(ReservationService service, Schedule schedule, Options options)
+            throws InterruptedException {
+        Stats stats = new Stats();
+        long start = System.nanoTime();
+        long end = start + options.seconds * 1_000_000_000L;
+        // Identifiers for passengers added by churn, unique across threads
+        AtomicLong nextPassenger = new AtomicLong(options.passengers);
+        CountDownLatch done = new CountDownLatch(options.threads);
+        for (int t = 0; t < options.threads; t++) {
+            Worker worker = new Worker(service, schedule, options, stats, nextPassenger,
+                                       new Random(options.seed * 7919 + t), start, end);
+            Thread thread = new Thread(() -> {
+                try {
+                    worker.run();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        System.out.printf(Locale.ROOT, "Running %s for %d s on %d threads%n",
+                          options.rate > 0 ? String.format(Locale.ROOT, "%.0f ops/s", options.rate) : "flat out",
+                          options.seconds, options.threads);
+        long lastTotal = 0;
+        long lastTime = start;
+        while (!done.await(PROGRESS_SECONDS, TimeUnit.SECONDS)) {
+            long now = System.nanoTime();
+            long total = stats.total();
+            long errors = 0;
+            for (int i = 0; i < Kind.values().length; i++) {
+                errors += stats.errors.get(i);
+            }
+            System.out.printf(Locale.ROOT, "  %4.0f s  %9.0f ops/s  %d errors%n", (now - start) / 1e9,
+                              (total - lastTotal) * 1e9 / (now - lastTime), errors);
+            lastTotal = total;
+            lastTime = now;
+        }
+        return stats;
+    }
+
+    private static class Worker {
+        private final ReservationService service;
+        private final Schedule schedule;
+        private final Options options;
+        private final Stats stats;
+        private final AtomicLong nextPassenger;
+        private final Random random;
+        private final long start;
+        private final long end;
+        private final int[] thresholds;
+        // Bookings this thread made and has not cancelled, for realistic cancels
+        private final List<String[]> held = new ArrayList<>();
+        // Seat holds this thread placed; some expire before they come up again
+        private final List<String[]> holds = new ArrayList<>();
+
+        Worker(ReservationService service, Schedule schedule, Options options, Stats stats,
+               AtomicLong nextPassenger, Random random, long start, long end) {
+            this.service = service;
+            this.schedule = schedule;
+            this.options = options;
+            this.stats = stats;
+            this.nextPassenger = nextPassenger;
+            this.random = random;
+            this.start = start;
+            this.end = end;
+            this.thresholds = new int[options.mix.length];
+            int sum = 0;
+            for (int i = 0; i < options.mix.length; i++) {
+                sum += options.mix[i];
+                thresholds[i] = sum;
+            }
+        }
+
+        void run() {
+            double interval = options.rate > 0 ? options.threads * 1e9 / options.rate : 0;
+            long count = 0;
+            while (true) {
+                long due = interval > 0 ? start + (long) (count * interval) : System.nanoTime();
+                if (due >= end) {
+                    return;
+                }
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - now);
+                }
+                if (now >= end) {
+                    return;
+                }
+                Kind kind = pick();
+                boolean succeeded;
+                try {
+                    succeeded = perform(kind);
+                } catch (RuntimeException e) {
+                    stats.errors.incrementAndGet(kind.ordinal());
+                    if (stats.firstError.compareAndSet(0, 1)) {
+                        stats.firstErrorText = kind + ": " + e;
+                    }
+                    succeeded = true;
+                }
+                stats.latency[kind.ordinal()].record(System.nanoTime() - due);
+                if (succeeded) {
+                    stats.succeeded.incrementAndGet(kind.ordinal());
+                } else {
+                    stats.rejected.incrementAndGet(kind.ordinal());
+                }
+                count++;
+            }
+        }
+
+        private Kind pick() {
+            int draw = random.nextInt(thresholds[thresholds.length - 1]);
+            for (int i = 0; i < thresholds.length; i++) {
+                if (draw < thresholds[i]) {
+                    return Kind.values()[i];
+                }
+            }
+            return Kind.BOOK;
+        }
+
+        // Returns false when the service declined (full flight, no such booking)
+        private boolean perform(Kind kind) {
+            switch (kind) {
+                case BOOK: {
+                    String passengerId = randomPassenger();
+                    String flightNumber = schedule.flights.get(schedule.popularFlight(random)).getFlightNumber();
+                    boolean booked = service.book(passengerId, flightNumber) > 0;
+                    if (booked) {
+                        held.add(new String[] {passengerId, flightNumber});
+                    }
+                    return booked;
+                }
+                case CANCEL: {
+                    if (held.isEmpty()) {
+                        return service.cancel(randomPassenger(), randomFlight());
+                    }
+                    String[] booking = held.remove(held.size() - 1 - random.nextInt(Math.min(held.size(), 16)));
+                    return service.cancel(booking[0], booking[1]);
+                }
+                case SEARCH:
+                    return random.nextBoolean()
+                           ? !service.searchPassengers(LAST_NAMES[random.nextInt(LAST_NAMES.length)], 20).isEmpty()
+                           : !service.searchFlights(schedule.cities[random.nextInt(CITIES)], 20).isEmpty();
+                case LOOKUP:
+                    service.getBookedFlights(randomPassenger());
+                    return true;
+                case ROUTE: {
+                    Flight flight = schedule.flights.get(schedule.popularFlight(random));
+                    return !service.findFlights(new RouteQuery(flight.getDepartureCity(), flight.getArrivalCity(),
+                                                               6 * 60, 22 * 60, 1 + random.nextInt(3))).isEmpty();
+                }
+                case UPDATE:
+                    return service.updatePassenger(randomPassenger(), "", "", phoneNumber(random)) != null;
+                case CHURN: {
+                    // A passenger leaves (their bookings are cancelled) and a new one joins
+                    service.removePassenger(randomPassenger());
+                    return service.addPassenger(newPassenger(passengerId(nextPassenger.getAndIncrement()), random));
+                }
+                case WAITLIST: {
+                    String passengerId = randomPassenger();
+                    String flightNumber = schedule.flights.get(schedule.popularFlight(random)).getFlightNumber();
+                    FareClass fareClass = FareClass.values()[random.nextInt(FareClass.values().length)];
+                    int position = service.joinWaitlist(passengerId, flightNumber, fareClass);
+                    if (position == 0) {
+                        held.add(new String[] {passengerId, flightNumber});
+                    } else if (position > 0 && random.nextInt(4) == 0) {
+                        // Some give up and withdraw again
+                        service.leaveWaitlist(passengerId, flightNumber);
+                    }
+                    return position >= 0;
+                }
+                case HOLD: {
+                    if (!holds.isEmpty() && random.nextBoolean()) {
+                        String[] hold = holds.remove(random.nextInt(holds.size()));
+                        if (random.nextBoolean()) {
+                            return service.releaseHold(hold[0], hold[1]);
+                        }
+                        boolean confirmed = service.confirmHold(hold[0], hold[1]);
+                        if (confirmed) {
+                            held.add(hold);
+                        }
+                        return confirmed;
+                    }
+                    String passengerId = randomPassenger();
+                    String flightNumber = schedule.flights.get(schedule.popularFlight(random)).getFlightNumber();
+                    if (service.holdSeat(passengerId, flightNumber, 1 + random.nextInt(MAX_HOLD_SECONDS)) == null) {
+                        return false;
+                    }
+                    holds.add(new String[] {passengerId, flightNumber});
+                    return true;
+                }
+                case GROUP: {
+                    // A family of two to six, one way or two legs
+                    List<String> group = new ArrayList<>();
+                    for (int i = 2 + random.nextInt(5); i > 0; i--) {
+                        group.add(randomPassenger());
+                    }
+                    List<String> legs = new ArrayList<>();
+                    for (int i = 1 + random.nextInt(2); i > 0; i--) {
+                        legs.add(schedule.flights.get(schedule.popularFlight(random)).getFlightNumber());
+                    }
+                    if (!service.bookGroup(group, legs)) {
+                        return false;
+                    }
+                    for (String passengerId : group) {
+                        for (String flightNumber : legs) {
+                            held.add(new String[] {passengerId, flightNumber});
+                        }
+                    }
+                    return true;
+                }
+                default:
+                    throw new IllegalStateException(kind.toString());
+            }
+        }
+
+        // Passengers removed by churn stay in the draw, so some calls are
+        // for passengers who no longer exist, as with stale clients
+        private String randomPassenger() {
+            return passengerId((long) (random.nextDouble() * nextPassenger.get()));
+        }
+
+        private String randomFlight() {
+            return schedule.flights.get(random.nextInt(schedule.flights.size())).getFlightNumber();
+        }
+    }
+
+    private static String passengerId(long index) {
+        return "LP" + index;
+    }
+
+    private static Passenger newPassenger(String id, Random random) {
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        return new Passenger(id, first + " " + last,
+                             first.toLowerCase() + "." + last.toLowerCase() + random.nextInt(1000) + "@example.com",
+                             phoneNumber(random));
+    }
+
+    private static String phoneNumber(Random random) {
+        return String.format("555-%03d-%04d", random.nextInt(1000), random.nextInt(10000));
+    }
+
+    private static void report(Stats stats, Options options) {
+        System.out.printf(Locale.ROOT, "%n%-8s %10s %9s %8s %9s %9s %9s %9s %9s %10s%n", "op", "ok", "refused",
+                          "errors", "per sec", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        long total = 0;
+        for (Kind kind : Kind.values()) {
+            int i = kind.ordinal();
+            long calls = stats.succeeded.get(i) + stats.rejected.get(i) + stats.errors.get(i);
+            if (calls == 0) {
+                continue;
+            }
+            total += calls;
+            LatencyHistogram latency = stats.latency[i];
+            System.out.printf(Locale.ROOT, "%-8s %10d %9d %8d %9.0f %9.1f %9.1f %9.1f %9.1f %10.1f%n",
+                              kind.toString().toLowerCase(), stats.succeeded.get(i), stats.rejected.get(i),
+                              stats.errors.get(i), calls / (double) options.seconds,
+                              latency.getPercentile(50) / 1e3, latency.getPercentile(90) / 1e3,
+                              latency.getPercentile(99) / 1e3, latency.getPercentile(99.9) / 1e3,
+                              latency.getMax() / 1e3);
+        }
+        System.out.printf(Locale.ROOT, "total    %10d operations, %.0f ops/s%n", total, total / (double) options.seconds);
+        if (stats.firstErrorText != null) {
+            System.out.println("First error: " + stats.firstErrorText);
+        }
+    }
+
+    // Returns the number of violations found; run once the load has stopped
+    private static int checkInvariants(LocalReservationService service) {
+        PassengerRegistry passengers = service.getPassengers();
+        FlightRegistry flights = service.getFlights();
+        int overbooked = 0;
+        int orphaned = 0;
+        int unindexed = 0;
+        int stale = 0;
+        int waitingNeedlessly = 0;
+        int waitingAndBooked = 0;
+        int waitingRemoved = 0;
+        int unexpired = 0;
+        List<String> examples = new ArrayList<>();
+        for (String flightNumber : flights.keys()) {
+            Flight flight = flights.get(flightNumber);
+            if (flight == null) {
+                continue;
+            }
+            if (flight.getBookedCount() > flight.getCapacity() || flight.getAvailableSeats() < 0) {
+                overbooked++;
+                example(examples, "Overbooked: " + flight);
+            }
+            if (flight.getHeldSeats() != 0) {
+                unexpired++;
+                example(examples, "Held seats after expiry: " + flight.getHeldSeats() + " on " + flightNumber);
+            }
+            for (String passengerId : flight.getBookedPassengers()) {
+                if (passengers.get(passengerId) == null) {
+                    orphaned++;
+                    example(examples, "Orphaned booking: " + passengerId + " on " + flightNumber);
+                } else if (!containsFlight(service.getBookedFlights(passengerId), flightNumber)) {
+                    unindexed++;
+                    example(examples, "Missing from index: " + passengerId + " on " + flightNumber);
+                }
+            }
+        }
+        for (String passengerId : passengers.keys()) {
+            for (Flight flight : service.getBookedFlights(passengerId)) {
+                if (!flight.isBooked(passengerId)) {
+                    stale++;
+                    example(examples, "Stale index entry: " + passengerId + " on " + flight.getFlightNumber());
+                }
+            }
+        }
+        for (String flightNumber : flights.keys()) {
+            Flight flight = flights.get(flightNumber);
+            List<Waitlist.Entry> waitlist = service.getWaitlist(flightNumber);
+            if (flight == null || waitlist.isEmpty()) {
+                continue;
+            }
+            if (flight.getAvailableSeats() > 0) {
+                waitingNeedlessly++;
+                example(examples, "Waitlist with free seats: " + flightNumber);
+            }
+            for (Waitlist.Entry entry : waitlist) {
+                if (flight.isBooked(entry.getPassengerId())) {
+                    waitingAndBooked++;
+                    example(examples, "Waiting and booked: " + entry.getPassengerId() + " on " + flightNumber);
+                } else if (passengers.get(entry.getPassengerId()) == null) {
+                    waitingRemoved++;
+                    example(examples, "Removed passenger waiting: " + entry.getPassengerId() + " on " + flightNumber);
+                }
+            }
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("overbooked flights", overbooked);
+        counts.put("orphaned bookings", orphaned);
+        counts.put("bookings missing from the passenger index", unindexed);
+        counts.put("stale passenger index entries", stale);
+        counts.put("waitlists on flights with free seats", waitingNeedlessly);
+        counts.put("waitlisted passengers already booked", waitingAndBooked);
+        counts.put("removed passengers still waitlisted", waitingRemoved);
+        counts.put("flights with seats still held", unexpired);
+        System.out.println();
+        int violations = 0;
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            System.out.printf("%-44s %d%n", count.getKey(), count.getValue());
+            violations += count.getValue();
+        }
+        examples.forEach(System.out::println);
+        System.out.println(violations == 0 ? "All invariants hold" : violations + " invariant violation(s)");
+        return violations;
+    }
+
+    private static boolean containsFlight(List<Flight> flights, String flightNumber) {
+        for (Flight flight : flights) {
+            if (flight.getFlightNumber().equals(flightNumber)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void example(List<String> examples, String text) {
+        if (examples.size() < 10) {
+            examples.add(text);
+        }
+    }
+
+    private static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--passengers": options.passengers = Integer.parseInt(args[++i]); break;
+                case "--flights": options.flights = Integer.parseInt(args[++i]); break;
+                case "--threads": options.threads = Integer.parseInt(args[++i]); break;
+                case "--rate": options.rate = Double.parseDouble(args[++i]); break;
+                case "--seconds": options.seconds = Integer.parseInt(args[++i]); break;
+                case "--prefill": options.prefill = Double.parseDouble(args[++i]); break;
+                case "--seed": options.seed = Long.parseLong(args[++i]); break;
+                case "--data": options.data = Paths.get(args[++i]); break;
+                case "--mix": options.mix = parseMix(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        return options;
+    }
+
+    // "book=40,cancel=20,..."; operations left out get weight 0
+    private static int[] parseMix(String text) {
+        int[] mix = new int[Kind.values().length];
+        for (String part : text.split(",")) {
+            String[] pair = part.split("=");
+            mix[Kind.valueOf(pair[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(pair[1].trim());
+        }
+        int sum = 0;
+        for (int weight : mix) {
+            sum += weight;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("The mix needs at least one positive weight");
+        }
+        return mix;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Crash-recovery checks for ReservationStore. A store is written to and
+// left open, as if the process had died, and its files are copied with the
+// last journal record cut at every byte, with and without a line end after
+// the cut; the last record is a booking in one run and a group booking in
+// another. Each copy must reopen with exactly the records before the torn
+// one, and a change made after reopening must survive the next reopen.
+// Damage before the last record must fail the open instead, and journals
+// from before records were checksummed must still load. Snapshots taken
+// while other threads book and cancel must reopen to the same state as the
+// store that took them, and a snapshot with nothing new to save must leave
+// the files alone. Route search must find flights loaded from a snapshot.
+//
+// The exit status is 1 if any check fails.
+//
+//   javac -d out *.java bench/*.java
+//   java -cp out StoreCheck
+class StoreCheck {
+    private static final int MAX_REPORTED = 10;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        Path root = Files.createTempDirectory("storecheck");
+        try {
+            checkTornBooking(root.resolve("torn"));
+            checkTornGroup(root.resolve("group"));
+            checkDamagedRecord(root.resolve("damaged"));
+            checkUnframedJournal(root.resolve("unframed"));
+            checkSnapshotUnderLoad(root.resolve("load"));
+            checkUnchangedSnapshot(root.resolve("unchanged"));
+            checkRoutesAfterReopen(root.resolve("routes"));
+        } finally {
+            deleteRecursively(root);
+        }
+        System.out.println(failures == 0 ? "All store checks pass" : failures + " failures");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // The last record books P3 on F2
+    private static void checkTornBooking(Path directory) throws IOException {
+        checkTornLastRecord(directory, engine -> engine.book("P3", "F2"),
+                            engine -> engine.getFlights().get("F2").isBooked("P3"));
+    }
+
+    // The last record is a group booking whose final field, the last seat
+    // number, has two digits, so cutting into it leaves a complete-looking
+    // record with the right number of fields
+    private static void checkTornGroup(Path directory) throws IOException {
+        checkTornLastRecord(directory, engine -> {
+            for (int i = 0; i < 10; i++) {
+                engine.addPassenger(new Passenger("Q" + i, "Filler", "q" + i + "@example.com", "555-010-0009"));
+                engine.book("Q" + i, "F2");
+            }
+            engine.bookGroup(Arrays.asList("P3", "P1"), Arrays.asList("F2"));
+        }, engine -> engine.getFlights().get("F2").isBooked("P3")
+                     && engine.getFlights().get("F2").getSeatNumber("P1") >= 10);
+    }
+
+    // Makes the last change and cuts its record at every byte; each copy
+    // must reopen without it and take it again after reopening
+    private static void checkTornLastRecord(Path directory, Consumer<BookingEngine> lastChange,
+                                            Predicate<BookingEngine> applied) throws IOException {
+        BookingEngine engine = newEngine();
+        ReservationStore.open(directory, engine);
+        addFixture(engine);
+        engine.book("P1", "F1");
+        engine.book("P2", "F1");
+        lastChange.accept(engine);
+        check(applied.test(engine), directory.getFileName() + ": last change not made");
+        byte[] journal = Files.readAllBytes(latestJournal(directory));
+        int lastStart = lastRecordStart(journal);
+
+        int cuts = 0;
+        for (int cut = lastStart; cut < journal.length; cut++) {
+            for (boolean lineEnd : new boolean[] {false, true}) {
+                if (lineEnd && cut == journal.length - 1) {
+                    // That is the complete record again
+                    continue;
+                }
+                String when = directory.getFileName() + " cut at byte " + (cut - lastStart)
+                              + (lineEnd ? " with a line end" : "");
+                Path copy = copyStore(directory, directory.resolveSibling(directory.getFileName() + "-" + cuts++));
+                byte[] torn = Arrays.copyOf(journal, cut + (lineEnd ? 1 : 0));
+                if (lineEnd) {
+                    torn[cut] = '\n';
+                }
+                Files.write(latestJournal(copy), torn);
+
+                BookingEngine reopened = open(copy, when);
+                if (reopened == null) {
+                    continue;
+                }
+                check(reopened.getFlights().get("F1").isBooked("P2"), when + ": earlier booking lost");
+                check(!applied.test(reopened), when + ": torn record replayed");
+                // Appended after the torn bytes have been cut off
+                lastChange.accept(reopened);
+                BookingEngine again = open(copy, when + ", then reopened");
+                if (again != null) {
+                    check(applied.test(again), when + ": change after reopen lost");
+                }
+            }
+        }
+    }
+
+    private static void checkDamagedRecord(Path directory) throws IOException {
+        BookingEngine engine = newEngine();
+        ReservationStore.open(directory, engine);
+        addFixture(engine);
+        engine.book("P1", "F1");
+        Path journal = latestJournal(directory);
+        byte[] bytes = Files.readAllBytes(journal);
+        // Inside the first record's passenger name
+        int index = new String(bytes, StandardCharsets.UTF_8).indexOf("Ana");
+        bytes[index] = 'E';
+        Files.write(journal, bytes);
+        try {
+            ReservationStore.open(directory, newEngine());
+            check(false, "damaged first record was accepted");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static void checkUnframedJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String records = ReservationStore.record("P+", "L1", "Lee", "lee@example.com", "555-010-0001") + "\n"
+                         + ReservationStore.record("P+", "L2", "Lu", "lu@exam");
+        Files.write(directory.resolve("journal-0.log"), records.getBytes(StandardCharsets.UTF_8));
+        BookingEngine engine = open(directory, "unframed journal");
+        if (engine != null) {
+            check(engine.getPassengers().contains("L1"), "unframed record not loaded");
+            check(!engine.getPassengers().contains("L2"), "unterminated unframed record loaded");
+            engine.addPassenger(new Passenger("L3", "Li", "li@example.com", "555-010-0003"));
+            BookingEngine again = open(directory, "unframed journal, then reopened");
+            if (again != null) {
+                check(again.getPassengers().contains("L1") && again.getPassengers().contains("L3"),
+                      "records lost after appending to an unframed journal");
+            }
+        }
+    }
+
+    private static void checkSnapshotUnderLoad(Path directory) throws Exception {
+        BookingEngine engine = newEngine();
+        ReservationStore store = ReservationStore.open(directory, engine);
+        for (int i = 0; i < 200; i++) {
+            engine.addPassenger(new Passenger("P" + i, "Name " + i, "p" + i + "@example.com", "555-010-0000"));
+        }
+        for (int i = 0; i < 20; i++) {
+            engine.addFlight(new Flight("F" + i, "Oslo", "Rome", "08:00", "11:00", 30));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                while (running.get()) {
+                    String passengerId = "P" + random.nextInt(200);
+                    String flightNumber = "F" + random.nextInt(20);
+                    if (random.nextInt(3) == 0) {
+                        engine.cancel(passengerId, flightNumber);
+                    } else {
+                        engine.book(passengerId, flightNumber);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (int i = 0; i < 20; i++) {
+            store.snapshot();
+            Thread.sleep(10);
+        }
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        BookingEngine reopened = open(copyStore(directory, directory.resolveSibling("load-copy")), "after load");
+        if (reopened != null) {
+            for (Flight flight : engine.getFlights()) {
+                Flight stored = reopened.getFlights().get(flight.getFlightNumber());
+                check(stored != null && Arrays.equals(flight.copySeats(), stored.copySeats()),
+                      flight.getFlightNumber() + ": seats differ after snapshots under load");
+            }
+        }
+    }
+
+    private static void checkUnchangedSnapshot(Path directory) throws IOException {
+        BookingEngine engine = newEngine();
+        ReservationStore store = ReservationStore.open(directory, engine);
+        addFixture(engine);
+        engine.book("P1", "F1");
+        store.close();
+        List<String> files = listFiles(directory);
+        store = ReservationStore.open(directory, newEngine());
+        store.snapshot();
+        store.close();
+        check(files.equals(listFiles(directory)), "unchanged store was snapshotted again: " + files
+                                                  + " became " + listFiles(directory));
+
+        // Written while most records are still unbuilt in the old snapshot
+        engine = newEngine();
+        store = ReservationStore.open(directory, engine);
+        engine.book("P2", "F1");
+        store.close();
+        engine = open(directory, "after a snapshot of unbuilt records");
+        if (engine != null) {
+            check(engine.getPassengers().size() == 3 && engine.getFlights().size() == 2,
+                  "unbuilt records lost from snapshot");
+            check(engine.getFlights().get("F1").isBooked("P1") && engine.getFlights().get("F1").isBooked("P2"),
+                  "bookings lost from snapshot of unbuilt records");
+        }
+    }
+
+    private static void checkRoutesAfterReopen(Path directory) throws IOException {
+        try (LocalReservationService service = LocalReservationService.open(directory)) {
+            service.addFlight(new Flight("F1", "Oslo", "Rome", "08:00", "11:00", 10));
+            service.addFlight(new Flight("F2", "Rome", "Lima", "13:00", "23:00", 10));
+        }
+        // Closing wrote a snapshot, so the reopened flights are loaded lazily
+        try (LocalReservationService service = LocalReservationService.open(directory)) {
+            List<Flight> found = service.findFlights(new RouteQuery("Oslo", "Rome"));
+            check(found.size() == 1 && found.get(0).getFlightNumber().equals("F1"),
+                  "route search after reopen found " + found.size() + " flights");
+            service.addFlight(new Flight("F3", "Oslo", "Rome", "18:00", "21:00", 10));
+            check(service.findFlights(new RouteQuery("Oslo", "Rome")).size() == 2,
+                  "route search missed a flight added after reopen");
+        }
+    }
+
+    private static List<String> listFiles(Path directory) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                names.add(file.getFileName() + ":" + Files.size(file));
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static void addFixture(BookingEngine engine) {
+        engine.addPassenger(new Passenger("P1", "Ana", "ana@example.com", "555-010-0001"));
+        engine.addPassenger(new Passenger("P2", "Ben", "ben@example.com", "555-010-0002"));
+        engine.addPassenger(new Passenger("P3", "Chen", "chen@example.com", "555-010-0003"));
+        engine.addFlight(new Flight("F1", "Oslo", "Rome", "08:00", "11:00", 10));
+        engine.addFlight(new Flight("F2", "Rome", "Lima", "13:00", "23:00", 20));
+    }
+
+    private static BookingEngine newEngine() {
+        return new BookingEngine(new PassengerRegistry(), new FlightRegistry());
+    }
+
+    // Opens the store and leaves it open, as a crashed process would; null
+    // if the open failed
+    private static BookingEngine open(Path directory, String when) {
+        BookingEngine engine = newEngine();
+        try {
+            ReservationStore.open(directory, engine);
+            return engine;
+        } catch (IOException | RuntimeException e) {
+            check(false, when + ": open failed with " + e);
+            return null;
+        }
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition && failures++ < MAX_REPORTED) {
+            System.out.println(failure);
+        }
+    }
+
+    // Start of the last line of a journal that ends with a line end
+    private static int lastRecordStart(byte[] journal) {
+        int start = journal.length - 1;
+        while (start > 0 && journal[start - 1] != '\n') {
+            start--;
+        }
+        return start;
+    }
+
+    private static Path latestJournal(Path directory) throws IOException {
+        List<Path> journals = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            files.forEach(journals::add);
+        }
+        journals.sort(Comparator.comparingLong(StoreCheck::generation));
+        return journals.get(journals.size() - 1);
+    }
+
+    private static long generation(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+    }
+
+    private static Path copyStore(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(from)) {
+            for (Path file : files) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+        return to;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
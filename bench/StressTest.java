@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Multi-threaded stress test for the striped locking in BookingEngine.
+// Threads hammer book, cancel and setAvailableSeats on a small set of
+// shared flights, spread over the lock stripes with several flights per
+// stripe, from a small passenger pool so the same seats are fought over
+// constantly. While it runs, a checker takes the engine exclusively every
+// CHECK_MILLIS and verifies every flight; at the end the same checks run
+// once more, and each flight's bookings must match the successful book
+// calls minus the successful cancels on it:
+//
+//   - booked + available + held == capacity
+//   - booked <= capacity and available >= 0 (no overbooking)
+//   - no passenger has two seats on one flight
+//   - the passenger-to-flights index agrees with the manifests
+//   - the engine's booked-seat and capacity totals match the flights
+//
+// The exit status is 1 if any check fails.
+//
+//   javac -d out *.java bench/*.java
+//   java -cp out StressTest [--threads 16] [--flights 256] [--passengers 500] [--seconds 20] [--seed 1]
+class StressTest {
+    private static final int CHECK_MILLIS = 200;
+    private static final int MAX_CAPACITY = 12;
+    private static final int MAX_REPORTED = 10;
+
+    private static class Options {
+        int threads = 16;
+        int flights = 256;
+        int passengers = 500;
+        int seconds = 20;
+        long seed = 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = parse(args);
+        BookingEngine engine = new BookingEngine(new PassengerRegistry(), new FlightRegistry());
+        Random random = new Random(options.seed);
+        for (int i = 0; i < options.passengers; i++) {
+            engine.addPassenger(new Passenger(passengerId(i), "Stress " + i, "p" + i + "@example.com", "555-010-0000"));
+        }
+        for (int i = 0; i < options.flights; i++) {
+            engine.addFlight(new Flight(flightNumber(i), "A", "B", "08:00", "10:00", 1 + random.nextInt(MAX_CAPACITY)));
+        }
+
+        AtomicLongArray netBookings = new AtomicLongArray(options.flights);
+        AtomicLong operations = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger liveViolations = new AtomicInteger();
+        AtomicInteger checks = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < options.threads; t++) {
+            long seed = options.seed * 31 + t;
+            Thread worker = new Thread(() -> {
+                Random local = new Random(seed);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (running.get()) {
+                    int flight = local.nextInt(options.flights);
+                    String flightNumber = flightNumber(flight);
+                    String passengerId = passengerId(local.nextInt(options.passengers));
+                    try {
+                        int roll = local.nextInt(10);
+                        if (roll < 5) {
+                            if (engine.book(passengerId, flightNumber) > 0) {
+                                netBookings.incrementAndGet(flight);
+                            }
+                        } else if (roll < 9) {
+                            if (engine.cancel(passengerId, flightNumber)) {
+                                netBookings.decrementAndGet(flight);
+                            }
+                        } else {
+                            engine.setAvailableSeats(flightNumber, local.nextInt(MAX_CAPACITY / 2));
+                        }
+                    } catch (RuntimeException e) {
+                        if (errors.getAndIncrement() == 0) {
+                            e.printStackTrace();
+                        }
+                    }
+                    operations.incrementAndGet();
+                }
+            }, "stress-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        Thread checker = new Thread(() -> {
+            while (running.get()) {
+                try {
+                    engine.runExclusively(() -> liveViolations.addAndGet(checkFlights(engine, null, "during run")));
+                } catch (RuntimeException e) {
+                    // A manifest torn by a racing change can fail to read at all
+                    System.out.println("Check failed during run: " + e);
+                    liveViolations.incrementAndGet();
+                }
+                checks.incrementAndGet();
+                try {
+                    Thread.sleep(CHECK_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "stress-checker");
+        checker.start();
+
+        long began = System.nanoTime();
+        start.countDown();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.seconds));
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        checker.join();
+        double seconds = (System.nanoTime() - began) / 1e9;
+        engine.close();
+
+        System.out.printf("%d operations in %.1f s (%.0f ops/s) on %d threads, %d live checks, %d errors%n",
+                          operations.get(), seconds, operations.get() / seconds, options.threads, checks.get(),
+                          errors.get());
+        int violations = liveViolations.get() + checkFlights(engine, netBookings, "at end")
+                         + checkIndex(engine) + checkTotals(engine) + (int) Math.min(errors.get(), Integer.MAX_VALUE);
+        System.out.println(violations == 0 ? "All invariants hold" : violations + " violations");
+        System.exit(violations == 0 ? 0 : 1);
+    }
+
+    // Seat accounting on every flight; with netBookings, also checks that no
+    // booking or cancellation was lost
+    private static int checkFlights(BookingEngine engine, AtomicLongArray netBookings, String when) {
+        int violations = 0;
+        int index = 0;
+        for (Flight flight : engine.getFlights()) {
+            int booked = flight.getBookedCount();
+            int available = flight.getAvailableSeats();
+            int held = flight.getHeldSeats();
+            List<String> manifest = flight.getBookedPassengers();
+            String problem = null;
+            if (booked + available + held != flight.getCapacity()) {
+                problem = String.format("booked %d + available %d + held %d != capacity %d",
+                                        booked, available, held, flight.getCapacity());
+            } else if (booked > flight.getCapacity() || available < 0) {
+                problem = String.format("overbooked: %d booked, %d available, capacity %d",
+                                        booked, available, flight.getCapacity());
+            } else if (manifest.size() != booked || new HashSet<>(manifest).size() != booked) {
+                problem = String.format("manifest lists %d passengers (%d distinct) for %d bookings",
+                                        manifest.size(), new HashSet<>(manifest).size(), booked);
+            } else if (netBookings != null && netBookings.get(index) != booked) {
+                problem = String.format("%d bookings, but %d successful books minus cancels",
+                                        booked, netBookings.get(index));
+            }
+            if (problem != null && violations++ < MAX_REPORTED) {
+                System.out.println(flight.getFlightNumber() + " " + when + ": " + problem);
+            }
+            index++;
+        }
+        return violations;
+    }
+
+    private static int checkIndex(BookingEngine engine) {
+        int violations = 0;
+        for (Passenger passenger : engine.getPassengers()) {
+            String passengerId = passenger.getPassengerId();
+            Set<String> indexed = new HashSet<>();
+            for (Flight flight : engine.getBookedFlights(passengerId)) {
+                indexed.add(flight.getFlightNumber());
+            }
+            Set<String> manifests = new HashSet<>();
+            for (Flight flight : engine.getFlights()) {
+                if (flight.isBooked(passengerId)) {
+                    manifests.add(flight.getFlightNumber());
+                }
+            }
+            if (!indexed.equals(manifests) && violations++ < MAX_REPORTED) {
+                System.out.println(passengerId + ": index lists " + indexed + ", manifests " + manifests);
+            }
+        }
+        return violations;
+    }
+
+    private static int checkTotals(BookingEngine engine) {
+        long booked = 0;
+        long capacity = 0;
+        for (Flight flight : engine.getFlights()) {
+            booked += flight.getBookedCount();
+            capacity += flight.getCapacity();
+        }
+        if (booked == engine.getBookedSeats() && capacity == engine.getSeatCapacity()) {
+            return 0;
+        }
+        System.out.printf("Engine totals %d booked of %d, flights %d booked of %d%n",
+                          engine.getBookedSeats(), engine.getSeatCapacity(), booked, capacity);
+        return 1;
+    }
+
+    private static String passengerId(int index) {
+        return String.format("S%05d", index);
+    }
+
+    // Flights are added in index order, so the registry iterates them the same way
+    private static String flightNumber(int index) {
+        return String.format("ST%04d", index);
+    }
+
+    private static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": options.threads = Integer.parseInt(args[++i]); break;
+                case "--flights": options.flights = Integer.parseInt(args[++i]); break;
+                case "--passengers": options.passengers = Integer.parseInt(args[++i]); break;
+                case "--seconds": options.seconds = Integer.parseInt(args[++i]); break;
+                case "--seed": options.seed = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        return options;
+    }
+}
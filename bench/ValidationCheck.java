@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+// Differential check of the Validation format scanners against the regular
+// expressions they replaced. Each of isEmail, isPhone and isTime is run on
+// the same inputs as its regex (with Matcher.matches(), as the old code
+// did) and must give the same answer for:
+//
+//   - hand-picked edge cases around each rule
+//   - random strings over the characters the format cares about, plus a
+//     few it does not
+//   - strings built from the format's own pieces (digit runs, separators,
+//     labels, dots), which are accepted far more often than random ones
+//   - for e-mail, addresses of the right shape with one character changed
+//     half of the time
+//   - for times, every string of up to 5 characters over a small alphabet
+//
+// The exit status is 1 if any input is judged differently.
+//
+//   javac -d out *.java bench/*.java
+//   java -cp out ValidationCheck [--count 2000000] [--seed 1]
+class ValidationCheck {
+    private static final Pattern EMAIL = Pattern.compile("^[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}$");
+    private static final Pattern PHONE = Pattern.compile("^[+]?[(]?[0-9]{1,4}[)]?[-\\s.]?[0-9]{1,4}[-\\s.]?[0-9]{1,6}$");
+    private static final Pattern TIME = Pattern.compile("^([01]?[0-9]|2[0-3]):[0-5][0-9]$");
+    private static final int MAX_REPORTED = 10;
+
+    private static final String EMAIL_ALPHABET = "aZ09_-.@.x@ +\u00e9";
+    private static final String PHONE_ALPHABET = "0123456789+()-. \t\nx";
+    private static final String TIME_ALPHABET = "0123456789:: a";
+    private static final String[] EMAIL_PIECES = {"a", "bc", "x_y", "-", ".", "..", "@", "com", "io", "info",
+            "museum", "Z9", "\u00e9", " ", ""};
+    private static final String[] PHONE_PIECES = {"+", "(", ")", "-", ".", " ", "\t", "1", "12", "123", "1234",
+            "12345", "123456", "1234567", "", "x"};
+    private static final String[] TIME_PIECES = {"0", "1", "2", "3", "9", "00", "23", "24", "59", "60", ":", " ", ""};
+
+    private static class Format {
+        final String name;
+        final Pattern pattern;
+        final Predicate<String> scanner;
+        long inputs;
+        long accepted;
+        int mismatches;
+
+        Format(String name, Pattern pattern, Predicate<String> scanner) {
+            this.name = name;
+            this.pattern = pattern;
+            this.scanner = scanner;
+        }
+
+        void check(String input) {
+            boolean expected = pattern.matcher(input).matches();
+            inputs++;
+            if (expected) {
+                accepted++;
+            }
+            if (scanner.test(input) != expected && mismatches++ < MAX_REPORTED) {
+                System.out.println(name + ": \"" + escape(input) + "\" should be " + (expected ? "accepted" : "rejected"));
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int count = 2_000_000;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--count": count = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        Format email = new Format("isEmail", EMAIL, Validation::isEmail);
+        Format phone = new Format("isPhone", PHONE, Validation::isPhone);
+        Format time = new Format("isTime", TIME, Validation::isTime);
+
+        for (String input : new String[] {"", "a@b.co", "a@b.c", "a@b.abcde", "a@b.abcd", "@b.co", "a@.co", "a@b..co",
+                "a@b.co.", "a.b-c_d@e-f.g_h.ij", "a@@b.co", "a@b", "a b@c.de", "-@-.--", "a@b.c-", "\u00e9@b.co",
+                "a@b.co\n", "a@b_c.d1"}) {
+            email.check(input);
+        }
+        for (String input : new String[] {"", "1", "12", "123", "12345678901234", "123456789012345", "+1", "(123)",
+                "(123)456", "(123) 456-7890", "+1 (555) 123-4567", "555-123-4567", "555.123.4567", "555 123 4567",
+                "12345-6", "123456789-123456", "1-2-3", "1--2", "+(1)2", "(1)-2-3", "1)2", "((1)2", "12345)6",
+                "1-23456", "1234-1234567", "1\t2\n3", "+", "()", "1-", "-1"}) {
+            phone.check(input);
+        }
+        for (String input : new String[] {"", "0:00", "00:00", "9:59", "09:59", "19:59", "20:00", "23:59", "24:00",
+                "2:60", "23:5", "123:45", ":00", "00:0a", " 0:00", "0:00 ", "3:00", "03:00", "33:00"}) {
+            time.check(input);
+        }
+
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            email.check(randomString(random, EMAIL_ALPHABET, 12));
+            phone.check(randomString(random, PHONE_ALPHABET, 18));
+            time.check(randomString(random, TIME_ALPHABET, 6));
+            email.check(fromPieces(random, EMAIL_PIECES, 7));
+            email.check(mutate(random, emailLike(random), EMAIL_ALPHABET));
+            phone.check(fromPieces(random, PHONE_PIECES, 7));
+            time.check(fromPieces(random, TIME_PIECES, 4));
+        }
+        for (String input : allStrings("0123459:a", 5)) {
+            time.check(input);
+        }
+
+        int mismatches = 0;
+        for (Format format : new Format[] {email, phone, time}) {
+            System.out.printf("%-8s %,12d inputs %,11d accepted %d mismatches%n",
+                              format.name, format.inputs, format.accepted, format.mismatches);
+            mismatches += format.mismatches;
+        }
+        System.out.println(mismatches == 0 ? "Scanners match the regexes" : mismatches + " mismatches");
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    private static String randomString(Random random, String alphabet, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    private static String fromPieces(Random random, String[] pieces, int maxPieces) {
+        StringBuilder text = new StringBuilder();
+        for (int i = random.nextInt(maxPieces + 1); i > 0; i--) {
+            text.append(pieces[random.nextInt(pieces.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String emailLike(Random random) {
+        StringBuilder text = new StringBuilder(randomString(random, "ab_-.9", 4)).append('@');
+        for (int labels = 1 + random.nextInt(3); labels > 0; labels--) {
+            text.append(randomString(random, "cd-_8", 3)).append('.');
+        }
+        return text.append(randomString(random, "ef-_7", 6)).toString();
+    }
+
+    // Replaces, inserts or deletes one character half of the time
+    private static String mutate(Random random, String text, String alphabet) {
+        if (random.nextBoolean() || text.isEmpty()) {
+            return text;
+        }
+        int at = random.nextInt(text.length());
+        char c = alphabet.charAt(random.nextInt(alphabet.length()));
+        switch (random.nextInt(3)) {
+            case 0: return text.substring(0, at) + c + text.substring(at + 1);
+            case 1: return text.substring(0, at) + c + text.substring(at);
+            default: return text.substring(0, at) + text.substring(at + 1);
+        }
+    }
+
+    private static List<String> allStrings(String alphabet, int maxLength) {
+        List<String> strings = new ArrayList<>();
+        strings.add("");
+        for (int start = 0, length = 1; length <= maxLength; length++) {
+            int end = strings.size();
+            for (int i = start; i < end; i++) {
+                for (int c = 0; c < alphabet.length(); c++) {
+                    strings.add(strings.get(i) + alphabet.charAt(c));
+                }
+            }
+            start = end;
+        }
+        return strings;
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}